@@ -18,7 +18,6 @@ package com.brokenshotgun.runlines;
 
 import android.app.AlertDialog;
 import android.content.DialogInterface;
-import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
 import android.view.View;
@@ -33,19 +32,26 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 
 import com.brokenshotgun.runlines.adapters.LineArrayAdapter;
-import com.brokenshotgun.runlines.data.ScriptReaderDbHelper;
+import com.brokenshotgun.runlines.data.ScriptRepository;
 import com.brokenshotgun.runlines.model.Actor;
 import com.brokenshotgun.runlines.model.Line;
 import com.brokenshotgun.runlines.model.Script;
+import com.brokenshotgun.runlines.model.ScriptEdit;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 
 public class EditSceneActivity extends AppCompatActivity {
 
+    private long scriptId;
+    // the script the other activities show, edits go to a copy of it until they are kept
+    private Script originalScript;
+    private ScriptEdit edit;
     private Script script;
     private LineArrayAdapter lineArrayAdapter;
-    private ScriptReaderDbHelper dbHelper;
+    private ScriptRepository repository;
+    private int sceneIndex;
     private boolean hasUnsavedChanges = false;
+    private boolean hasOtherSceneChanges = false;
 
     private CoordinatorLayout coordinatorLayout;
 
@@ -58,18 +64,32 @@ public class EditSceneActivity extends AppCompatActivity {
 
         Bundle extras = getIntent().getExtras();
         assert extras != null;
-        extras.setClassLoader(Script.class.getClassLoader());
-        Script originalScript = extras.getParcelable("script");
-        if (originalScript == null) {
-            finish();
-            return;
-        }
-        script = new Script(originalScript);
-        int sceneIndex = (int) extras.get("sceneIndex");
+        scriptId = extras.getLong("scriptId");
+        sceneIndex = extras.getInt("sceneIndex");
+        repository = ScriptRepository.getInstance(this);
+        repository.getSessions().acquire(scriptId, sceneIndex, new ScriptRepository.Callback<Script>() {
+            @Override
+            public void onResult(Script result) {
+                if (isFinishing()) {
+                    return;
+                }
 
-        setTitle(getString(R.string.title_activity_edit_script_prefix) + " \"" + (script.getScene(sceneIndex).getName().equals("") ? getString(R.string.label_no_scene_name) : script.getScene(sceneIndex).getName()) + "\"");
+                if (result == null) {
+                    finish();
+                    return;
+                }
 
-        dbHelper = new ScriptReaderDbHelper(this);
+                onScriptLoaded(result);
+            }
+        });
+    }
+
+    private void onScriptLoaded(Script loadedScript) {
+        originalScript = loadedScript;
+        edit = new ScriptEdit(originalScript, sceneIndex);
+        script = edit.getScript();
+
+        setTitle(getString(R.string.title_activity_edit_script_prefix) + " \"" + (script.getScene(sceneIndex).getName().equals("") ? getString(R.string.label_no_scene_name) : script.getScene(sceneIndex).getName()) + "\"");
 
         coordinatorLayout = findViewById(R.id.coordinator_layout);
         assert coordinatorLayout != null;
@@ -103,13 +123,23 @@ public class EditSceneActivity extends AppCompatActivity {
         assert saveButton != null;
         saveButton.setOnClickListener(new View.OnClickListener() {
             @Override
-            public void onClick(View view) {
-                dbHelper.updateScript(script);
+            public void onClick(final View view) {
+                ScriptRepository.Callback<Script> onSaved = new ScriptRepository.Callback<Script>() {
+                    @Override
+                    public void onResult(Script result) {
+                        Snackbar.make(view, getString(R.string.saved_changes), Snackbar.LENGTH_LONG)
+                                .setAction("Action", null).show();
+                    }
+                };
+                edit.commit();
+                if (hasOtherSceneChanges) {
+                    repository.updateScript(originalScript, onSaved);
+                } else {
+                    repository.updateScene(originalScript, sceneIndex, onSaved);
+                }
 
                 hasUnsavedChanges = false;
-
-                Snackbar.make(view, getString(R.string.saved_changes), Snackbar.LENGTH_LONG)
-                        .setAction("Action", null).show();
+                hasOtherSceneChanges = false;
             }
         });
 
@@ -196,8 +226,9 @@ public class EditSceneActivity extends AppCompatActivity {
             @Override
             public void onClick(DialogInterface dialog, int which) {
                 Line newLine = new Line(actor, inputText.getText().toString().trim());
-                lineArrayAdapter.add(newLine);
+                script.getScene(sceneIndex).addLine(newLine);
                 newLine.order = lineArrayAdapter.getCount() - 1;
+                lineArrayAdapter.notifyDataSetChanged();
 
                 hasUnsavedChanges = true;
             }
@@ -229,7 +260,7 @@ public class EditSceneActivity extends AppCompatActivity {
                                 showEditLineDialog(linePosition);
                                 break;
                             case OPTION_REMOVE_LINE:
-                                lineArrayAdapter.remove(lineArrayAdapter.getItem(linePosition));
+                                script.getScene(sceneIndex).removeLine(linePosition);
                                 updateOrder();
                                 break;
                             case OPTION_INSERT_ABOVE:
@@ -237,7 +268,7 @@ public class EditSceneActivity extends AppCompatActivity {
                                 if (aboveIndex < 0) {
                                     aboveIndex = 0;
                                 }
-                                lineArrayAdapter.insert(new Line(script.getActors().get(0), ""), aboveIndex);
+                                script.getScene(sceneIndex).insertLine(aboveIndex, new Line(script.getActors().get(0), ""));
                                 updateOrder();
                                 break;
                             case OPTION_INSERT_BELOW:
@@ -245,7 +276,7 @@ public class EditSceneActivity extends AppCompatActivity {
                                 if (belowIndex >= lineArrayAdapter.getCount()){
                                     belowIndex = lineArrayAdapter.getCount() - 1;
                                 }
-                                lineArrayAdapter.insert(new Line(script.getActors().get(0), ""), belowIndex);
+                                script.getScene(sceneIndex).insertLine(belowIndex, new Line(script.getActors().get(0), ""));
                                 updateOrder();
                                 break;
                             case OPTION_REMOVE_ACTOR:
@@ -273,17 +304,13 @@ public class EditSceneActivity extends AppCompatActivity {
         }
 
         hasUnsavedChanges = true;
+        // the actor is replaced in every scene, not just this one
+        hasOtherSceneChanges = true;
 
         // TODO add ability to select replacement OR prompt to delete all lines attached to actor
-        Actor replacement = script.getActors().get(0);
-        script.replaceActor(actor, replacement);
-
-        for (int i = 0; i < lineArrayAdapter.getCount(); ++i) {
-            Line line = lineArrayAdapter.getItem(i);
-            if (line != null && line.getActor().equals(actor)) {
-                line.setActor(replacement);
-            }
-        }
+        // the adapter shows this scene's lines, which the edit replaces the actor in; the other
+        // scenes are copied, or replace it when their lines are loaded for the save
+        edit.replaceActor(actor, script.getActors().get(0));
 
         lineArrayAdapter.notifyDataSetInvalidated();
     }
@@ -305,9 +332,9 @@ public class EditSceneActivity extends AppCompatActivity {
         builder.setAdapter(actorArrayAdapter, new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                Line line = lineArrayAdapter.getItem(linePosition);
-                if (line != null) {
-                    line.setActor(actorArrayAdapter.getItem(which));
+                Actor actor = actorArrayAdapter.getItem(which);
+                if (actor != null && linePosition < lineArrayAdapter.getCount()) {
+                    script.getScene(sceneIndex).setLineActor(linePosition, actor);
                     lineArrayAdapter.notifyDataSetInvalidated();
                 }
             }
@@ -381,13 +408,20 @@ public class EditSceneActivity extends AppCompatActivity {
 
             builder.create().show();
         } else {
-            Intent result = new Intent();
-            result.putExtra("script", script);
-            setResult(RESULT_OK, result);
+            if (edit != null) {
+                edit.commit();
+            }
+            setResult(RESULT_OK);
             super.onBackPressed();
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        repository.getSessions().release(scriptId, sceneIndex);
+        super.onDestroy();
+    }
+
     private interface OnActorSelectListener {
         void onSelected(Actor actor);
     }
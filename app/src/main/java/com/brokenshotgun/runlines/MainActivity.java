@@ -43,8 +43,9 @@ import androidx.appcompat.widget.Toolbar;
 import com.brokenshotgun.runlines.adapters.ScriptArrayAdapter;
 import com.brokenshotgun.runlines.data.FountainSerializer;
 import com.brokenshotgun.runlines.data.PdfParser;
-import com.brokenshotgun.runlines.data.ScriptReaderDbHelper;
+import com.brokenshotgun.runlines.data.ScriptRepository;
 import com.brokenshotgun.runlines.model.Script;
+import com.brokenshotgun.runlines.model.ScriptSummary;
 import com.brokenshotgun.runlines.utils.Intents;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
@@ -54,16 +55,17 @@ import com.tom_roush.pdfbox.pdmodel.PDDocument;
 import com.tom_roush.pdfbox.text.PDFTextStripper;
 import com.tom_roush.pdfbox.util.PDFBoxResourceLoader;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
     private ScriptArrayAdapter scriptListAdapter;
-    private ScriptReaderDbHelper dbHelper;
+    private ScriptRepository repository;
     private ListView scriptListView;
     private Animation fabOpen, fabClose, fabRotateClockwise, fabRotateCounterClockwise;
 
@@ -75,18 +77,16 @@ public class MainActivity extends AppCompatActivity {
     private ProgressDialog progressDialog;
     private ImportCallback importScriptHandler = new ImportCallback() {
         @Override
-        public void onSuccess(final Script script) {
-            dbHelper.insertScript(script);
-            runOnUiThread(new Runnable() {
+        public void onSuccess(Script script) {
+            repository.insertScript(script, new ScriptRepository.Callback<Script>() {
                 @Override
-                public void run() {
+                public void onResult(Script result) {
                     progressDialog.dismiss();
                     progressDialog = null;
-                    scriptListAdapter.add(script);
+                    scriptListAdapter.add(ScriptSummary.of(result, System.currentTimeMillis()));
                     Snackbar.make(scriptListView, R.string.alert_script_import_success, Snackbar.LENGTH_LONG).show();
                 }
             });
-
         }
 
         @Override
@@ -149,9 +149,9 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        dbHelper = new ScriptReaderDbHelper(this);
+        repository = ScriptRepository.getInstance(this);
 
-        scriptListAdapter = new ScriptArrayAdapter(this, new ArrayList<Script>());
+        scriptListAdapter = new ScriptArrayAdapter(this, new ArrayList<ScriptSummary>());
         scriptListView.setAdapter(scriptListAdapter);
         scriptListView.setEmptyView(findViewById(android.R.id.empty));
         scriptListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -200,9 +200,18 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onResume() {
-        scriptListAdapter.clear();
-        scriptListAdapter.addAll(dbHelper.getScripts());
         super.onResume();
+        loadScripts();
+    }
+
+    private void loadScripts() {
+        repository.loadSummaries(new ScriptRepository.Callback<List<ScriptSummary>>() {
+            @Override
+            public void onResult(List<ScriptSummary> result) {
+                scriptListAdapter.clear();
+                scriptListAdapter.addAll(result);
+            }
+        });
     }
 
     @Override
@@ -212,25 +221,40 @@ public class MainActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.store_scripts_as_files).setChecked(repository.isFileStoreEnabled());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.import_script) {
             showImportFileSelect();
             return true;
+        } else if (item.getItemId() == R.id.store_scripts_as_files) {
+            item.setChecked(!item.isChecked());
+            repository.setFileStoreEnabled(item.isChecked(), new ScriptRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer moved) {
+                    loadScripts();
+                }
+            });
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
-    private void openScript(Script script) {
+    private void openScript(ScriptSummary summary) {
         Intent openIntent = new Intent(this, ScriptSceneListActivity.class);
-        openIntent.putExtra("script", script);
+        openIntent.putExtra("scriptId", summary.getId());
         startActivity(openIntent);
     }
 
     private static final int OPTION_EDIT_NAME = 0;
     private static final int OPTION_REMOVE = 1;
 
-    private void showEditScriptDialog(final Script script, final int position) {
+    private void showEditScriptDialog(final ScriptSummary script, final int position) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle(R.string.title_dialog_edit_script);
         builder.setItems(R.array.edit_script_options, new DialogInterface.OnClickListener() {
@@ -249,7 +273,7 @@ public class MainActivity extends AppCompatActivity {
         builder.create().show();
     }
 
-    private void showEditScriptNameDialog(final Script script, final int position) {
+    private void showEditScriptNameDialog(final ScriptSummary script, final int position) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle(R.string.title_dialog_edit_script_name);
 
@@ -269,18 +293,18 @@ public class MainActivity extends AppCompatActivity {
         builder.setPositiveButton(R.string.ok, new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                Script selectedScript = scriptListAdapter.getItem(position);
+                ScriptSummary selectedScript = scriptListAdapter.getItem(position);
                 if (selectedScript != null) {
                     selectedScript.setName(inputText.getText().toString().trim());
                     scriptListAdapter.notifyDataSetInvalidated();
-                    dbHelper.updateScript(script);
+                    repository.renameScript(selectedScript.getId(), selectedScript.getName());
                 }
             }
         });
         builder.create().show();
     }
 
-    private void showConfirmDeleteDialog(final Script script) {
+    private void showConfirmDeleteDialog(final ScriptSummary script) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle(getString(R.string.title_dialog_delete_script) + " \'" + script.getName() + "\'?");
         builder.setPositiveButton(R.string.delete, new DialogInterface.OnClickListener() {
@@ -288,7 +312,7 @@ public class MainActivity extends AppCompatActivity {
             public void onClick(DialogInterface dialog, int which) {
                 scriptListAdapter.remove(script);
                 scriptListAdapter.notifyDataSetInvalidated();
-                dbHelper.deleteScript(script);
+                repository.deleteScript(script.getId());
             }
         });
         builder.setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
@@ -319,8 +343,12 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onClick(DialogInterface dialog, int which) {
                 Script newScript = new Script(inputText.getText().toString().trim());
-                scriptListAdapter.add(newScript);
-                dbHelper.insertScript(newScript);
+                repository.insertScript(newScript, new ScriptRepository.Callback<Script>() {
+                    @Override
+                    public void onResult(Script result) {
+                        scriptListAdapter.add(ScriptSummary.of(result, System.currentTimeMillis()));
+                    }
+                });
             }
         });
         builder.create().show();
@@ -347,16 +375,31 @@ public class MainActivity extends AppCompatActivity {
         new Thread(new Runnable() {
             @Override
             public void run() {
-                String content = fileToString(filename);
-                if (content == null) {
-                    if (importCallback != null) {
+                Reader fileReader = null;
+                try {
+                    InputStream fileStream = getContentResolver().openInputStream(filename);
+                    if (fileStream == null) {
+                        Log.e(MainActivity.class.getName(), "Could not open file, InputStream is null");
+                        if (importCallback != null)
+                            importCallback.onFailure();
+                        return;
+                    }
+                    fileReader = new InputStreamReader(fileStream);
+                    Script result = FountainSerializer.deserialize(fileReader);
+                    if (importCallback != null)
+                        importCallback.onSuccess(result);
+                } catch (IOException e) {
+                    Log.e(MainActivity.class.getName(), e.getMessage(), e);
+                    if (importCallback != null)
                         importCallback.onFailure();
+                } finally {
+                    if (fileReader != null) {
+                        try {
+                            fileReader.close();
+                        } catch (IOException e) {
+                            Log.e(MainActivity.class.getName(), e.getMessage(), e);
+                        }
                     }
-                    return;
-                }
-                Script result = FountainSerializer.deserialize(content);
-                if (importCallback != null) {
-                    importCallback.onSuccess(result);
                 }
             }
         }).start();
@@ -401,33 +444,6 @@ public class MainActivity extends AppCompatActivity {
         }).start();
     }
 
-    protected String fileToString(Uri filename) {
-        BufferedReader fileReader = null;
-        try {
-            InputStream fileStream = getContentResolver().openInputStream(filename);
-            assert fileStream != null;
-            fileReader = new BufferedReader(new InputStreamReader(fileStream));
-            StringBuilder fileBuilder = new StringBuilder();
-            int c;
-            int length = 80;
-            char[] buf = new char[80];
-            while ((c = fileReader.read(buf, 0, length)) != -1) {
-                fileBuilder.append(buf, 0, c);
-            }
-            return fileBuilder.toString().replaceAll("\\r\\n?", "\n");
-        } catch (IOException e) {
-            Log.e(MainActivity.class.getName(), e.getMessage(), e);
-        } finally {
-            if (fileReader != null)
-                try {
-                    fileReader.close();
-                } catch (IOException e) {
-                    Log.e(MainActivity.class.getName(), e.getMessage(), e);
-                }
-        }
-        return null;
-    }
-
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         if (requestCode == IMPORT_FILE_SELECT_REQUEST) {
@@ -43,14 +43,17 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.brokenshotgun.runlines.adapters.LineArrayAdapter;
+import com.brokenshotgun.runlines.data.ScriptRepository;
 import com.brokenshotgun.runlines.model.Actor;
 import com.brokenshotgun.runlines.model.Line;
+import com.brokenshotgun.runlines.model.Scene;
 import com.brokenshotgun.runlines.model.Script;
 import com.brokenshotgun.runlines.utils.Intents;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -69,6 +72,7 @@ public class ReadSceneActivity extends AppCompatActivity {
 
     private TextToSpeech textToSpeech;
     private UtteranceProgressListener utteranceProgressListener;
+    private long scriptId;
     private Script script;
     private int sceneIndex = -1;
     private String lastUtteranceId = "";
@@ -94,13 +98,31 @@ public class ReadSceneActivity extends AppCompatActivity {
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
-        checkTtsData();
-
         Bundle extras = getIntent().getExtras();
         assert extras != null;
-        script = (Script) extras.get("script");
-        sceneIndex = (int) extras.get("sceneIndex");
-        assert script != null;
+        scriptId = extras.getLong("scriptId");
+        sceneIndex = extras.getInt("sceneIndex");
+        ScriptRepository.getInstance(this).getSessions().acquire(scriptId, sceneIndex, new ScriptRepository.Callback<Script>() {
+            @Override
+            public void onResult(Script result) {
+                if (isFinishing()) {
+                    return;
+                }
+
+                if (result == null) {
+                    finish();
+                    return;
+                }
+
+                onScriptLoaded(result);
+            }
+        });
+    }
+
+    private void onScriptLoaded(Script loadedScript) {
+        script = loadedScript;
+
+        checkTtsData();
 
         setTitle(getString(R.string.title_activity_read_script_prefix) + " \"" + (script.getScene(sceneIndex).getName().equals("") ? getString(R.string.label_no_scene_name) : script.getScene(sceneIndex).getName()) + "\"");
 
@@ -303,6 +325,10 @@ public class ReadSceneActivity extends AppCompatActivity {
 
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
+        if (script == null) {
+            return super.onOptionsItemSelected(item);
+        }
+
         switch (item.getItemId()) {
             case R.id.tts_settings:
                 showTtsSettingsDialog();
@@ -349,31 +375,27 @@ public class ReadSceneActivity extends AppCompatActivity {
             textToSpeech = null;
         }
 
+        ScriptRepository.getInstance(this).getSessions().release(scriptId, sceneIndex);
         super.onDestroy();
     }
 
     @Override
     public void onBackPressed() {
-        Intent result = new Intent();
-        result.putExtra("script", script);
-        setResult(RESULT_OK, result);
+        setResult(RESULT_OK);
         super.onBackPressed();
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (script == null) {
+            // recreated after the process was killed, the script is still loading and
+            // onScriptLoaded() sets everything up from scratch
+            super.onActivityResult(requestCode, resultCode, data);
+            return;
+        }
+
         if (requestCode == EDIT_SCRIPT_REQUEST) {
             if (resultCode == RESULT_OK) {
-                if (script == null) {
-                    finish();
-                    return;
-                }
-
-                Script editScript = data.getParcelableExtra("script");
-                if (editScript != null) {
-                    script.copy(editScript);
-                }
-
                 Set<String> disabledActorSet = scriptPreferences.getStringSet("disabledActors", new HashSet<String>());
                 refreshEnabledActors(disabledActorSet);
 
@@ -433,8 +455,12 @@ public class ReadSceneActivity extends AppCompatActivity {
     }
 
     public void onEditScriptButtonClicked(View view) {
+        if (script == null) {
+            return;
+        }
+
         Intent editIntent = new Intent(this, EditSceneActivity.class);
-        editIntent.putExtra("script", script);
+        editIntent.putExtra("scriptId", scriptId);
         editIntent.putExtra("sceneIndex", sceneIndex);
         startActivityForResult(editIntent, EDIT_SCRIPT_REQUEST);
     }
@@ -484,7 +510,7 @@ public class ReadSceneActivity extends AppCompatActivity {
         for (int i = 0; i < lineArrayAdapter.getCount(); ++i) {
             Line line = lineArrayAdapter.getItem(i);
             if (line != null) {
-                int actorIndex = script.getActors().indexOf(line.getActor());
+                int actorIndex = script.indexOfActor(line.getActor());
 
                 if (actorIndex >= 0 && actorIndex < isEnabled.size()) {
                     line.enabled = isEnabled.get(actorIndex);
@@ -560,14 +586,13 @@ public class ReadSceneActivity extends AppCompatActivity {
         else {
             lastReadLineIndex = -1;
             lineArrayAdapter.clear();
-            List<Line> lines = new ArrayList<>(script.getScene(sceneIndex).getLines());
-            List<Line> actions = new ArrayList<>();
-            for (Line line : lines) {
-                if (line.getActor().equals(Actor.ACTION)) {
-                    actions.add(line);
-                }
+            Scene scene = script.getScene(sceneIndex);
+            List<Line> sceneLines = scene.getLines();
+            BitSet actions = scene.linesOf(Actor.ACTION);
+            List<Line> lines = new ArrayList<>(sceneLines.size() - actions.cardinality());
+            for (int i = actions.nextClearBit(0); i < sceneLines.size(); i = actions.nextClearBit(i + 1)) {
+                lines.add(sceneLines.get(i));
             }
-            lines.removeAll(actions);
             lineArrayAdapter.addAll(lines);
         }
     }
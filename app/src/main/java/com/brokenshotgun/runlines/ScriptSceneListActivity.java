@@ -36,8 +36,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.brokenshotgun.runlines.adapters.SceneArrayAdapter;
-import com.brokenshotgun.runlines.data.FountainSerializer;
-import com.brokenshotgun.runlines.data.ScriptReaderDbHelper;
+import com.brokenshotgun.runlines.data.ScriptRepository;
 import com.brokenshotgun.runlines.model.Scene;
 import com.brokenshotgun.runlines.model.Script;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -47,10 +46,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 
 public class ScriptSceneListActivity extends AppCompatActivity {
+    private long scriptId;
     private Script script;
     private ListView sceneListView;
     private SceneArrayAdapter sceneArrayAdapter;
-    private ScriptReaderDbHelper dbHelper;
+    private ScriptRepository repository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -61,8 +61,27 @@ public class ScriptSceneListActivity extends AppCompatActivity {
 
         Bundle extras = getIntent().getExtras();
         assert extras != null;
-        script = extras.getParcelable("script");
-        dbHelper = new ScriptReaderDbHelper(this);
+        scriptId = extras.getLong("scriptId");
+        repository = ScriptRepository.getInstance(this);
+        repository.getSessions().acquire(scriptId, new ScriptRepository.Callback<Script>() {
+            @Override
+            public void onResult(Script result) {
+                if (isFinishing()) {
+                    return;
+                }
+
+                if (result == null) {
+                    finish();
+                    return;
+                }
+
+                onScriptLoaded(result);
+            }
+        });
+    }
+
+    private void onScriptLoaded(Script loadedScript) {
+        script = loadedScript;
 
         setTitle(getString(R.string.script_scene_list_title_prefix) + " \"" + (script.getName().equals("") ? getString(R.string.label_no_script_name) : script.getName()) + "\"");
 
@@ -108,6 +127,18 @@ public class ScriptSceneListActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        repository.flushSaves();
+    }
+
+    @Override
+    protected void onDestroy() {
+        repository.getSessions().release(scriptId);
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
@@ -117,7 +148,7 @@ public class ScriptSceneListActivity extends AppCompatActivity {
 
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
-        if (item.getItemId() == R.id.export_script) {
+        if (item.getItemId() == R.id.export_script && script != null) {
             exportScript(script);
             return true;
         }
@@ -137,7 +168,7 @@ public class ScriptSceneListActivity extends AppCompatActivity {
 
     private void openScene(int sceneIndex) {
         Intent readIntent = new Intent(this, ReadSceneActivity.class);
-        readIntent.putExtra("script", script);
+        readIntent.putExtra("scriptId", scriptId);
         readIntent.putExtra("sceneIndex", sceneIndex);
         startActivityForResult(readIntent, OPEN_SCRIPT_REQUEST);
     }
@@ -183,7 +214,7 @@ public class ScriptSceneListActivity extends AppCompatActivity {
                 if (scene != null) {
                     scene.setName(inputText.getText().toString().trim());
                     sceneArrayAdapter.notifyDataSetInvalidated();
-                    dbHelper.updateScript(script);
+                    repository.saveLater(script, position);
                 }
 
             }
@@ -196,18 +227,16 @@ public class ScriptSceneListActivity extends AppCompatActivity {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == OPEN_SCRIPT_REQUEST) {
-            if (resultCode == RESULT_OK && data != null) {
-                Script file = data.getParcelableExtra("script");
-                if (file != null) {
-                    script.copy(file);
-                    sceneArrayAdapter.notifyDataSetInvalidated();
-                }
+            // the scene activities keep their changes in the same script as this one, only the list
+            // needs redrawing
+            if (resultCode == RESULT_OK && sceneArrayAdapter != null) {
+                sceneArrayAdapter.notifyDataSetInvalidated();
             }
         }
 
         if (requestCode == CREATE_FILE_REQUEST) {
             if (resultCode == RESULT_OK) {
-                if (data != null) {
+                if (data != null && script != null) {
                     Uri uri = data.getData();
                     exportScript(script, uri, new ExportScriptHandler() {
                         @Override
@@ -230,8 +259,41 @@ public class ScriptSceneListActivity extends AppCompatActivity {
         void onError();
     }
 
-    private void exportScript(Script script, Uri exportFileUri, ExportScriptHandler exportScriptHandler) {
-        String fountainScript = FountainSerializer.serialize(script);
+    private void exportScript(Script script, final Uri exportFileUri, final ExportScriptHandler exportScriptHandler) {
+        // the scenes of the open outline load as it is written out, so the repository does it
+        repository.exportScript(script.id, new ScriptRepository.Callback<String>() {
+            @Override
+            public void onResult(String fountainScript) {
+                if (fountainScript == null) {
+                    if (exportScriptHandler != null) exportScriptHandler.onError();
+                    return;
+                }
+                writeExport(fountainScript, exportFileUri, exportScriptHandler);
+            }
+        });
+    }
+
+    private void writeExport(final String fountainScript, final Uri exportFileUri, final ExportScriptHandler exportScriptHandler) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final boolean written = writeFile(fountainScript, exportFileUri);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (exportScriptHandler == null) return;
+                        if (written) {
+                            exportScriptHandler.onSuccess();
+                        } else {
+                            exportScriptHandler.onError();
+                        }
+                    }
+                });
+            }
+        }).start();
+    }
+
+    private boolean writeFile(String fountainScript, Uri exportFileUri) {
         ParcelFileDescriptor pfd = null;
         FileOutputStream fileOutputStream = null;
         try {
@@ -243,11 +305,10 @@ public class ScriptSceneListActivity extends AppCompatActivity {
                 pfd.close();
                 fileOutputStream = null;
                 pfd = null;
-                if (exportScriptHandler != null) exportScriptHandler.onSuccess();
+                return true;
             }
         } catch (IOException e) {
             e.printStackTrace();
-            if (exportScriptHandler != null) exportScriptHandler.onError();
         } finally {
             if (fileOutputStream != null) {
                 try {
@@ -264,6 +325,7 @@ public class ScriptSceneListActivity extends AppCompatActivity {
                 }
             }
         }
+        return false;
     }
 
     public void onAddSceneButtonClicked(View view) {
@@ -291,7 +353,7 @@ public class ScriptSceneListActivity extends AppCompatActivity {
                 Scene newScene = new Scene(inputText.getText().toString().trim());
                 script.addScene(newScene);
                 sceneArrayAdapter.notifyDataSetChanged();
-                dbHelper.updateScript(script);
+                repository.saveLater(script, script.getScenes().size() - 1);
             }
         });
 
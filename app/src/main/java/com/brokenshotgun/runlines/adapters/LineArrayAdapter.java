@@ -30,14 +30,40 @@ import androidx.annotation.NonNull;
 
 import com.brokenshotgun.runlines.R;
 import com.brokenshotgun.runlines.model.Actor;
+import com.brokenshotgun.runlines.model.IdIndex;
 import com.brokenshotgun.runlines.model.Line;
 
 import java.util.List;
 import java.util.Random;
 
 public class LineArrayAdapter extends ArrayAdapter<Line> {
+    private final List<Line> lines;
+    private final IdIndex<Line> lineIndex = new IdIndex<>(new IdIndex.IdOf<Line>() {
+        @Override
+        public long idOf(@NonNull Line line) {
+            return line.getId();
+        }
+    });
+
     public LineArrayAdapter(Context context, List<Line> lines) {
         super(context, R.layout.item_line, lines);
+        this.lines = lines;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Line line = getItem(position);
+        return line != null ? line.getId() : position;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public int getPosition(Line item) {
+        return item != null ? lineIndex.indexOf(lines, item.getId()) : -1;
     }
 
     @NonNull
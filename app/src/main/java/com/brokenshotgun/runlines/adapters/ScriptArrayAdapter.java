@@ -26,14 +26,14 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 
 import com.brokenshotgun.runlines.R;
-import com.brokenshotgun.runlines.model.Script;
+import com.brokenshotgun.runlines.model.ScriptSummary;
 
 import java.util.List;
 
-public class ScriptArrayAdapter extends ArrayAdapter<Script> {
+public class ScriptArrayAdapter extends ArrayAdapter<ScriptSummary> {
     private final Context context;
 
-    public ScriptArrayAdapter(Context context, List<Script> objects) {
+    public ScriptArrayAdapter(Context context, List<ScriptSummary> objects) {
         super(context, R.layout.item_script, objects);
         this.context = context;
     }
@@ -55,7 +55,7 @@ public class ScriptArrayAdapter extends ArrayAdapter<Script> {
             viewHolder = (ViewHolder) convertView.getTag();
         }
 
-        Script script = getItem(position);
+        ScriptSummary script = getItem(position);
 
         if (script != null) {
             // Note: this is for backwards compatibility as pre 0.8.5 the name field was nullable
@@ -0,0 +1,1032 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import android.provider.BaseColumns
+import android.util.Log
+import com.brokenshotgun.runlines.data.ScriptReaderContract.ActorEntry
+import com.brokenshotgun.runlines.data.ScriptReaderContract.LineEntry
+import com.brokenshotgun.runlines.data.ScriptReaderContract.SceneEntry
+import com.brokenshotgun.runlines.data.ScriptReaderContract.ScriptEntry
+import com.brokenshotgun.runlines.data.ScriptReaderContract.SearchEntry
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import com.brokenshotgun.runlines.model.ScriptSummary
+import com.brokenshotgun.runlines.model.SearchHit
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.Locale
+import kotlin.math.ln
+
+/**
+ * The [ScriptStore] of the app's database, which reads and writes scripts as rows of the script,
+ * actor, scene and line tables.
+ *
+ * Saves compare the script with the rows already stored and only write the ones that differ, so
+ * changing one line of a long script updates one row. Scenes and lines are stored by their
+ * position, so a line added in the middle of a scene also moves the rows after it.
+ *
+ * Rows from before the tables existed still hold the script as JSON until [ScriptMigrator] gets
+ * to them. Those are read from the JSON, and saving one converts it on the spot.
+ *
+ * A script loaded from its rows is also kept whole in the script row, encoded with [codec], so
+ * opening it again takes one row instead of a query per table, and one scene of it can be decoded
+ * on its own. Every change to the rows clears that copy. By default the copy is the binary
+ * encoding, compressed once it is big enough.
+ *
+ * Lines and scene headings are also kept in a full text index for [search], which triggers on the
+ * line and scene tables keep up to date.
+ */
+class ScriptDao @JvmOverloads constructor(
+        private val dbHelper: SQLiteOpenHelper,
+        private val codec: ScriptCodec = CompressedScriptCodec(BinaryScriptCodec)) : ScriptStore {
+
+    /** Stores a new script with all its scenes and lines and sets its [Script.id]. */
+    override fun insertScript(script: Script): Long {
+        val db = dbHelper.writableDatabase
+        db.beginTransaction()
+        try {
+            val now = System.currentTimeMillis()
+            val values = scriptValues(script)
+            values.put(ScriptEntry.COLUMN_NAME_CREATE_DATE, now)
+            script.id = db.insertOrThrow(ScriptEntry.TABLE_NAME, null, values)
+            insertRows(db, script)
+            updateSummary(db, script.id, now)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        return script.id
+    }
+
+    /**
+     * Converts the JSON row with the given id to rows, within the caller's transaction on [db].
+     * Returns false if the row is gone, already converted or its JSON can't be read.
+     */
+    fun convertLegacyScript(db: SQLiteDatabase, scriptId: Long): Boolean {
+        var createDate = 0L
+        val json = db.query(ScriptEntry.TABLE_NAME,
+                arrayOf(ScriptEntry.COLUMN_NAME_SCRIPT_JSON, ScriptEntry.COLUMN_NAME_CREATE_DATE),
+                "${BaseColumns._ID} = ? AND ${ScriptEntry.COLUMN_NAME_FORMAT} = ${ScriptEntry.FORMAT_JSON}",
+                arrayOf(scriptId.toString()), null, null, null).use { c ->
+            if (!c.moveToFirst()) return false
+            createDate = c.getLong(1)
+            c.getString(0)
+        } ?: return false
+        val script = readJson(json) ?: return false
+        script.id = scriptId
+        convertLegacyScript(db, script, createDate)
+        return true
+    }
+
+    /**
+     * Writes [script] to the row with its id, which still holds it as JSON and has no scenes,
+     * lines or actors yet, and clears the JSON.
+     */
+    private fun convertLegacyScript(db: SQLiteDatabase, script: Script, modifiedDate: Long) {
+        val values = scriptValues(script)
+        values.putNull(ScriptEntry.COLUMN_NAME_SCRIPT_JSON)
+        db.update(ScriptEntry.TABLE_NAME, values, "${BaseColumns._ID} = ?", arrayOf(script.id.toString()))
+        insertRows(db, script)
+        updateSummary(db, script.id, modifiedDate)
+    }
+
+    /**
+     * Counts the stored scenes, lines and text of a row that is in [ScriptEntry.FORMAT_ROWS],
+     * within the caller's transaction on [db]. Returns false if the row is gone or not in that
+     * format.
+     */
+    fun fillSummary(db: SQLiteDatabase, scriptId: Long): Boolean =
+            db.compileStatement(SQL_FILL_SUMMARY).use { update ->
+                update.bindLong(1, scriptId)
+                update.executeUpdateDelete() > 0
+            }
+
+    /**
+     * Adds the lines and scenes of a row that is in [ScriptEntry.FORMAT_SUMMARY] or older to the
+     * search index, within the caller's transaction on [db]. Returns false if the row is gone or
+     * not in [ScriptEntry.FORMAT_SUMMARY], the row is then only indexed.
+     */
+    fun indexScript(db: SQLiteDatabase, scriptId: Long): Boolean {
+        val args = arrayOf<Any>(scriptId)
+        // a save can have indexed some of the rows already
+        db.execSQL(SQL_UNINDEX_LINES, args)
+        db.execSQL(SQL_UNINDEX_SCENES, args)
+        db.execSQL(SQL_INDEX_LINES, args)
+        db.execSQL(SQL_INDEX_SCENES, args)
+        return db.compileStatement(SQL_SET_INDEXED).use { update ->
+            update.bindLong(1, scriptId)
+            update.executeUpdateDelete() > 0
+        }
+    }
+
+    private fun insertRows(db: SQLiteDatabase, script: Script) {
+        val actorIds = syncActors(db, script)
+        for (sceneIndex in script.scenes.indices) {
+            val sceneId = insertScene(db, script.id, sceneIndex, script.scenes[sceneIndex])
+            insertLines(db, script, sceneId, script.scenes[sceneIndex].lines, 0, actorIds)
+        }
+    }
+
+    /** Loads the whole script with the given id, or null if there is none. */
+    override fun loadScript(scriptId: Long): Script? {
+        loadEncoded(scriptId)?.let { bytes ->
+            decode(scriptId, bytes) { codec.decode(it) }?.let { script ->
+                script.id = scriptId
+                return script
+            }
+        }
+
+        // a transaction, so no save comes between loading the rows and keeping the copy of them
+        val db = dbHelper.writableDatabase
+        db.beginTransactionNonExclusive()
+        try {
+            val script = loadScriptRows(db, scriptId)
+            if (script != null) {
+                storeEncoded(db, script)
+            }
+            db.setTransactionSuccessful()
+            return script
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    private fun loadScriptRows(db: SQLiteDatabase, scriptId: Long): Script? {
+        val stored = loadScriptRow(db, scriptId) ?: return null
+        val script = stored.script
+        if (stored.isJson) return script
+        val actors = loadActors(db, script)
+
+        val scenes = mutableMapOf<Long, Scene>()
+        db.query(SceneEntry.TABLE_NAME, SCENE_COLUMNS, "${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ?",
+                arrayOf(scriptId.toString()), null, null, SceneEntry.COLUMN_NAME_POSITION).use { c ->
+            while (c.moveToNext()) {
+                val scene = Scene(c.getString(2), c.getInt(3), ArrayList())
+                scenes[c.getLong(0)] = scene
+                script.scenes.add(scene)
+            }
+        }
+
+        db.rawQuery(SQL_SCRIPT_LINES, arrayOf(scriptId.toString())).use { c ->
+            while (c.moveToNext()) {
+                scenes[c.getLong(1)]?.addLine(readLine(c, actors))
+            }
+        }
+        return script
+    }
+
+    /** Loads one scene of the script with the given id, or null if there is no such scene. */
+    override fun loadScene(scriptId: Long, sceneIndex: Int): Scene? {
+        loadEncoded(scriptId)?.let { bytes ->
+            decode(scriptId, bytes) { codec.decodeScene(it, sceneIndex) }?.let { return it }
+        }
+
+        val db = dbHelper.readableDatabase
+        val stored = loadScriptRow(db, scriptId) ?: return null
+        val script = stored.script
+        if (stored.isJson) return script.scenes.getOrNull(sceneIndex)
+        val actors = loadActors(db, script)
+
+        val sceneId: Long
+        val scene: Scene
+        db.query(SceneEntry.TABLE_NAME, SCENE_COLUMNS,
+                "${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ? AND ${SceneEntry.COLUMN_NAME_POSITION} = ?",
+                arrayOf(scriptId.toString(), sceneIndex.toString()), null, null, null).use { c ->
+            if (!c.moveToFirst()) return null
+            sceneId = c.getLong(0)
+            scene = Scene(c.getString(2), c.getInt(3), ArrayList())
+        }
+
+        db.query(LineEntry.TABLE_NAME, LINE_COLUMNS, "${LineEntry.COLUMN_NAME_SCENE_ID} = ?",
+                arrayOf(sceneId.toString()), null, null, LineEntry.COLUMN_NAME_POSITION).use { c ->
+            while (c.moveToNext()) {
+                scene.addLine(readLine(c, actors))
+            }
+        }
+        return scene
+    }
+
+    /** Loads the script with the given id without the lines of its scenes, see [ScriptStore.loadOutline]. */
+    override fun loadOutline(scriptId: Long): Script? {
+        loadEncoded(scriptId)?.let { bytes ->
+            decode(scriptId, bytes) { codec.decodeOutline(it) { sceneIndex -> lineLoader(scriptId, sceneIndex) } }?.let { script ->
+                script.id = scriptId
+                return script
+            }
+        }
+
+        val db = dbHelper.readableDatabase
+        val stored = loadScriptRow(db, scriptId) ?: return null
+        val script = stored.script
+        if (stored.isJson) return script
+        loadActors(db, script)
+        db.query(SceneEntry.TABLE_NAME, SCENE_COLUMNS, "${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ?",
+                arrayOf(scriptId.toString()), null, null, SceneEntry.COLUMN_NAME_POSITION).use { c ->
+            while (c.moveToNext()) {
+                script.scenes.add(Scene(c.getString(2), c.getInt(3), lineLoader(scriptId, c.getInt(1))))
+            }
+        }
+        return script
+    }
+
+    /** Loads what the script list shows of every script, newest first. */
+    override fun loadSummaries(): List<ScriptSummary> {
+        val db = dbHelper.readableDatabase
+        val summaries = mutableListOf<ScriptSummary>()
+        db.query(ScriptEntry.TABLE_NAME, SUMMARY_COLUMNS, null, null, null, null,
+                "${ScriptEntry.COLUMN_NAME_CREATE_DATE} DESC").use { c ->
+            while (c.moveToNext()) {
+                val scriptId = c.getLong(0)
+                when (c.getInt(7)) {
+                    ScriptEntry.FORMAT_JSON -> {
+                        // only until the migrator gets to it
+                        val script = loadScriptRow(db, scriptId)?.script ?: continue
+                        summaries.add(ScriptSummary.of(script, c.getLong(8)))
+                    }
+                    ScriptEntry.FORMAT_ROWS -> summaries.add(countSummary(db, scriptId, c.getString(1),
+                            c.getString(2), c.getLong(8)))
+                    // summary and newer
+                    else -> summaries.add(ScriptSummary(scriptId, c.getString(1) ?: UNTITLED_SCRIPT,
+                            c.getString(2), c.getInt(3), c.getInt(4), c.getLong(5), c.getLong(6)))
+                }
+            }
+        }
+        return summaries
+    }
+
+    private fun countSummary(db: SQLiteDatabase, scriptId: Long, name: String?, author: String?,
+                             modifiedDate: Long): ScriptSummary =
+            db.rawQuery(SQL_COUNT_SUMMARY, arrayOf(scriptId.toString(), scriptId.toString())).use { c ->
+                c.moveToFirst()
+                ScriptSummary(scriptId, name ?: UNTITLED_SCRIPT, author, c.getInt(0), c.getInt(1),
+                        modifiedDate, c.getLong(2))
+            }
+
+    /**
+     * Finds the lines and scene headings of all scripts that contain every word of [query], each
+     * as a prefix of a word, best matches first. A match on the actor of a line counts for more
+     * than one in its text.
+     */
+    override fun search(query: String, limit: Int): List<SearchHit> {
+        val match = matchExpression(query) ?: return emptyList()
+        val db = dbHelper.readableDatabase
+
+        // matchinfo is cheap enough to rank every match, snippets are only made for the best ones
+        val scores = mutableMapOf<Long, Double>()
+        db.rawQuery(SQL_SEARCH_MATCHES, arrayOf(match)).use { c ->
+            while (c.moveToNext()) {
+                scores[c.getLong(0)] = score(c.getBlob(1))
+            }
+        }
+        val best = scores.entries.sortedByDescending { it.value }.take(limit)
+        if (best.isEmpty()) return emptyList()
+
+        val hits = mutableMapOf<Long, SearchHit>()
+        // the ids are numbers, so they can go in the statement itself
+        val docIds = best.joinToString(",") { it.key.toString() }
+        db.rawQuery("$SQL_SEARCH_HITS AND $SEARCH_DOCID IN ($docIds)", arrayOf(match)).use { c ->
+            while (c.moveToNext()) {
+                val docId = c.getLong(0)
+                hits[docId] = SearchHit(c.getLong(2), c.getString(3) ?: UNTITLED_SCRIPT, c.getInt(4),
+                        if (c.isNull(5)) -1 else c.getInt(5), c.getString(1) ?: "", scores.getValue(docId))
+            }
+        }
+        return best.mapNotNull { hits[it.key] }
+    }
+
+    /** Renames the script without loading it. */
+    override fun renameScript(scriptId: Long, name: String) {
+        val db = dbHelper.writableDatabase
+        db.beginTransaction()
+        try {
+            val stored = loadScriptRow(db, scriptId)
+            if (stored != null && stored.isJson) {
+                stored.script.name = name
+                convertLegacyScript(db, stored.script, System.currentTimeMillis())
+            } else if (stored != null) {
+                val values = ContentValues()
+                values.put(ScriptEntry.COLUMN_NAME_NAME, name)
+                values.put(ScriptEntry.COLUMN_NAME_MODIFIED_DATE, System.currentTimeMillis())
+                values.putNull(ScriptEntry.COLUMN_NAME_SCRIPT_BINARY)
+                db.update(ScriptEntry.TABLE_NAME, values,
+                        "${BaseColumns._ID} = ? AND ${ScriptEntry.COLUMN_NAME_NAME} IS NOT ?",
+                        arrayOf(scriptId.toString(), name))
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    /**
+     * Saves the whole script, writing only the rows that changed. Scenes whose lines were never
+     * loaded keep their stored lines.
+     */
+    override fun updateScript(script: Script) {
+        script.scenes.forEachIndexed { sceneIndex, scene -> loadMovedLines(script, sceneIndex, scene) }
+        save(script) { db -> updateScenes(db, script) }
+    }
+
+    private fun updateScenes(db: SQLiteDatabase, script: Script) {
+        updateScriptRow(db, script)
+        val actorIds = syncActors(db, script)
+
+        val stored = loadSceneRows(db, script.id)
+        // the lines of an outline are mostly not loaded, so only those that are get read
+        val storedLines = if (script.scenes.all { it.isLoaded }) loadScriptLineRows(db, script.id) else null
+        for (sceneIndex in script.scenes.indices) {
+            val scene = script.scenes[sceneIndex]
+            val row = stored.getOrNull(sceneIndex)
+            if (row == null) {
+                val sceneId = insertScene(db, script.id, sceneIndex, scene)
+                insertLines(db, script, sceneId, scene.lines, 0, actorIds)
+            } else {
+                updateSceneRow(db, row, scene)
+                if (!isStoredAt(script, sceneIndex, scene)) {
+                    val storedRows = if (storedLines != null) storedLines[row.id].orEmpty() else loadSceneLineRows(db, row.id)
+                    updateLines(db, script, row.id, scene.lines, storedRows, actorIds)
+                }
+            }
+        }
+        if (stored.size > script.scenes.size) {
+            db.delete(SceneEntry.TABLE_NAME,
+                    "${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ? AND ${SceneEntry.COLUMN_NAME_POSITION} >= ?",
+                    arrayOf(script.id.toString(), script.scenes.size.toString()))
+        }
+
+        deleteUnusedActors(db, script.id)
+    }
+
+    /**
+     * Saves the details and actors of the script and the scene at [sceneIndex], for edits that
+     * stay within one scene.
+     */
+    override fun updateScene(script: Script, sceneIndex: Int) {
+        loadMovedLines(script, sceneIndex, script.scenes[sceneIndex])
+        save(script) { db -> updateScene(db, script, sceneIndex) }
+    }
+
+    /**
+     * Whether [scene], at [sceneIndex] of [script], never had its lines loaded and is stored in
+     * this row, so a save can leave its lines as they are without loading them.
+     */
+    private fun isStoredAt(script: Script, sceneIndex: Int, scene: Scene): Boolean {
+        if (scene.isLoaded) return false
+        val stored = scene.lineLoader as? ScriptStore.StoredLines ?: return false
+        return stored.store === this && stored.scriptId == script.id && stored.sceneIndex == sceneIndex
+    }
+
+    // the lines of a scene that wasn't loaded but has moved, or comes from another store, have to
+    // be loaded before the save changes the rows they are loaded from
+    private fun loadMovedLines(script: Script, sceneIndex: Int, scene: Scene) {
+        if (!scene.isLoaded && !isStoredAt(script, sceneIndex, scene)) {
+            scene.lines
+        }
+    }
+
+    private fun updateScene(db: SQLiteDatabase, script: Script, sceneIndex: Int) {
+        updateScriptRow(db, script)
+        val actorIds = syncActors(db, script)
+
+        val scene = script.scenes[sceneIndex]
+        val row = loadSceneRow(db, script.id, sceneIndex)
+        if (row == null) {
+            val sceneId = insertScene(db, script.id, sceneIndex, scene)
+            insertLines(db, script, sceneId, scene.lines, 0, actorIds)
+        } else {
+            updateSceneRow(db, row, scene)
+            if (!isStoredAt(script, sceneIndex, scene)) {
+                updateLines(db, script, row.id, scene.lines, loadSceneLineRows(db, row.id), actorIds)
+            }
+        }
+
+        deleteUnusedActors(db, script.id)
+    }
+
+    /** Saves the line at [lineIndex] of the scene at [sceneIndex], which is already stored. */
+    override fun updateLine(script: Script, sceneIndex: Int, lineIndex: Int) {
+        save(script) { db ->
+            val line = script.scenes[sceneIndex].lines[lineIndex]
+            val actorId = actorId(db, script, line.actor)
+            val updated = db.update(LineEntry.TABLE_NAME, lineValues(line, actorId),
+                    "${LineEntry.COLUMN_NAME_SCENE_ID} = (SELECT ${BaseColumns._ID} FROM ${SceneEntry.TABLE_NAME} " +
+                            "WHERE ${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ? AND ${SceneEntry.COLUMN_NAME_POSITION} = ?) " +
+                            "AND ${LineEntry.COLUMN_NAME_POSITION} = ?",
+                    arrayOf(script.id.toString(), sceneIndex.toString(), lineIndex.toString()))
+            if (updated == 0) {
+                // the scene was never stored with this many lines
+                updateScene(db, script, sceneIndex)
+            }
+        }
+    }
+
+    /** Saves the name, credits and voices of the script, without its scenes. */
+    override fun updateScriptInfo(script: Script) {
+        save(script) { db ->
+            updateScriptRow(db, script)
+            syncActors(db, script)
+            deleteUnusedActors(db, script.id)
+        }
+    }
+
+    /**
+     * Runs [write] in a transaction, after converting the row of [script] if it is still JSON,
+     * and brings the summary columns up to date if anything was written.
+     */
+    private inline fun save(script: Script, write: (SQLiteDatabase) -> Unit) {
+        val db = dbHelper.writableDatabase
+        db.beginTransaction()
+        try {
+            val changes = totalChanges(db)
+            if (!prepareRow(db, script)) {
+                write(db)
+            }
+            if (totalChanges(db) != changes) {
+                updateSummary(db, script.id, System.currentTimeMillis())
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    private fun totalChanges(db: SQLiteDatabase): Long =
+            db.compileStatement("SELECT total_changes()").use { it.simpleQueryForLong() }
+
+    /** Deletes the script, its scenes, lines and actors go with it. */
+    override fun deleteScript(scriptId: Long) {
+        dbHelper.writableDatabase.delete(ScriptEntry.TABLE_NAME, "${BaseColumns._ID} = ?",
+                arrayOf(scriptId.toString()))
+    }
+
+    /**
+     * Converts the row of [script] with the script itself if it is still JSON, which writes all
+     * of it, and indexes its rows if they aren't yet, as the save marks the row as current.
+     * Returns false if the row is in rows and still needs saving, and true if it was converted
+     * or is gone, a late save of a deleted script does nothing.
+     */
+    private fun prepareRow(db: SQLiteDatabase, script: Script): Boolean {
+        val format = db.query(ScriptEntry.TABLE_NAME, arrayOf(ScriptEntry.COLUMN_NAME_FORMAT),
+                "${BaseColumns._ID} = ?", arrayOf(script.id.toString()), null, null, null).use { c ->
+            if (c.moveToFirst()) c.getInt(0) else null
+        }
+        if (format == null) return true
+        if (format == ScriptEntry.FORMAT_JSON) {
+            convertLegacyScript(db, script, System.currentTimeMillis())
+            return true
+        }
+        if (format < ScriptEntry.FORMAT_INDEXED) {
+            indexScript(db, script.id)
+        }
+        return false
+    }
+
+    private fun readJson(json: String): Script? =
+            try {
+                ScriptJson.fromJson(json)
+            } catch (e: Exception) {
+                Log.e(TAG, e.message, e)
+                null
+            }
+
+    private fun loadScriptRow(db: SQLiteDatabase, scriptId: Long): StoredScript? =
+            db.query(ScriptEntry.TABLE_NAME, SCRIPT_COLUMNS, "${BaseColumns._ID} = ?",
+                    arrayOf(scriptId.toString()), null, null, null).use { c ->
+                if (!c.moveToFirst()) return null
+                if (c.getInt(7) == ScriptEntry.FORMAT_JSON) {
+                    val script = c.getString(8)?.let { readJson(it) } ?: Script("Error")
+                    script.id = scriptId
+                    return StoredScript(script, true)
+                }
+                val script = Script(c.getString(0) ?: UNTITLED_SCRIPT)
+                script.credit = c.getString(1)
+                script.author = c.getString(2)
+                script.source = c.getString(3)
+                script.draftDate = c.getString(4)
+                script.contact = c.getString(5)
+                script.allVoices.addAll(split(c.getString(6)))
+                script.id = scriptId
+                StoredScript(script, false)
+            }
+
+    /** Sets the actors and voices of [script] from its rows and returns the actors by row id. */
+    private fun loadActors(db: SQLiteDatabase, script: Script): Map<Long, Actor> {
+        val actors = mutableMapOf<Long, Actor>()
+        val listed = mutableListOf<Actor>()
+        db.query(ActorEntry.TABLE_NAME, ACTOR_COLUMNS, "${ActorEntry.COLUMN_NAME_SCRIPT_ID} = ?",
+                arrayOf(script.id.toString()), null, null, ActorEntry.COLUMN_NAME_POSITION).use { c ->
+            while (c.moveToNext()) {
+                val name = c.getString(1)
+                val actor = if (name == Actor.ACTION_NAME) Actor.ACTION else Actor(name)
+                actors[c.getLong(0)] = actor
+                if (!c.isNull(2)) {
+                    listed.add(actor)
+                }
+                if (!c.isNull(3)) {
+                    script.assignVoice(name, c.getString(3))
+                }
+            }
+        }
+        if (listed.isNotEmpty()) {
+            script.actors.clear()
+            script.actors.addAll(listed)
+        }
+        return actors
+    }
+
+    private fun readLine(c: android.database.Cursor, actors: Map<Long, Actor>): Line {
+        val line = Line(actors[c.getLong(2)] ?: Actor.ACTION, c.getString(3))
+        line.order = c.getInt(4)
+        line.characterExtensions.addAll(split(c.getString(5)))
+        return line
+    }
+
+    private fun scriptValues(script: Script): ContentValues {
+        val values = ContentValues()
+        values.put(ScriptEntry.COLUMN_NAME_NAME, script.name)
+        values.put(ScriptEntry.COLUMN_NAME_CREDIT, script.credit)
+        values.put(ScriptEntry.COLUMN_NAME_AUTHOR, script.author)
+        values.put(ScriptEntry.COLUMN_NAME_SOURCE, script.source)
+        values.put(ScriptEntry.COLUMN_NAME_DRAFT_DATE, script.draftDate)
+        values.put(ScriptEntry.COLUMN_NAME_CONTACT, script.contact)
+        values.put(ScriptEntry.COLUMN_NAME_ALL_VOICES, join(script.allVoices))
+        return values
+    }
+
+    /**
+     * Counts the stored scenes, lines and text of the script into its row, marks it current and
+     * drops its encoded copy, within the caller's transaction. The counts come from the rows, so
+     * lines that were never loaded don't have to be.
+     */
+    private fun updateSummary(db: SQLiteDatabase, scriptId: Long, modifiedDate: Long) {
+        db.compileStatement(SQL_UPDATE_SUMMARY).use { update ->
+            update.bindLong(1, modifiedDate)
+            update.bindLong(2, scriptId)
+            update.executeUpdateDelete()
+        }
+    }
+
+    private fun loadEncoded(scriptId: Long): ByteArray? =
+            dbHelper.readableDatabase.query(ScriptEntry.TABLE_NAME, arrayOf(ScriptEntry.COLUMN_NAME_SCRIPT_BINARY),
+                    "${BaseColumns._ID} = ? AND ${ScriptEntry.COLUMN_NAME_SCRIPT_BINARY} IS NOT NULL",
+                    arrayOf(scriptId.toString()), null, null, null).use { c ->
+                if (c.moveToFirst()) c.getBlob(0) else null
+            }
+
+    // a copy that can't be decoded, say from a newer version of the app, is read from the rows instead
+    private inline fun <T> decode(scriptId: Long, bytes: ByteArray, read: (ByteArray) -> T): T? =
+            try {
+                read(bytes)
+            } catch (e: RuntimeException) {
+                Log.w(TAG, "Could not decode stored script $scriptId", e)
+                null
+            }
+
+    /** Keeps [script], just loaded from its rows, encoded in its row within the caller's transaction. */
+    private fun storeEncoded(db: SQLiteDatabase, script: Script) {
+        val bytes = codec.encode(script)
+        // rows that big don't fit in a cursor window
+        if (bytes.size > MAX_ENCODED_SIZE) return
+        val values = ContentValues()
+        values.put(ScriptEntry.COLUMN_NAME_SCRIPT_BINARY, bytes)
+        db.update(ScriptEntry.TABLE_NAME, values, "${BaseColumns._ID} = ? AND ${ScriptEntry.COLUMN_NAME_FORMAT} != ?",
+                arrayOf(script.id.toString(), ScriptEntry.FORMAT_JSON.toString()))
+    }
+
+    /** Updates the script row, unless it already holds the same values. */
+    private fun updateScriptRow(db: SQLiteDatabase, script: Script) {
+        val values = scriptValues(script)
+        val args = mutableListOf(script.id.toString())
+        // selection arguments can't be null, so null columns are matched in the clause itself
+        val unchanged = values.keySet().joinToString(" AND ") { column ->
+            val value = values.getAsString(column)
+            if (value == null) {
+                "$column IS NULL"
+            } else {
+                args.add(value)
+                "$column IS ?"
+            }
+        }
+        db.update(ScriptEntry.TABLE_NAME, values, "${BaseColumns._ID} = ? AND NOT ($unchanged)",
+                args.toTypedArray())
+    }
+
+    /**
+     * Makes the actor rows match the actors and voices of the script and returns their ids by
+     * name. Actors that drop out of the list keep their row until [deleteUnusedActors].
+     */
+    private fun syncActors(db: SQLiteDatabase, script: Script): MutableMap<String, Long> {
+        val stored = mutableMapOf<String, ActorRow>()
+        db.query(ActorEntry.TABLE_NAME, ACTOR_COLUMNS, "${ActorEntry.COLUMN_NAME_SCRIPT_ID} = ?",
+                arrayOf(script.id.toString()), null, null, null).use { c ->
+            while (c.moveToNext()) {
+                val row = ActorRow(c.getLong(0), if (c.isNull(2)) null else c.getInt(2), c.getString(3))
+                stored[c.getString(1)] = row
+            }
+        }
+
+        val wanted = LinkedHashMap<String, ActorRow>()
+        for ((position, actor) in script.actors.withIndex()) {
+            if (!wanted.containsKey(actor.name)) {
+                wanted[actor.name] = ActorRow(0, position, null)
+            }
+        }
+        // scripts read from old JSON can be missing the voice fields
+        for ((name, voice) in script.actorVoices.orEmpty()) {
+            val row = wanted[name]
+            wanted[name] = if (row == null) ActorRow(0, null, voice) else row.copy(voice = voice)
+        }
+
+        val ids = mutableMapOf<String, Long>()
+        for ((name, row) in stored) {
+            ids[name] = row.id
+            if (!wanted.containsKey(name) && (row.position != null || row.voice != null)) {
+                val values = ContentValues()
+                values.putNull(ActorEntry.COLUMN_NAME_POSITION)
+                values.putNull(ActorEntry.COLUMN_NAME_VOICE)
+                db.update(ActorEntry.TABLE_NAME, values, "${BaseColumns._ID} = ?", arrayOf(row.id.toString()))
+            }
+        }
+        for ((name, row) in wanted) {
+            val storedRow = stored[name]
+            val values = ContentValues()
+            values.put(ActorEntry.COLUMN_NAME_POSITION, row.position)
+            values.put(ActorEntry.COLUMN_NAME_VOICE, row.voice)
+            if (storedRow == null) {
+                values.put(ActorEntry.COLUMN_NAME_SCRIPT_ID, script.id)
+                values.put(ActorEntry.COLUMN_NAME_NAME, name)
+                ids[name] = db.insertOrThrow(ActorEntry.TABLE_NAME, null, values)
+            } else if (storedRow.position != row.position || storedRow.voice != row.voice) {
+                db.update(ActorEntry.TABLE_NAME, values, "${BaseColumns._ID} = ?", arrayOf(storedRow.id.toString()))
+            }
+        }
+        return ids
+    }
+
+    /** The row id of [actor], adding a row for it if the script has none yet. */
+    private fun actorId(db: SQLiteDatabase, script: Script, actor: Actor): Long {
+        db.query(ActorEntry.TABLE_NAME, arrayOf(BaseColumns._ID),
+                "${ActorEntry.COLUMN_NAME_SCRIPT_ID} = ? AND ${ActorEntry.COLUMN_NAME_NAME} = ?",
+                arrayOf(script.id.toString(), actor.name), null, null, null).use { c ->
+            if (c.moveToFirst()) return c.getLong(0)
+        }
+        val position = script.indexOfActor(actor)
+        val values = ContentValues()
+        values.put(ActorEntry.COLUMN_NAME_SCRIPT_ID, script.id)
+        values.put(ActorEntry.COLUMN_NAME_NAME, actor.name)
+        values.put(ActorEntry.COLUMN_NAME_POSITION, if (position >= 0) position else null)
+        values.put(ActorEntry.COLUMN_NAME_VOICE, script.actorVoices?.get(actor.name))
+        return db.insertOrThrow(ActorEntry.TABLE_NAME, null, values)
+    }
+
+    private fun deleteUnusedActors(db: SQLiteDatabase, scriptId: Long) {
+        db.delete(ActorEntry.TABLE_NAME,
+                "${ActorEntry.COLUMN_NAME_SCRIPT_ID} = ? AND ${ActorEntry.COLUMN_NAME_POSITION} IS NULL " +
+                        "AND ${ActorEntry.COLUMN_NAME_VOICE} IS NULL AND NOT EXISTS (SELECT 1 FROM ${LineEntry.TABLE_NAME} " +
+                        "WHERE ${LineEntry.TABLE_NAME}.${LineEntry.COLUMN_NAME_ACTOR_ID} = ${ActorEntry.TABLE_NAME}.${BaseColumns._ID})",
+                arrayOf(scriptId.toString()))
+    }
+
+    private fun insertScene(db: SQLiteDatabase, scriptId: Long, sceneIndex: Int, scene: Scene): Long {
+        val values = ContentValues()
+        values.put(SceneEntry.COLUMN_NAME_SCRIPT_ID, scriptId)
+        values.put(SceneEntry.COLUMN_NAME_POSITION, sceneIndex)
+        values.put(SceneEntry.COLUMN_NAME_NAME, scene.name)
+        values.put(SceneEntry.COLUMN_NAME_NUMBER, scene.number)
+        return db.insertOrThrow(SceneEntry.TABLE_NAME, null, values)
+    }
+
+    private fun loadSceneRows(db: SQLiteDatabase, scriptId: Long): List<SceneRow> {
+        val rows = mutableListOf<SceneRow>()
+        db.query(SceneEntry.TABLE_NAME, SCENE_COLUMNS, "${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ?",
+                arrayOf(scriptId.toString()), null, null, SceneEntry.COLUMN_NAME_POSITION).use { c ->
+            while (c.moveToNext()) {
+                rows.add(SceneRow(c.getLong(0), c.getString(2), c.getInt(3)))
+            }
+        }
+        return rows
+    }
+
+    private fun loadSceneRow(db: SQLiteDatabase, scriptId: Long, sceneIndex: Int): SceneRow? =
+            db.query(SceneEntry.TABLE_NAME, SCENE_COLUMNS,
+                    "${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ? AND ${SceneEntry.COLUMN_NAME_POSITION} = ?",
+                    arrayOf(scriptId.toString(), sceneIndex.toString()), null, null, null).use { c ->
+                if (c.moveToFirst()) SceneRow(c.getLong(0), c.getString(2), c.getInt(3)) else null
+            }
+
+    private fun updateSceneRow(db: SQLiteDatabase, row: SceneRow, scene: Scene) {
+        if (row.name != scene.name || row.number != scene.number) {
+            val values = ContentValues()
+            values.put(SceneEntry.COLUMN_NAME_NAME, scene.name)
+            values.put(SceneEntry.COLUMN_NAME_NUMBER, scene.number)
+            db.update(SceneEntry.TABLE_NAME, values, "${BaseColumns._ID} = ?", arrayOf(row.id.toString()))
+        }
+    }
+
+    /** The stored lines of every scene of the script, by scene row id and in order. */
+    private fun loadScriptLineRows(db: SQLiteDatabase, scriptId: Long): Map<Long, List<LineRow>> {
+        val rows = mutableMapOf<Long, MutableList<LineRow>>()
+        db.rawQuery(SQL_SCRIPT_LINES, arrayOf(scriptId.toString())).use { c ->
+            while (c.moveToNext()) {
+                rows.getOrPut(c.getLong(1)) { mutableListOf() }.add(readLineRow(c))
+            }
+        }
+        return rows
+    }
+
+    private fun loadSceneLineRows(db: SQLiteDatabase, sceneId: Long): List<LineRow> {
+        val rows = mutableListOf<LineRow>()
+        db.query(LineEntry.TABLE_NAME, LINE_COLUMNS, "${LineEntry.COLUMN_NAME_SCENE_ID} = ?",
+                arrayOf(sceneId.toString()), null, null, LineEntry.COLUMN_NAME_POSITION).use { c ->
+            while (c.moveToNext()) {
+                rows.add(readLineRow(c))
+            }
+        }
+        return rows
+    }
+
+    private fun readLineRow(c: android.database.Cursor) =
+            LineRow(c.getLong(0), c.getLong(2), c.getString(3), c.getInt(4), c.getString(5))
+
+    private fun updateLines(db: SQLiteDatabase, script: Script, sceneId: Long, lines: List<Line>,
+                            stored: List<LineRow>, actorIds: MutableMap<String, Long>) {
+        val common = minOf(lines.size, stored.size)
+        for (i in 0 until common) {
+            val line = lines[i]
+            val row = stored[i]
+            val actorId = actorIds.getOrPut(line.actor.name) { actorId(db, script, line.actor) }
+            if (row.actorId != actorId || row.text != line.line || row.order != line.order
+                    || row.characterExtensions != join(line.characterExtensions)) {
+                db.update(LineEntry.TABLE_NAME, lineValues(line, actorId), "${BaseColumns._ID} = ?",
+                        arrayOf(row.id.toString()))
+            }
+        }
+        if (lines.size > common) {
+            insertLines(db, script, sceneId, lines, common, actorIds)
+        } else if (stored.size > common) {
+            db.delete(LineEntry.TABLE_NAME,
+                    "${LineEntry.COLUMN_NAME_SCENE_ID} = ? AND ${LineEntry.COLUMN_NAME_POSITION} >= ?",
+                    arrayOf(sceneId.toString(), common.toString()))
+        }
+    }
+
+    private fun insertLines(db: SQLiteDatabase, script: Script, sceneId: Long, lines: List<Line>,
+                            from: Int, actorIds: MutableMap<String, Long>) {
+        if (from >= lines.size) return
+        db.compileStatement(SQL_INSERT_LINE).use { insert ->
+            for (i in from until lines.size) {
+                val line = lines[i]
+                insert.clearBindings()
+                insert.bindLong(1, sceneId)
+                insert.bindLong(2, i.toLong())
+                insert.bindLong(3, actorIds.getOrPut(line.actor.name) { actorId(db, script, line.actor) })
+                bindNullable(insert, 4, line.line)
+                insert.bindLong(5, line.order.toLong())
+                bindNullable(insert, 6, join(line.characterExtensions))
+                insert.executeInsert()
+            }
+        }
+    }
+
+    private fun lineValues(line: Line, actorId: Long): ContentValues {
+        val values = ContentValues()
+        values.put(LineEntry.COLUMN_NAME_ACTOR_ID, actorId)
+        values.put(LineEntry.COLUMN_NAME_TEXT, line.line)
+        values.put(LineEntry.COLUMN_NAME_LINE_ORDER, line.order)
+        values.put(LineEntry.COLUMN_NAME_CHARACTER_EXTENSIONS, join(line.characterExtensions))
+        return values
+    }
+
+    private fun bindNullable(statement: android.database.sqlite.SQLiteStatement, index: Int, value: String?) {
+        if (value == null) statement.bindNull(index) else statement.bindString(index, value)
+    }
+
+    private class StoredScript(val script: Script, val isJson: Boolean)
+
+    private data class ActorRow(val id: Long, val position: Int?, val voice: String?)
+
+    private class SceneRow(val id: Long, val name: String?, val number: Int)
+
+    private class LineRow(val id: Long, val actorId: Long, val text: String?, val order: Int,
+                          val characterExtensions: String?)
+
+    companion object {
+        private val TAG = ScriptDao::class.java.name
+        private const val UNTITLED_SCRIPT = "Untitled script"
+        private const val MAX_ENCODED_SIZE = 1024 * 1024
+        private const val SNIPPET_TOKENS = 12
+
+        // the columns of the search index, and how much a match in each of them counts
+        private const val TEXT_COLUMN = 0
+        private const val HEADING_COLUMN = 2
+        private val COLUMN_WEIGHTS = doubleArrayOf(1.0, 2.0, 1.5)
+        private val SCRIPT_ROW_ID = "${ScriptEntry.TABLE_NAME}.${BaseColumns._ID}"
+        private val SEARCH_DOCID = "${SearchEntry.TABLE_NAME}.${SearchEntry.COLUMN_NAME_DOCID}"
+
+        private val SCRIPT_COLUMNS = arrayOf(
+                ScriptEntry.COLUMN_NAME_NAME,
+                ScriptEntry.COLUMN_NAME_CREDIT,
+                ScriptEntry.COLUMN_NAME_AUTHOR,
+                ScriptEntry.COLUMN_NAME_SOURCE,
+                ScriptEntry.COLUMN_NAME_DRAFT_DATE,
+                ScriptEntry.COLUMN_NAME_CONTACT,
+                ScriptEntry.COLUMN_NAME_ALL_VOICES,
+                ScriptEntry.COLUMN_NAME_FORMAT,
+                ScriptEntry.COLUMN_NAME_SCRIPT_JSON)
+
+        private val SUMMARY_COLUMNS = arrayOf(
+                BaseColumns._ID,
+                ScriptEntry.COLUMN_NAME_NAME,
+                ScriptEntry.COLUMN_NAME_AUTHOR,
+                ScriptEntry.COLUMN_NAME_SCENE_COUNT,
+                ScriptEntry.COLUMN_NAME_LINE_COUNT,
+                ScriptEntry.COLUMN_NAME_MODIFIED_DATE,
+                ScriptEntry.COLUMN_NAME_SIZE,
+                ScriptEntry.COLUMN_NAME_FORMAT,
+                ScriptEntry.COLUMN_NAME_CREATE_DATE)
+
+        private val ACTOR_COLUMNS = arrayOf(
+                BaseColumns._ID,
+                ActorEntry.COLUMN_NAME_NAME,
+                ActorEntry.COLUMN_NAME_POSITION,
+                ActorEntry.COLUMN_NAME_VOICE)
+
+        private val SCENE_COLUMNS = arrayOf(
+                BaseColumns._ID,
+                SceneEntry.COLUMN_NAME_POSITION,
+                SceneEntry.COLUMN_NAME_NAME,
+                SceneEntry.COLUMN_NAME_NUMBER)
+
+        // the second column is the scene id, so rows of both queries read the same way
+        private val LINE_COLUMNS = arrayOf(
+                BaseColumns._ID,
+                LineEntry.COLUMN_NAME_SCENE_ID,
+                LineEntry.COLUMN_NAME_ACTOR_ID,
+                LineEntry.COLUMN_NAME_TEXT,
+                LineEntry.COLUMN_NAME_LINE_ORDER,
+                LineEntry.COLUMN_NAME_CHARACTER_EXTENSIONS)
+
+        private val SQL_SCRIPT_LINES =
+                "SELECT l.${BaseColumns._ID}, l.${LineEntry.COLUMN_NAME_SCENE_ID}, l.${LineEntry.COLUMN_NAME_ACTOR_ID}, " +
+                        "l.${LineEntry.COLUMN_NAME_TEXT}, l.${LineEntry.COLUMN_NAME_LINE_ORDER}, " +
+                        "l.${LineEntry.COLUMN_NAME_CHARACTER_EXTENSIONS} " +
+                        "FROM ${SceneEntry.TABLE_NAME} s JOIN ${LineEntry.TABLE_NAME} l " +
+                        "ON l.${LineEntry.COLUMN_NAME_SCENE_ID} = s.${BaseColumns._ID} " +
+                        "WHERE s.${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ? " +
+                        "ORDER BY s.${SceneEntry.COLUMN_NAME_POSITION}, l.${LineEntry.COLUMN_NAME_POSITION}"
+
+        private fun sceneCount(scriptId: String) =
+                "SELECT count(*) FROM ${SceneEntry.TABLE_NAME} WHERE ${SceneEntry.COLUMN_NAME_SCRIPT_ID} = $scriptId"
+
+        private fun linesOf(scriptId: String) =
+                "FROM ${LineEntry.TABLE_NAME} l JOIN ${SceneEntry.TABLE_NAME} s " +
+                        "ON l.${LineEntry.COLUMN_NAME_SCENE_ID} = s.${BaseColumns._ID} " +
+                        "WHERE s.${SceneEntry.COLUMN_NAME_SCRIPT_ID} = $scriptId"
+
+        private val SQL_TEXT_SIZE = "coalesce(sum(length(l.${LineEntry.COLUMN_NAME_TEXT})), 0)"
+
+        // takes the script id twice
+        private val SQL_COUNT_SUMMARY = "SELECT (${sceneCount("?")}), count(*), $SQL_TEXT_SIZE ${linesOf("?")}"
+
+        // takes the modified date and the script id
+        private val SQL_UPDATE_SUMMARY =
+                "UPDATE ${ScriptEntry.TABLE_NAME} SET " +
+                        "${ScriptEntry.COLUMN_NAME_SCENE_COUNT} = (${sceneCount(SCRIPT_ROW_ID)}), " +
+                        "${ScriptEntry.COLUMN_NAME_LINE_COUNT} = (SELECT count(*) ${linesOf(SCRIPT_ROW_ID)}), " +
+                        "${ScriptEntry.COLUMN_NAME_SIZE} = (SELECT $SQL_TEXT_SIZE ${linesOf(SCRIPT_ROW_ID)}), " +
+                        "${ScriptEntry.COLUMN_NAME_MODIFIED_DATE} = ?, " +
+                        "${ScriptEntry.COLUMN_NAME_FORMAT} = ${ScriptEntry.FORMAT_CURRENT}, " +
+                        "${ScriptEntry.COLUMN_NAME_SCRIPT_BINARY} = NULL " +
+                        "WHERE ${BaseColumns._ID} = ?"
+
+        private val SQL_FILL_SUMMARY =
+                "UPDATE ${ScriptEntry.TABLE_NAME} SET " +
+                        "${ScriptEntry.COLUMN_NAME_SCENE_COUNT} = (${sceneCount(SCRIPT_ROW_ID)}), " +
+                        "${ScriptEntry.COLUMN_NAME_LINE_COUNT} = (SELECT count(*) ${linesOf(SCRIPT_ROW_ID)}), " +
+                        "${ScriptEntry.COLUMN_NAME_SIZE} = (SELECT $SQL_TEXT_SIZE ${linesOf(SCRIPT_ROW_ID)}), " +
+                        "${ScriptEntry.COLUMN_NAME_MODIFIED_DATE} = coalesce(${ScriptEntry.COLUMN_NAME_MODIFIED_DATE}, " +
+                        "CAST(${ScriptEntry.COLUMN_NAME_CREATE_DATE} AS INTEGER)), " +
+                        "${ScriptEntry.COLUMN_NAME_FORMAT} = ${ScriptEntry.FORMAT_SUMMARY} " +
+                        "WHERE ${BaseColumns._ID} = ? AND ${ScriptEntry.COLUMN_NAME_FORMAT} = ${ScriptEntry.FORMAT_ROWS}"
+
+        private fun linesOfScript(columns: String) =
+                "SELECT $columns FROM ${LineEntry.TABLE_NAME} l JOIN ${SceneEntry.TABLE_NAME} sc " +
+                        "ON l.${LineEntry.COLUMN_NAME_SCENE_ID} = sc.${BaseColumns._ID} " +
+                        "WHERE sc.${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ?"
+
+        private fun scenesOfScript(columns: String) =
+                "SELECT $columns FROM ${SceneEntry.TABLE_NAME} WHERE ${SceneEntry.COLUMN_NAME_SCRIPT_ID} = ?"
+
+        private val SQL_UNINDEX_LINES = "DELETE FROM ${SearchEntry.TABLE_NAME} WHERE " +
+                "${SearchEntry.COLUMN_NAME_DOCID} IN (${linesOfScript("l.${BaseColumns._ID}")})"
+
+        private val SQL_UNINDEX_SCENES = "DELETE FROM ${SearchEntry.TABLE_NAME} WHERE " +
+                "${SearchEntry.COLUMN_NAME_DOCID} IN (${scenesOfScript("-${BaseColumns._ID}")})"
+
+        private val SQL_INDEX_LINES =
+                "INSERT INTO ${SearchEntry.TABLE_NAME} (${SearchEntry.COLUMN_NAME_DOCID}, " +
+                        "${SearchEntry.COLUMN_NAME_TEXT}, ${SearchEntry.COLUMN_NAME_ACTOR}) " +
+                        linesOfScript("l.${BaseColumns._ID}, l.${LineEntry.COLUMN_NAME_TEXT}, " +
+                                "(SELECT ${ActorEntry.COLUMN_NAME_NAME} FROM ${ActorEntry.TABLE_NAME} " +
+                                "WHERE ${BaseColumns._ID} = l.${LineEntry.COLUMN_NAME_ACTOR_ID})")
+
+        private val SQL_INDEX_SCENES =
+                "INSERT INTO ${SearchEntry.TABLE_NAME} (${SearchEntry.COLUMN_NAME_DOCID}, " +
+                        "${SearchEntry.COLUMN_NAME_HEADING}) " +
+                        scenesOfScript("-${BaseColumns._ID}, ${SceneEntry.COLUMN_NAME_NAME}")
+
+        private val SQL_SET_INDEXED =
+                "UPDATE ${ScriptEntry.TABLE_NAME} SET ${ScriptEntry.COLUMN_NAME_FORMAT} = ${ScriptEntry.FORMAT_INDEXED} " +
+                        "WHERE ${BaseColumns._ID} = ? AND ${ScriptEntry.COLUMN_NAME_FORMAT} = ${ScriptEntry.FORMAT_SUMMARY}"
+
+        private val SQL_SEARCH_MATCHES =
+                "SELECT ${SearchEntry.COLUMN_NAME_DOCID}, matchinfo(${SearchEntry.TABLE_NAME}, 'pcnx') " +
+                        "FROM ${SearchEntry.TABLE_NAME} WHERE ${SearchEntry.TABLE_NAME} MATCH ?"
+
+        private fun snippet(column: Int) =
+                "snippet(${SearchEntry.TABLE_NAME}, '${SearchHit.MATCH_START}', '${SearchHit.MATCH_END}', " +
+                        "'\u2026', $column, $SNIPPET_TOKENS)"
+
+        // a line finds its scene through its row, a scene heading by its negated docid. Lines
+        // show their text even when only the actor matched.
+        private val SQL_SEARCH_HITS =
+                "SELECT $SEARCH_DOCID, CASE WHEN $SEARCH_DOCID > 0 THEN ${snippet(TEXT_COLUMN)} ELSE ${snippet(HEADING_COLUMN)} END, " +
+                        "sc.${BaseColumns._ID}, sc.${ScriptEntry.COLUMN_NAME_NAME}, " +
+                        "coalesce(ls.${SceneEntry.COLUMN_NAME_POSITION}, hs.${SceneEntry.COLUMN_NAME_POSITION}), " +
+                        "l.${LineEntry.COLUMN_NAME_POSITION} " +
+                        "FROM ${SearchEntry.TABLE_NAME} " +
+                        "LEFT JOIN ${LineEntry.TABLE_NAME} l ON l.${BaseColumns._ID} = $SEARCH_DOCID " +
+                        "LEFT JOIN ${SceneEntry.TABLE_NAME} ls ON ls.${BaseColumns._ID} = l.${LineEntry.COLUMN_NAME_SCENE_ID} " +
+                        "LEFT JOIN ${SceneEntry.TABLE_NAME} hs ON hs.${BaseColumns._ID} = -$SEARCH_DOCID " +
+                        "JOIN ${ScriptEntry.TABLE_NAME} sc ON sc.${BaseColumns._ID} = " +
+                        "coalesce(ls.${SceneEntry.COLUMN_NAME_SCRIPT_ID}, hs.${SceneEntry.COLUMN_NAME_SCRIPT_ID}) " +
+                        "WHERE ${SearchEntry.TABLE_NAME} MATCH ?"
+
+        private val SQL_INSERT_LINE =
+                "INSERT INTO ${LineEntry.TABLE_NAME} (${LineEntry.COLUMN_NAME_SCENE_ID}, ${LineEntry.COLUMN_NAME_POSITION}, " +
+                        "${LineEntry.COLUMN_NAME_ACTOR_ID}, ${LineEntry.COLUMN_NAME_TEXT}, ${LineEntry.COLUMN_NAME_LINE_ORDER}, " +
+                        "${LineEntry.COLUMN_NAME_CHARACTER_EXTENSIONS}) VALUES (?, ?, ?, ?, ?, ?)"
+
+        /**
+         * Turns what the user typed into a full text query that matches rows containing every
+         * word as a prefix, or null if it has no words. Everything but letters and digits is
+         * dropped, so the query syntax can't be used by accident.
+         */
+        internal fun matchExpression(query: String): String? {
+            val words = query.split(Regex("[^\\p{L}\\p{N}]+")).filter { it.isNotEmpty() }
+            // in lower case, AND, OR, NOT and NEAR are words rather than operators
+            return if (words.isEmpty()) null else words.joinToString(" ") { "${it.toLowerCase(Locale.ROOT)}*" }
+        }
+
+        /**
+         * Scores a row from its matchinfo 'pcnx' blob: for each word and column, the hits of the
+         * word in that column of this row, weighted by [COLUMN_WEIGHTS] and by how few rows of
+         * the library have the word in that column, so a rare word counts for more than a common one.
+         */
+        internal fun score(matchInfo: ByteArray): Double {
+            val info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer()
+            val phrases = info.get(0)
+            val columns = info.get(1)
+            val rows = info.get(2).toDouble()
+            var score = 0.0
+            for (phrase in 0 until phrases) {
+                for (column in 0 until columns) {
+                    val at = 3 + 3 * (phrase * columns + column)
+                    val hitsInRow = info.get(at)
+                    val rowsWithHits = info.get(at + 2)
+                    if (hitsInRow > 0 && rowsWithHits > 0) {
+                        score += COLUMN_WEIGHTS.getOrElse(column) { 1.0 } * hitsInRow * ln(1 + rows / rowsWithHits)
+                    }
+                }
+            }
+            return score
+        }
+
+        /** Joins a list of single line strings into one column, null for an empty list. */
+        internal fun join(values: List<String>?): String? =
+                if (values.isNullOrEmpty()) null else values.joinToString("\n")
+
+        internal fun split(value: String?): List<String> =
+                if (value.isNullOrEmpty()) emptyList() else value.split('\n')
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import android.provider.BaseColumns
+import android.util.Log
+import com.brokenshotgun.runlines.data.ScriptReaderContract.ScriptEntry
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Brings script rows stored in an older format up to [ScriptEntry.FORMAT_CURRENT] on a background
+ * thread, so a database upgrade only has to add tables and never waits on the scripts themselves.
+ *
+ * Every row keeps its own format, and each row is converted in its own transaction, so the work
+ * picks up where it left off if the process dies. Rows are taken in batches with a pause in
+ * between to let the app's own saves through. Until a row is converted [ScriptDao] reads it in
+ * its old format.
+ */
+class ScriptMigrator @JvmOverloads constructor(
+        private val dbHelper: SQLiteOpenHelper,
+        private val dao: ScriptDao,
+        private val batchSize: Int = DEFAULT_BATCH_SIZE) {
+
+    /** Converts a row from one format to the next within the caller's transaction. */
+    fun interface Step {
+        /** Returns false if the row can't be converted, it is then left as it is. */
+        fun migrate(db: SQLiteDatabase, scriptId: Long): Boolean
+    }
+
+    // steps by the format they start from, a new format adds a step from the one before it
+    private val steps = mapOf(
+            ScriptEntry.FORMAT_JSON to Step { db, scriptId -> dao.convertLegacyScript(db, scriptId) },
+            ScriptEntry.FORMAT_ROWS to Step { db, scriptId -> dao.fillSummary(db, scriptId) },
+            ScriptEntry.FORMAT_SUMMARY to Step { db, scriptId -> dao.indexScript(db, scriptId) })
+
+    // rows that failed are skipped for the rest of the run
+    private var lastScriptId = 0L
+
+    /** Starts converting on a background thread, unless a migrator is already running. */
+    fun start() {
+        if (!running.compareAndSet(false, true)) return
+        val thread = Thread({
+            try {
+                migrateAll()
+            } catch (e: Exception) {
+                Log.e(TAG, "Script migration stopped", e)
+            } finally {
+                running.set(false)
+            }
+        }, "ScriptMigrator")
+        thread.priority = Thread.MIN_PRIORITY
+        thread.start()
+    }
+
+    /** Converts every row that needs it, on the calling thread. */
+    fun migrateAll() {
+        var converted = 0
+        while (true) {
+            val batch = migrateBatch()
+            if (batch < 0) break
+            converted += batch
+            Thread.sleep(BATCH_PAUSE_MS)
+        }
+        if (converted > 0) {
+            Log.d(TAG, "Converted $converted scripts")
+        }
+    }
+
+    /**
+     * Converts the next batch of rows and returns how many were converted, or -1 when no rows
+     * were left to try.
+     */
+    fun migrateBatch(): Int {
+        val db = dbHelper.writableDatabase
+        val scriptIds = db.query(ScriptEntry.TABLE_NAME, arrayOf(BaseColumns._ID),
+                "${ScriptEntry.COLUMN_NAME_FORMAT} < ${ScriptEntry.FORMAT_CURRENT} AND ${BaseColumns._ID} > ?",
+                arrayOf(lastScriptId.toString()), null, null, BaseColumns._ID, batchSize.toString()).use { c ->
+            val ids = mutableListOf<Long>()
+            while (c.moveToNext()) {
+                ids.add(c.getLong(0))
+            }
+            ids
+        }
+        if (scriptIds.isEmpty()) return -1
+
+        var converted = 0
+        for (scriptId in scriptIds) {
+            if (migrate(db, scriptId)) {
+                converted++
+            } else {
+                Log.w(TAG, "Could not convert script $scriptId")
+            }
+            lastScriptId = scriptId
+        }
+        return converted
+    }
+
+    /** The number of rows still in an older format. */
+    fun pendingCount(): Long =
+            dbHelper.readableDatabase.rawQuery("SELECT count(*) FROM ${ScriptEntry.TABLE_NAME} " +
+                    "WHERE ${ScriptEntry.COLUMN_NAME_FORMAT} < ${ScriptEntry.FORMAT_CURRENT}", null).use { c ->
+                if (c.moveToFirst()) c.getLong(0) else 0L
+            }
+
+    private fun migrate(db: SQLiteDatabase, scriptId: Long): Boolean {
+        db.beginTransaction()
+        try {
+            // the app may have saved, and so converted, or deleted the row since it was picked
+            var format = format(db, scriptId) ?: return true
+            while (format < ScriptEntry.FORMAT_CURRENT) {
+                val step = steps[format] ?: return false
+                if (!step.migrate(db, scriptId)) return false
+                format = format(db, scriptId) ?: return false
+            }
+            db.setTransactionSuccessful()
+            return true
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    private fun format(db: SQLiteDatabase, scriptId: Long): Int? =
+            db.query(ScriptEntry.TABLE_NAME, arrayOf(ScriptEntry.COLUMN_NAME_FORMAT), "${BaseColumns._ID} = ?",
+                    arrayOf(scriptId.toString()), null, null, null).use { c ->
+                if (c.moveToFirst()) c.getInt(0) else null
+            }
+
+    companion object {
+        private val TAG = ScriptMigrator::class.java.name
+        private const val DEFAULT_BATCH_SIZE = 4
+        private const val BATCH_PAUSE_MS = 50L
+
+        private val running = AtomicBoolean()
+    }
+}
@@ -24,7 +24,83 @@ public final class ScriptReaderContract {
 
     static abstract class ScriptEntry implements BaseColumns {
         static final String TABLE_NAME = "script";
+        /** The whole script as Gson JSON, only set on rows from before the tables below. */
         static final String COLUMN_NAME_SCRIPT_JSON = "script_json";
         static final String COLUMN_NAME_CREATE_DATE = "create_date";
+        static final String COLUMN_NAME_NAME = "name";
+        static final String COLUMN_NAME_CREDIT = "credit";
+        static final String COLUMN_NAME_AUTHOR = "author";
+        static final String COLUMN_NAME_SOURCE = "source";
+        static final String COLUMN_NAME_DRAFT_DATE = "draft_date";
+        static final String COLUMN_NAME_CONTACT = "contact";
+        /** Voice names, one per line. */
+        static final String COLUMN_NAME_ALL_VOICES = "all_voices";
+        static final String COLUMN_NAME_SCENE_COUNT = "scene_count";
+        static final String COLUMN_NAME_LINE_COUNT = "line_count";
+        /** Milliseconds since the epoch. */
+        static final String COLUMN_NAME_MODIFIED_DATE = "modified_date";
+        /** Characters of line text. */
+        static final String COLUMN_NAME_SIZE = "size";
+        /**
+         * The whole script as encoded by the codec of {@code ScriptDao}, a copy of the rows made
+         * when the script is loaded and cleared by every change to them.
+         */
+        static final String COLUMN_NAME_SCRIPT_BINARY = "script_binary";
+        /** How the row stores its script, one of the {@code FORMAT_} values. */
+        static final String COLUMN_NAME_FORMAT = "format";
+
+        /** The script is in {@link #COLUMN_NAME_SCRIPT_JSON}. */
+        static final int FORMAT_JSON = 1;
+        /** The script is in the actor, scene and line tables. */
+        static final int FORMAT_ROWS = 2;
+        /** As {@link #FORMAT_ROWS}, with the scene count, line count, size and modified date set. */
+        static final int FORMAT_SUMMARY = 3;
+        /** As {@link #FORMAT_SUMMARY}, with the lines and scenes in {@link SearchEntry}. */
+        static final int FORMAT_INDEXED = 4;
+        static final int FORMAT_CURRENT = FORMAT_INDEXED;
+    }
+
+    /**
+     * Actors of a script. The position is the index in {@code Script.getActors()}, null for an
+     * actor that is only referenced by lines or only has a voice assigned.
+     */
+    static abstract class ActorEntry implements BaseColumns {
+        static final String TABLE_NAME = "actor";
+        static final String COLUMN_NAME_SCRIPT_ID = "script_id";
+        static final String COLUMN_NAME_POSITION = "position";
+        static final String COLUMN_NAME_NAME = "name";
+        static final String COLUMN_NAME_VOICE = "voice";
+    }
+
+    static abstract class SceneEntry implements BaseColumns {
+        static final String TABLE_NAME = "scene";
+        static final String COLUMN_NAME_SCRIPT_ID = "script_id";
+        static final String COLUMN_NAME_POSITION = "position";
+        static final String COLUMN_NAME_NAME = "name";
+        static final String COLUMN_NAME_NUMBER = "number";
+    }
+
+    static abstract class LineEntry implements BaseColumns {
+        static final String TABLE_NAME = "line";
+        static final String COLUMN_NAME_SCENE_ID = "scene_id";
+        static final String COLUMN_NAME_POSITION = "position";
+        static final String COLUMN_NAME_ACTOR_ID = "actor_id";
+        static final String COLUMN_NAME_TEXT = "text";
+        static final String COLUMN_NAME_LINE_ORDER = "line_order";
+        /** Character extensions, one per line. */
+        static final String COLUMN_NAME_CHARACTER_EXTENSIONS = "character_extensions";
+    }
+
+    /**
+     * The full text index of lines and scene headings, an FTS4 table kept up to date by triggers
+     * on the line and scene tables. A line is indexed with its text and actor under the line's
+     * row id, a scene with its heading under the negated row id of the scene.
+     */
+    static abstract class SearchEntry {
+        static final String TABLE_NAME = "search";
+        static final String COLUMN_NAME_DOCID = "docid";
+        static final String COLUMN_NAME_TEXT = "text";
+        static final String COLUMN_NAME_ACTOR = "actor";
+        static final String COLUMN_NAME_HEADING = "heading";
     }
 }
@@ -16,149 +16,297 @@
 
 package com.brokenshotgun.runlines.data;
 
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import com.brokenshotgun.runlines.model.Script;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.brokenshotgun.runlines.model.ScriptSummary;
+import com.brokenshotgun.runlines.model.SearchHit;
 
-import java.util.ArrayList;
 import java.util.List;
 
+import static com.brokenshotgun.runlines.data.ScriptReaderContract.ActorEntry;
+import static com.brokenshotgun.runlines.data.ScriptReaderContract.LineEntry;
+import static com.brokenshotgun.runlines.data.ScriptReaderContract.SceneEntry;
+import static com.brokenshotgun.runlines.data.ScriptReaderContract.SearchEntry;
 import static com.brokenshotgun.runlines.data.ScriptReaderContract.ScriptEntry;
 
 public class ScriptReaderDbHelper extends SQLiteOpenHelper {
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 6;
     private static final String DATABASE_NAME = "ScriptReader.db";
+    private static final int SEARCH_LIMIT = 50;
 
     private static final String TEXT_TYPE = " TEXT";
+    private static final String INTEGER_TYPE = " INTEGER";
+    private static final String BLOB_TYPE = " BLOB";
     private static final String COMMA_SEP = ",";
 
+    // rows from before version 3 hold JSON, or were converted if the JSON is gone
+    private static final String SQL_FORMAT_COLUMN_TYPE =
+            INTEGER_TYPE + " NOT NULL DEFAULT " + ScriptEntry.FORMAT_JSON;
+
     private static final String SQL_CREATE_SCRIPT_TABLE =
             "CREATE TABLE " + ScriptEntry.TABLE_NAME + " (" +
                     ScriptEntry._ID + " INTEGER PRIMARY KEY," +
                     ScriptEntry.COLUMN_NAME_SCRIPT_JSON + TEXT_TYPE + COMMA_SEP +
-                    ScriptEntry.COLUMN_NAME_CREATE_DATE + TEXT_TYPE +
+                    ScriptEntry.COLUMN_NAME_CREATE_DATE + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_NAME + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_CREDIT + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_AUTHOR + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_SOURCE + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_DRAFT_DATE + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_CONTACT + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_ALL_VOICES + TEXT_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_FORMAT + SQL_FORMAT_COLUMN_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_SCENE_COUNT + INTEGER_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_LINE_COUNT + INTEGER_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_MODIFIED_DATE + INTEGER_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_SIZE + INTEGER_TYPE + COMMA_SEP +
+                    ScriptEntry.COLUMN_NAME_SCRIPT_BINARY + BLOB_TYPE +
+                    " )";
+
+    // columns added to the script table in version 2
+    private static final String[] SCRIPT_COLUMNS_V2 = {
+            ScriptEntry.COLUMN_NAME_NAME,
+            ScriptEntry.COLUMN_NAME_CREDIT,
+            ScriptEntry.COLUMN_NAME_AUTHOR,
+            ScriptEntry.COLUMN_NAME_SOURCE,
+            ScriptEntry.COLUMN_NAME_DRAFT_DATE,
+            ScriptEntry.COLUMN_NAME_CONTACT,
+            ScriptEntry.COLUMN_NAME_ALL_VOICES,
+    };
+
+    // summary columns added to the script table in version 4
+    private static final String[] SCRIPT_COLUMNS_V4 = {
+            ScriptEntry.COLUMN_NAME_SCENE_COUNT,
+            ScriptEntry.COLUMN_NAME_LINE_COUNT,
+            ScriptEntry.COLUMN_NAME_MODIFIED_DATE,
+            ScriptEntry.COLUMN_NAME_SIZE,
+    };
+
+    private static final String SQL_CREATE_ACTOR_TABLE =
+            "CREATE TABLE " + ActorEntry.TABLE_NAME + " (" +
+                    ActorEntry._ID + " INTEGER PRIMARY KEY," +
+                    ActorEntry.COLUMN_NAME_SCRIPT_ID + INTEGER_TYPE + " NOT NULL REFERENCES " +
+                    ScriptEntry.TABLE_NAME + "(" + ScriptEntry._ID + ") ON DELETE CASCADE" + COMMA_SEP +
+                    ActorEntry.COLUMN_NAME_POSITION + INTEGER_TYPE + COMMA_SEP +
+                    ActorEntry.COLUMN_NAME_NAME + TEXT_TYPE + " NOT NULL" + COMMA_SEP +
+                    ActorEntry.COLUMN_NAME_VOICE + TEXT_TYPE + COMMA_SEP +
+                    "UNIQUE (" + ActorEntry.COLUMN_NAME_SCRIPT_ID + COMMA_SEP + ActorEntry.COLUMN_NAME_NAME + ")" +
+                    " )";
+
+    private static final String SQL_CREATE_SCENE_TABLE =
+            "CREATE TABLE " + SceneEntry.TABLE_NAME + " (" +
+                    SceneEntry._ID + " INTEGER PRIMARY KEY," +
+                    SceneEntry.COLUMN_NAME_SCRIPT_ID + INTEGER_TYPE + " NOT NULL REFERENCES " +
+                    ScriptEntry.TABLE_NAME + "(" + ScriptEntry._ID + ") ON DELETE CASCADE" + COMMA_SEP +
+                    SceneEntry.COLUMN_NAME_POSITION + INTEGER_TYPE + " NOT NULL" + COMMA_SEP +
+                    SceneEntry.COLUMN_NAME_NAME + TEXT_TYPE + COMMA_SEP +
+                    SceneEntry.COLUMN_NAME_NUMBER + INTEGER_TYPE +
                     " )";
 
-    private static final String SQL_DELETE_SCRIPT_TABLE =
-            "DROP TABLE IF EXISTS " + ScriptEntry.TABLE_NAME;
+    private static final String SQL_CREATE_SCENE_INDEX =
+            "CREATE INDEX scene_script_position ON " + SceneEntry.TABLE_NAME + " (" +
+                    SceneEntry.COLUMN_NAME_SCRIPT_ID + COMMA_SEP + SceneEntry.COLUMN_NAME_POSITION + ")";
+
+    private static final String SQL_CREATE_LINE_TABLE =
+            "CREATE TABLE " + LineEntry.TABLE_NAME + " (" +
+                    LineEntry._ID + " INTEGER PRIMARY KEY," +
+                    LineEntry.COLUMN_NAME_SCENE_ID + INTEGER_TYPE + " NOT NULL REFERENCES " +
+                    SceneEntry.TABLE_NAME + "(" + SceneEntry._ID + ") ON DELETE CASCADE" + COMMA_SEP +
+                    LineEntry.COLUMN_NAME_POSITION + INTEGER_TYPE + " NOT NULL" + COMMA_SEP +
+                    LineEntry.COLUMN_NAME_ACTOR_ID + INTEGER_TYPE + " NOT NULL REFERENCES " +
+                    ActorEntry.TABLE_NAME + "(" + ActorEntry._ID + ")" + COMMA_SEP +
+                    LineEntry.COLUMN_NAME_TEXT + TEXT_TYPE + COMMA_SEP +
+                    LineEntry.COLUMN_NAME_LINE_ORDER + INTEGER_TYPE + COMMA_SEP +
+                    LineEntry.COLUMN_NAME_CHARACTER_EXTENSIONS + TEXT_TYPE +
+                    " )";
 
-    private Gson gson;
+    private static final String SQL_CREATE_LINE_INDEX =
+            "CREATE INDEX line_scene_position ON " + LineEntry.TABLE_NAME + " (" +
+                    LineEntry.COLUMN_NAME_SCENE_ID + COMMA_SEP + LineEntry.COLUMN_NAME_POSITION + ")";
+
+    // deleting an actor checks the lines that point at it
+    private static final String SQL_CREATE_LINE_ACTOR_INDEX =
+            "CREATE INDEX line_actor ON " + LineEntry.TABLE_NAME + " (" + LineEntry.COLUMN_NAME_ACTOR_ID + ")";
+
+    private static final String SQL_CREATE_SEARCH_TABLE =
+            "CREATE VIRTUAL TABLE " + SearchEntry.TABLE_NAME + " USING fts4(" +
+                    SearchEntry.COLUMN_NAME_TEXT + COMMA_SEP +
+                    SearchEntry.COLUMN_NAME_ACTOR + COMMA_SEP +
+                    SearchEntry.COLUMN_NAME_HEADING + ")";
+
+    private static final String SQL_LINE_ACTOR_NAME =
+            "(SELECT " + ActorEntry.COLUMN_NAME_NAME + " FROM " + ActorEntry.TABLE_NAME +
+                    " WHERE " + ActorEntry._ID + " = new." + LineEntry.COLUMN_NAME_ACTOR_ID + ")";
+
+    // scripts saved or converted are indexed by these, older ones by ScriptMigrator
+    private static final String[] SQL_CREATE_SEARCH_TRIGGERS = {
+            "CREATE TRIGGER line_search_insert AFTER INSERT ON " + LineEntry.TABLE_NAME + " BEGIN " +
+                    "INSERT INTO " + SearchEntry.TABLE_NAME + " (" + SearchEntry.COLUMN_NAME_DOCID + COMMA_SEP +
+                    SearchEntry.COLUMN_NAME_TEXT + COMMA_SEP + SearchEntry.COLUMN_NAME_ACTOR + ") VALUES (new." +
+                    LineEntry._ID + COMMA_SEP + "new." + LineEntry.COLUMN_NAME_TEXT + COMMA_SEP +
+                    SQL_LINE_ACTOR_NAME + "); END",
+            "CREATE TRIGGER line_search_update AFTER UPDATE OF " + LineEntry.COLUMN_NAME_TEXT + COMMA_SEP +
+                    LineEntry.COLUMN_NAME_ACTOR_ID + " ON " + LineEntry.TABLE_NAME + " BEGIN " +
+                    "UPDATE " + SearchEntry.TABLE_NAME + " SET " + SearchEntry.COLUMN_NAME_TEXT + " = new." +
+                    LineEntry.COLUMN_NAME_TEXT + COMMA_SEP + SearchEntry.COLUMN_NAME_ACTOR + " = " +
+                    SQL_LINE_ACTOR_NAME + " WHERE " + SearchEntry.COLUMN_NAME_DOCID + " = new." + LineEntry._ID +
+                    "; END",
+            "CREATE TRIGGER line_search_delete AFTER DELETE ON " + LineEntry.TABLE_NAME + " BEGIN " +
+                    "DELETE FROM " + SearchEntry.TABLE_NAME + " WHERE " + SearchEntry.COLUMN_NAME_DOCID +
+                    " = old." + LineEntry._ID + "; END",
+            "CREATE TRIGGER scene_search_insert AFTER INSERT ON " + SceneEntry.TABLE_NAME + " BEGIN " +
+                    "INSERT INTO " + SearchEntry.TABLE_NAME + " (" + SearchEntry.COLUMN_NAME_DOCID + COMMA_SEP +
+                    SearchEntry.COLUMN_NAME_HEADING + ") VALUES (-new." + SceneEntry._ID + COMMA_SEP +
+                    "new." + SceneEntry.COLUMN_NAME_NAME + "); END",
+            "CREATE TRIGGER scene_search_update AFTER UPDATE OF " + SceneEntry.COLUMN_NAME_NAME + " ON " +
+                    SceneEntry.TABLE_NAME + " BEGIN " +
+                    "UPDATE " + SearchEntry.TABLE_NAME + " SET " + SearchEntry.COLUMN_NAME_HEADING + " = new." +
+                    SceneEntry.COLUMN_NAME_NAME + " WHERE " + SearchEntry.COLUMN_NAME_DOCID + " = -new." +
+                    SceneEntry._ID + "; END",
+            "CREATE TRIGGER scene_search_delete AFTER DELETE ON " + SceneEntry.TABLE_NAME + " BEGIN " +
+                    "DELETE FROM " + SearchEntry.TABLE_NAME + " WHERE " + SearchEntry.COLUMN_NAME_DOCID +
+                    " = -old." + SceneEntry._ID + "; END",
+    };
+
+    private final CompressedScriptCodec codec = new CompressedScriptCodec(BinaryScriptCodec.INSTANCE);
+    private final ScriptDao dao;
+    private final ScriptMigrator migrator;
 
     public ScriptReaderDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // lets the list and scenes load while the migrator writes
+        setWriteAheadLoggingEnabled(true);
+
+        dao = new ScriptDao(this, codec);
+        migrator = new ScriptMigrator(this, dao);
+    }
 
-        gson = new GsonBuilder().create();
+    /** Converts scripts still stored in an older format on a background thread. */
+    public void startMigration() {
+        migrator.start();
     }
 
     public void insertScript(Script script) {
-        SQLiteDatabase db = getWritableDatabase();
+        dao.insertScript(script);
+    }
 
-        ContentValues sValues = new ContentValues();
-        sValues.put(ScriptEntry.COLUMN_NAME_SCRIPT_JSON, serialize(script));
-        sValues.put(ScriptEntry.COLUMN_NAME_CREATE_DATE, System.currentTimeMillis());
+    /** Saves every scene of the script, only rows that changed are written. */
+    public void updateScript(Script script) {
+        dao.updateScript(script);
+    }
 
-        long newScriptId;
-        newScriptId = db.insert(
-                ScriptEntry.TABLE_NAME,
-                null,
-                sValues);
+    /** Saves the script details, its actors and the scene at {@code sceneIndex}. */
+    public void updateScene(Script script, int sceneIndex) {
+        dao.updateScene(script, sceneIndex);
+    }
 
-        script.id = newScriptId;
+    /** Saves a single line that is already stored, for an edit that touched nothing else. */
+    public void updateLine(Script script, int sceneIndex, int lineIndex) {
+        dao.updateLine(script, sceneIndex, lineIndex);
     }
 
-    public void updateScript(Script script) {
-        SQLiteDatabase db = getReadableDatabase();
+    /** Saves the name, credits and voices of the script without touching its scenes. */
+    public void updateScriptInfo(Script script) {
+        dao.updateScriptInfo(script);
+    }
 
-        ContentValues values = new ContentValues();
-        values.put(ScriptEntry.COLUMN_NAME_SCRIPT_JSON, serialize(script));
+    /** Renames the script without loading its scenes. */
+    public void renameScript(long scriptId, String name) {
+        dao.renameScript(scriptId, name);
+    }
 
-        String selection = ScriptEntry._ID + " = ?";
-        String[] selectionArgs = {String.valueOf(script.id)};
+    public void deleteScript(Script script) {
+        deleteScript(script.id);
+    }
 
-        db.update(
-                ScriptEntry.TABLE_NAME,
-                values,
-                selection,
-                selectionArgs);
+    public void deleteScript(long scriptId) {
+        dao.deleteScript(scriptId);
     }
 
-    public void deleteScript(Script script) {
-        SQLiteDatabase db = getWritableDatabase();
-
-        String selection = ScriptEntry._ID + " = ?";
-        String[] selectionArgs = {String.valueOf(script.id)};
-
-        db.delete(
-                ScriptEntry.TABLE_NAME,
-                selection,
-                selectionArgs);
-    }
-
-    public List<Script> getScripts() {
-        List<Script> results = new ArrayList<>();
-
-        SQLiteDatabase db = getReadableDatabase();
-
-        String[] projection = {
-                ScriptEntry._ID,
-                ScriptEntry.COLUMN_NAME_SCRIPT_JSON,
-        };
-
-        String sortOrder =
-                ScriptEntry.COLUMN_NAME_CREATE_DATE + " DESC";
-
-        try (Cursor c = db.query(
-                ScriptEntry.TABLE_NAME,
-                projection,
-                null,
-                null,
-                null,
-                null,
-                sortOrder
-        )) {
-            while (c.moveToNext()) {
-                long scriptId = c.getLong(0);
-                String scriptJson = c.getString(1);
-                Script script = deserialize(scriptJson);
-                script.id = scriptId;
-                results.add(script);
-            }
-        }
+    public Script getScript(long scriptId) {
+        return dao.loadScript(scriptId);
+    }
 
-        return results;
+    /** What the script list shows of every script, newest first, without loading any scenes. */
+    public List<ScriptSummary> getScriptSummaries() {
+        return dao.loadSummaries();
     }
 
-    private String serialize(Script script) {
-        return gson.toJson(script);
+    /** The lines and scene headings of all scripts that match {@code query}, best first. */
+    public List<SearchHit> search(String query) {
+        return dao.search(query, SEARCH_LIMIT);
     }
 
-    private Script deserialize(String json) {
-        try {
-            return gson.fromJson(json, Script.class);
-        } catch (Exception e) {
-            Log.e(ScriptReaderDbHelper.class.getName(), e.getMessage(), e);
-            return new Script("Error");
-        }
+    /** The scripts in this database, for code that works with any {@link ScriptStore}. */
+    public ScriptStore getStore() {
+        return dao;
+    }
+
+    /** How much compressing the stored copies of loaded scripts saved, and what it cost. */
+    public CompressedScriptCodec.Stats getCompressionStats() {
+        return codec.getStats();
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(SQL_CREATE_SCRIPT_TABLE);
+        createScriptContentTables(db);
+        createSearchTable(db);
+    }
+
+    private void createScriptContentTables(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_ACTOR_TABLE);
+        db.execSQL(SQL_CREATE_SCENE_TABLE);
+        db.execSQL(SQL_CREATE_SCENE_INDEX);
+        db.execSQL(SQL_CREATE_LINE_TABLE);
+        db.execSQL(SQL_CREATE_LINE_INDEX);
+        db.execSQL(SQL_CREATE_LINE_ACTOR_INDEX);
+    }
+
+    private void createSearchTable(SQLiteDatabase db) {
+        db.execSQL(SQL_CREATE_SEARCH_TABLE);
+        for (String trigger : SQL_CREATE_SEARCH_TRIGGERS) {
+            db.execSQL(trigger);
+        }
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // TODO: handle this when the time comes to insure db version bump upgrades gracefully
-        Log.d(ScriptReaderDbHelper.class.getName(), ">>> onUpgrade!");
-        db.execSQL(SQL_DELETE_SCRIPT_TABLE);
-        onCreate(db);
+        Log.d(ScriptReaderDbHelper.class.getName(), ">>> onUpgrade " + oldVersion + " -> " + newVersion);
+        // only the schema changes here, ScriptMigrator converts the rows after the database is open
+        if (oldVersion < 2) {
+            for (String column : SCRIPT_COLUMNS_V2) {
+                db.execSQL("ALTER TABLE " + ScriptEntry.TABLE_NAME + " ADD COLUMN " + column + TEXT_TYPE);
+            }
+            createScriptContentTables(db);
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + ScriptEntry.TABLE_NAME + " ADD COLUMN " +
+                    ScriptEntry.COLUMN_NAME_FORMAT + SQL_FORMAT_COLUMN_TYPE);
+            db.execSQL("UPDATE " + ScriptEntry.TABLE_NAME + " SET " + ScriptEntry.COLUMN_NAME_FORMAT + " = " +
+                    ScriptEntry.FORMAT_ROWS + " WHERE " + ScriptEntry.COLUMN_NAME_SCRIPT_JSON + " IS NULL");
+        }
+        if (oldVersion < 4) {
+            for (String column : SCRIPT_COLUMNS_V4) {
+                db.execSQL("ALTER TABLE " + ScriptEntry.TABLE_NAME + " ADD COLUMN " + column + INTEGER_TYPE);
+            }
+        }
+        if (oldVersion < 5) {
+            db.execSQL("ALTER TABLE " + ScriptEntry.TABLE_NAME + " ADD COLUMN " +
+                    ScriptEntry.COLUMN_NAME_SCRIPT_BINARY + BLOB_TYPE);
+        }
+        if (oldVersion < 6) {
+            createSearchTable(db);
+        }
     }
 
     @Override
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.SharedPreferences
+import android.content.res.Configuration
+import android.os.Handler
+import android.os.Looper
+import android.util.Log
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import com.brokenshotgun.runlines.model.ScriptSummary
+import com.brokenshotgun.runlines.model.SearchHit
+import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Loads and saves scripts off the UI thread. There is one repository, and so one database
+ * helper, per process.
+ *
+ * Writes run one at a time, in order, on a single writer thread. Reads run on a small pool and
+ * wait for the writes queued before them, so a load always sees the saves made before it. Scripts
+ * are copied on the calling thread before they are saved, so the UI can keep editing them while
+ * the save runs. Callbacks are delivered on the main thread.
+ *
+ * Quick edits such as renaming a scene can be saved with [saveLater] instead. Saves of the same
+ * script within [saveDelayMs] of the first one are merged into a single write, which
+ * [flushSaves] forces out early. Loads and saves of a script first write its delayed saves, so
+ * apart from [insertScript] the repository is only used from the main thread.
+ *
+ * Scripts are kept in the database, or in files of their own when the user picks that with
+ * [setFileStoreEnabled], see [ScriptStore].
+ */
+class ScriptRepository internal constructor(
+        private val databaseStore: ScriptStore,
+        private val fileStore: ScriptStore,
+        private val preferences: SharedPreferences,
+        private val mainHandler: Handler,
+        // where callbacks run, tests without a main looper pass one that runs them right away
+        private val callbackExecutor: Executor = Executor { mainHandler.post(it) }) {
+
+    /** Receives the result of a load or save on the main thread. */
+    fun interface Callback<T> {
+        fun onResult(result: T)
+    }
+
+    private val writer: ExecutorService = Executors.newSingleThreadExecutor(threadFactory("ScriptWriter"))
+    private val readers: ExecutorService = Executors.newFixedThreadPool(READER_COUNT, threadFactory("ScriptReader"))
+
+    // the last write queued, reads wait for it
+    @Volatile
+    private var lastWrite: Future<*> = FutureTask<Unit> {}.apply { run() }
+
+    /** The scripts open in the app's activities. */
+    val sessions = ScriptSessions(this, mainHandler)
+
+    // the store scripts were kept in when the process started, read by the first task to need it
+    // as reading the preferences waits for them to load from disk
+    private val initialStore = lazy { if (preferences.getBoolean(KEY_FILE_STORE, false)) fileStore else databaseStore }
+
+    // the store the last move queued goes to, null until the user picks one
+    @Volatile
+    private var pickedStore: ScriptStore? = null
+
+    init {
+        // so the menu knows the store before the first load asks for it
+        readers.execute { initialStore.value }
+    }
+
+    // saves waiting for the delay to pass, by script id
+    private val pendingSaves = LinkedHashMap<Long, PendingSave>()
+    private val flushTask = Runnable { flushSaves() }
+
+    /** How long a save waits for more saves of the same script to merge with. */
+    var saveDelayMs = DEFAULT_SAVE_DELAY_MS
+
+    /** The number of saves that were merged into another one instead of being written. */
+    var mergedSaveCount = 0
+        private set
+
+    fun loadSummaries(callback: Callback<List<ScriptSummary>>): Future<List<ScriptSummary>> {
+        flushSaves()
+        val store = queuedStore()
+        return read(callback) { store().loadSummaries() }
+    }
+
+    /** Loads the whole script, the callback gets null if it no longer exists. */
+    fun loadScript(scriptId: Long, callback: Callback<Script?>?): Future<Script?> {
+        flushSave(scriptId)
+        val store = queuedStore()
+        return read(callback) { store().loadScript(scriptId) }
+    }
+
+    /**
+     * Loads the script without the lines of its scenes, each loads its own on the calling thread
+     * when they are first used, see [ScriptStore.loadOutline]. The callback gets null if it no
+     * longer exists.
+     */
+    fun loadOutline(scriptId: Long, callback: Callback<Script?>?): Future<Script?> {
+        flushSave(scriptId)
+        val store = queuedStore()
+        return read(callback) { store().loadOutline(scriptId) }
+    }
+
+    /**
+     * Loads the lines of [scene], a scene of the script that isn't loaded, with its own
+     * [Scene.LineLoader], so they are what the scene would load on its own. The scene isn't
+     * changed, the callback hands the lines to it with [Scene.setLoadedLines]. The callback gets
+     * null if the scene is gone.
+     */
+    fun loadLines(scriptId: Long, scene: Scene, callback: Callback<List<Line>?>?): Future<List<Line>?> {
+        flushSave(scriptId)
+        val lineLoader = scene.lineLoader
+        return read(callback) { lineLoader?.loadLines() }
+    }
+
+    /**
+     * Loads the whole script and writes it as Fountain text, which loads the scenes an outline
+     * doesn't hold off the UI thread. The callback gets null if the script no longer exists.
+     */
+    fun exportScript(scriptId: Long, callback: Callback<String?>): Future<String?> {
+        flushSave(scriptId)
+        val store = queuedStore()
+        return read(callback) { store().loadScript(scriptId)?.let { FountainSerializer.serialize(it) } }
+    }
+
+    /** Searches the lines and scene headings of every script, see [ScriptStore.search]. */
+    fun search(query: String, callback: Callback<List<SearchHit>>): Future<List<SearchHit>> {
+        flushSaves()
+        val store = queuedStore()
+        return read(callback) { store().search(query, SEARCH_LIMIT) }
+    }
+
+    /** Stores a new script. Its id is set on the main thread before the callback runs. */
+    fun insertScript(script: Script, callback: Callback<Script>?): Future<Long> {
+        val copy = snapshot(script)
+        val store = queuedStore()
+        return write(Callback<Long> { id ->
+            script.id = id
+            callback?.onResult(script)
+        }) { store().insertScript(copy) }
+    }
+
+    /**
+     * Saves the scenes at [sceneIndexes] of [script] after [saveDelayMs], together with any other
+     * saves of it made in the meantime. Without indexes the whole script is saved.
+     */
+    fun saveLater(script: Script, vararg sceneIndexes: Int) {
+        var pending = pendingSaves[script.id]
+        if (pending != null && pending.script !== script) {
+            // another copy of the script, its edits aren't in this one
+            pendingSaves.remove(script.id)
+            save(pending)
+            pending = null
+        }
+        if (pending == null) {
+            pending = PendingSave(script)
+            pendingSaves[script.id] = pending
+            if (pendingSaves.size == 1) {
+                mainHandler.postDelayed(flushTask, saveDelayMs)
+            }
+        } else {
+            mergedSaveCount++
+        }
+        if (sceneIndexes.isEmpty()) {
+            pending.wholeScript = true
+        } else {
+            sceneIndexes.forEach { pending.sceneIndexes.add(it) }
+        }
+    }
+
+    /** Writes the saves made with [saveLater] now, for when the activity that made them pauses. */
+    fun flushSaves() {
+        mainHandler.removeCallbacks(flushTask)
+        if (pendingSaves.isEmpty()) return
+        val saves = pendingSaves.values.toList()
+        pendingSaves.clear()
+        saves.forEach { save(it) }
+        Log.d(TAG, "Wrote ${saves.size} delayed saves, $mergedSaveCount merged so far")
+    }
+
+    // a save made now has to come after the delayed saves of the same script
+    private fun flushSave(scriptId: Long) {
+        pendingSaves.remove(scriptId)?.let { save(it) }
+        if (pendingSaves.isEmpty()) {
+            mainHandler.removeCallbacks(flushTask)
+        }
+    }
+
+    private fun save(pending: PendingSave) {
+        if (!pending.wholeScript && pending.sceneIndexes.size == 1) {
+            updateScene(pending.script, pending.sceneIndexes.first(), null)
+        } else {
+            updateScript(pending.script, null)
+        }
+    }
+
+    fun updateScript(script: Script, callback: Callback<Script>?): Future<Unit> {
+        flushSave(script.id)
+        val copy = snapshot(script)
+        val store = queuedStore()
+        return write(callback?.let { cb -> Callback<Unit> { cb.onResult(script) } }) { store().updateScript(copy) }
+    }
+
+    fun updateScene(script: Script, sceneIndex: Int, callback: Callback<Script>?): Future<Unit> {
+        flushSave(script.id)
+        val copy = snapshot(script)
+        val store = queuedStore()
+        return write(callback?.let { cb -> Callback<Unit> { cb.onResult(script) } }) { store().updateScene(copy, sceneIndex) }
+    }
+
+    fun updateLine(script: Script, sceneIndex: Int, lineIndex: Int): Future<Unit> {
+        flushSave(script.id)
+        val copy = snapshot(script)
+        val store = queuedStore()
+        return write(null) { store().updateLine(copy, sceneIndex, lineIndex) }
+    }
+
+    fun updateScriptInfo(script: Script): Future<Unit> {
+        flushSave(script.id)
+        val copy = snapshot(script)
+        val store = queuedStore()
+        return write(null) { store().updateScriptInfo(copy) }
+    }
+
+    fun renameScript(scriptId: Long, name: String): Future<Unit> {
+        flushSave(scriptId)
+        val store = queuedStore()
+        return write(null) { store().renameScript(scriptId, name) }
+    }
+
+    fun deleteScript(scriptId: Long): Future<Unit> {
+        pendingSaves.remove(scriptId)
+        val store = queuedStore()
+        return write(null) { store().deleteScript(scriptId) }
+    }
+
+    /** Whether scripts are kept in files of their own rather than in the database. */
+    val isFileStoreEnabled: Boolean
+        get() = (pickedStore ?: if (initialStore.isInitialized()) initialStore.value else null) === fileStore
+
+    /**
+     * Moves every script to files of their own, or back to the database, and keeps new ones there.
+     * Files load long scripts and single scenes faster, the database lists and searches a big
+     * library faster. The callback gets the number of scripts moved. Moved scripts get new ids,
+     * so nothing should hold on to the id of one while they move.
+     */
+    fun setFileStoreEnabled(enabled: Boolean, callback: Callback<Int>?): Future<Int> {
+        flushSaves()
+        val source = queuedStore()
+        val target = if (enabled) fileStore else databaseStore
+        pickedStore = target
+        return write(callback) {
+            if (source() === target) {
+                0
+            } else {
+                val moved = move(source(), target)
+                Log.d(TAG, "Moved $moved scripts to the ${if (enabled) "file" else "database"} store")
+                moved
+            }
+        }
+    }
+
+    private fun move(source: ScriptStore, target: ScriptStore): Int {
+        // left over from a move the process didn't live to finish
+        for (summary in target.loadSummaries()) {
+            target.deleteScript(summary.id)
+        }
+        // oldest first, so the list keeps its order
+        val summaries = source.loadSummaries().asReversed()
+        for (summary in summaries) {
+            source.loadScript(summary.id)?.let { target.insertScript(it) }
+        }
+        // only once the target has all of them, the source still has them if this doesn't happen
+        preferences.edit().putBoolean(KEY_FILE_STORE, target === fileStore).commit()
+        for (summary in summaries) {
+            source.deleteScript(summary.id)
+        }
+        return summaries.size
+    }
+
+    // taken when a task is queued, so tasks queued before a move use the store they were queued for
+    private fun queuedStore(): () -> ScriptStore {
+        val picked = pickedStore ?: return { initialStore.value }
+        return { picked }
+    }
+
+    private fun <T> read(callback: Callback<T>?, load: () -> T): Future<T> {
+        val after = lastWrite
+        return readers.submit(Callable {
+            try {
+                after.get()
+            } catch (e: ExecutionException) {
+                // the write logged its failure, the read only waits for it to be over
+            }
+            deliver(callback, logErrors(load))
+        })
+    }
+
+    private fun <T> write(callback: Callback<T>?, save: () -> T): Future<T> {
+        val future = writer.submit(Callable { deliver(callback, logErrors(save)) })
+        lastWrite = future
+        return future
+    }
+
+    // a failed task only ends up in its future, which callers rarely check
+    private fun <T> logErrors(task: () -> T): T =
+            try {
+                task()
+            } catch (e: RuntimeException) {
+                Log.e(TAG, e.message, e)
+                throw e
+            }
+
+    private fun <T> deliver(callback: Callback<T>?, result: T): T {
+        if (callback != null) {
+            callbackExecutor.execute { callback.onResult(result) }
+        }
+        return result
+    }
+
+    private fun threadFactory(name: String): ThreadFactory {
+        val count = AtomicInteger()
+        return ThreadFactory { runnable ->
+            val thread = Thread(runnable, "$name-${count.incrementAndGet()}")
+            thread.isDaemon = true
+            thread
+        }
+    }
+
+    private class PendingSave(val script: Script) {
+        var wholeScript = false
+        val sceneIndexes = LinkedHashSet<Int>()
+    }
+
+    companion object {
+        private val TAG = ScriptRepository::class.java.name
+        private const val READER_COUNT = 2
+        private const val DEFAULT_SAVE_DELAY_MS = 1000L
+        private const val SEARCH_LIMIT = 50
+        private const val PREFERENCES_NAME = "script_repository"
+        private const val KEY_FILE_STORE = "file_store"
+        private const val FILE_STORE_DIRECTORY = "scripts"
+
+        @Volatile
+        private var instance: ScriptRepository? = null
+
+        @JvmStatic
+        fun getInstance(context: Context): ScriptRepository =
+                instance ?: synchronized(this) {
+                    instance ?: create(context.applicationContext).also { instance = it }
+                }
+
+        private fun create(context: Context): ScriptRepository {
+            val dbHelper = ScriptReaderDbHelper(context)
+            dbHelper.startMigration()
+            val repository = ScriptRepository(dbHelper.store, FileScriptStore(File(context.filesDir, FILE_STORE_DIRECTORY)),
+                    context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE),
+                    Handler(Looper.getMainLooper()))
+            context.registerComponentCallbacks(object : ComponentCallbacks2 {
+                override fun onTrimMemory(level: Int) {
+                    if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                        repository.sessions.trimMemory()
+                    }
+                }
+
+                override fun onLowMemory() {
+                    repository.sessions.trimMemory()
+                }
+
+                override fun onConfigurationChanged(newConfig: Configuration) {}
+            })
+            return repository
+        }
+
+        /**
+         * Copies the parts of [script] a save reads, so the copy can be saved on another thread
+         * while the original is edited. Actors are immutable and shared, and so are the loaders of
+         * scenes whose lines aren't loaded.
+         */
+        internal fun snapshot(script: Script): Script {
+            val copy = Script(script)
+            copy.scenes.clear()
+            for (scene in script.scenes) {
+                copy.scenes.add(Scene(scene))
+            }
+            return copy
+        }
+    }
+}
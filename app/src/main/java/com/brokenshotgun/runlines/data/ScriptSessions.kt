@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import android.os.Handler
+import android.util.Log
+import com.brokenshotgun.runlines.model.Script
+
+/**
+ * The scripts open in the app's activities, by id. Activities pass each other only the id of the
+ * script they show, and each [acquire] it in `onCreate` and [release] it in `onDestroy`, so they
+ * all show the same [Script] and nothing as big as a script has to fit in an intent. An editor
+ * changes a copy of it, see [com.brokenshotgun.runlines.model.ScriptEdit], until it keeps them.
+ *
+ * A script is loaded from the [ScriptRepository] by the first activity to acquire it, which is
+ * also what happens when the process was killed and the activities are recreated on their own.
+ * It is dropped once the last activity releases it. Releases wait for the next pass of the main
+ * loop, so an activity recreated for a configuration change acquires the script again before it
+ * is dropped instead of loading it once more.
+ *
+ * Scripts are loaded without the lines of their scenes, see [ScriptRepository.loadOutline]. An
+ * activity that shows one scene acquires it with the script, which loads its lines before the
+ * activity gets the script and keeps them until it is released. The lines of the other scenes are
+ * dropped again by [trimMemory] when the system runs low on memory.
+ *
+ * Sessions are only used from the main thread.
+ */
+class ScriptSessions internal constructor(
+        private val repository: ScriptRepository,
+        private val mainHandler: Handler) {
+
+    private class Session {
+        var script: Script? = null
+        var loaded = false
+        var references = 0
+        // the number of activities showing each scene, by its index
+        val openScenes = HashMap<Int, Int>()
+        val waiting = mutableListOf<Pair<Int, ScriptRepository.Callback<Script?>>>()
+    }
+
+    private val sessions = HashMap<Long, Session>()
+
+    /**
+     * Takes a reference to the script and hands it to the callback, right away if it is open
+     * already and once it is loaded otherwise. The callback gets null if the script no longer
+     * exists, the reference must still be released.
+     */
+    fun acquire(scriptId: Long, callback: ScriptRepository.Callback<Script?>) = acquire(scriptId, NO_SCENE, callback)
+
+    /**
+     * As [acquire], for an activity that shows the scene at [sceneIndex]. The callback gets the
+     * script once the lines of that scene are loaded, they stay loaded until it is released with
+     * [release] for the same scene.
+     */
+    fun acquire(scriptId: Long, sceneIndex: Int, callback: ScriptRepository.Callback<Script?>) {
+        var session = sessions[scriptId]
+        if (session == null) {
+            session = Session()
+            sessions[scriptId] = session
+            load(scriptId, session)
+        }
+        session.references++
+        if (sceneIndex != NO_SCENE) {
+            session.openScenes[sceneIndex] = (session.openScenes[sceneIndex] ?: 0) + 1
+        }
+
+        if (session.loaded) {
+            deliver(scriptId, session, sceneIndex, callback)
+        } else {
+            session.waiting.add(sceneIndex to callback)
+        }
+    }
+
+    /** Gives up a reference taken with [acquire]. */
+    fun release(scriptId: Long) = release(scriptId, NO_SCENE)
+
+    /** Gives up a reference taken with [acquire] for the scene at [sceneIndex]. */
+    fun release(scriptId: Long, sceneIndex: Int) {
+        mainHandler.post {
+            val session = sessions[scriptId] ?: return@post
+            val open = session.openScenes[sceneIndex]
+            if (open != null) {
+                if (open > 1) session.openScenes[sceneIndex] = open - 1 else session.openScenes.remove(sceneIndex)
+            }
+            if (--session.references <= 0) {
+                sessions.remove(scriptId)
+            }
+        }
+    }
+
+    /**
+     * Drops the lines of the scenes no activity shows, they are loaded again when they are used.
+     * Returns how many scenes were dropped.
+     */
+    fun trimMemory(): Int {
+        var released = 0
+        for (session in sessions.values) {
+            val script = session.script ?: continue
+            for ((sceneIndex, scene) in script.scenes.withIndex()) {
+                if (!session.openScenes.containsKey(sceneIndex) && scene.release()) {
+                    released++
+                }
+            }
+        }
+        if (released > 0) {
+            Log.d(TAG, "Released the lines of $released scenes")
+        }
+        return released
+    }
+
+    private fun load(scriptId: Long, session: Session) {
+        repository.loadOutline(scriptId, ScriptRepository.Callback { script ->
+            // released by everyone before the load finished
+            if (sessions[scriptId] !== session) return@Callback
+            session.script = script
+            session.loaded = true
+            val waiting = session.waiting.toList()
+            session.waiting.clear()
+            for ((sceneIndex, callback) in waiting) {
+                deliver(scriptId, session, sceneIndex, callback)
+            }
+        })
+    }
+
+    private fun deliver(scriptId: Long, session: Session, sceneIndex: Int, callback: ScriptRepository.Callback<Script?>) {
+        val script = session.script
+        val scene = script?.scenes?.getOrNull(sceneIndex)
+        if (scene == null || scene.isLoaded) {
+            callback.onResult(script)
+            return
+        }
+
+        // off the main thread, and after the saves queued before it
+        repository.loadLines(scriptId, scene, ScriptRepository.Callback { lines ->
+            if (sessions[scriptId] !== session) return@Callback
+            if (script?.scenes?.getOrNull(sceneIndex) !== scene) {
+                // replaced while it loaded, such as by an actor replacement, load the new one
+                deliver(scriptId, session, sceneIndex, callback)
+                return@Callback
+            }
+            lines?.let { scene.setLoadedLines(it) }
+            callback.onResult(script)
+        })
+    }
+
+    companion object {
+        private val TAG = ScriptSessions::class.java.name
+
+        /** The scene index of an activity that doesn't show one scene. */
+        const val NO_SCENE = -1
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.brokenshotgun.runlines.data.ScriptParcelFormat;
+
+/**
+ * Carries a {@link Script} in a parcel. The model lives in the plain JVM core module, so the
+ * Android parceling is kept here instead of on the model classes themselves, and the layout is
+ * {@link ScriptParcelFormat}'s.
+ */
+public class ParcelableScript implements Parcelable {
+    private final Script script;
+    private final boolean packScenes;
+
+    public ParcelableScript(@NonNull Script script) {
+        this(script, false);
+    }
+
+    /**
+     * With {@code packScenes} the script is written as a single byte array, which is smaller and
+     * quicker to copy for long scripts.
+     */
+    public ParcelableScript(@NonNull Script script, boolean packScenes) {
+        this.script = script;
+        this.packScenes = packScenes;
+    }
+
+    @NonNull
+    public Script getScript() {
+        return script;
+    }
+
+    /** Returns the script carried by {@code parcelable}, or null if there is none. */
+    @Nullable
+    public static Script unwrap(@Nullable Parcelable parcelable) {
+        return parcelable instanceof ParcelableScript ? ((ParcelableScript) parcelable).script : null;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(final Parcel dest, int flags) {
+        ScriptParcelFormat.INSTANCE.write(script, new ScriptParcelFormat.Writer() {
+            @Override
+            public void writeInt(int value) {
+                dest.writeInt(value);
+            }
+
+            @Override
+            public void writeLong(long value) {
+                dest.writeLong(value);
+            }
+
+            @Override
+            public void writeString(@Nullable String value) {
+                dest.writeString(value);
+            }
+
+            @Override
+            public void writeByteArray(@Nullable byte[] value) {
+                dest.writeByteArray(value);
+            }
+        }, packScenes);
+    }
+
+    private ParcelableScript(final Parcel in) {
+        script = ScriptParcelFormat.INSTANCE.read(new ScriptParcelFormat.Reader() {
+            @Override
+            public int readInt() {
+                return in.readInt();
+            }
+
+            @Override
+            public long readLong() {
+                return in.readLong();
+            }
+
+            @Nullable
+            @Override
+            public String readString() {
+                return in.readString();
+            }
+
+            @Nullable
+            @Override
+            public byte[] createByteArray() {
+                return in.createByteArray();
+            }
+        });
+        packScenes = false;
+    }
+
+    public static final Creator<ParcelableScript> CREATOR = new Creator<ParcelableScript>() {
+        @Override
+        public ParcelableScript createFromParcel(Parcel source) {
+            return new ParcelableScript(source);
+        }
+
+        @Override
+        public ParcelableScript[] newArray(int size) {
+            return new ParcelableScript[size];
+        }
+    };
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import android.content.SharedPreferences
+
+/** Preferences without anything stored, so a repository keeps scripts in its first store. */
+internal class EmptyPreferences : SharedPreferences {
+    override fun getBoolean(key: String?, defValue: Boolean) = defValue
+    override fun contains(key: String?) = false
+    override fun getAll(): MutableMap<String, *> = HashMap<String, Any>()
+    override fun getString(key: String?, defValue: String?) = defValue
+    override fun getStringSet(key: String?, defValues: MutableSet<String>?) = defValues
+    override fun getInt(key: String?, defValue: Int) = defValue
+    override fun getLong(key: String?, defValue: Long) = defValue
+    override fun getFloat(key: String?, defValue: Float) = defValue
+    override fun edit(): SharedPreferences.Editor = throw UnsupportedOperationException()
+    override fun registerOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener?) {}
+    override fun unregisterOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener?) {}
+}
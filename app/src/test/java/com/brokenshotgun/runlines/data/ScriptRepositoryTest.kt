@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import android.os.Handler
+import android.os.Looper
+import com.brokenshotgun.runlines.model.Script
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+class ScriptRepositoryTest {
+    @Test
+    fun testLoadAfterFailedSaveCallsBack() {
+        val store = object : ScriptStore by InMemoryScriptStore() {
+            override fun updateScript(script: Script) = throw IllegalStateException("disk full")
+        }
+        val repository = ScriptRepository(store, InMemoryScriptStore(), EmptyPreferences(),
+                Handler(Looper.getMainLooper()), Executor { it.run() })
+        val script = Script("Test")
+        repository.insertScript(script, null).get()
+
+        val save = repository.updateScript(script, null)
+        val loaded = arrayOfNulls<Script>(1)
+        val calledBack = CountDownLatch(1)
+        repository.loadScript(script.id) { result ->
+            loaded[0] = result
+            calledBack.countDown()
+        }
+
+        assertTrue(calledBack.await(10, TimeUnit.SECONDS))
+        assertEquals("Test", loaded[0]?.name)
+        try {
+            save.get()
+            fail("The save should have failed")
+        } catch (e: ExecutionException) {
+            assertTrue(e.cause is IllegalStateException)
+        }
+    }
+}
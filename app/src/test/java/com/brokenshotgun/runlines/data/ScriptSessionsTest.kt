@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import android.os.Handler
+import android.os.Looper
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class ScriptSessionsTest {
+    // stands in for the main thread, the test runs the callbacks from it one at a time
+    private val mainQueue = LinkedBlockingQueue<Runnable>()
+    private val repository = ScriptRepository(InMemoryScriptStore(), InMemoryScriptStore(), EmptyPreferences(),
+            Handler(Looper.getMainLooper()), Executor { mainQueue.add(it) })
+
+    private val bob = Actor("BOB")
+    private val alice = Actor("ALICE")
+
+    @Test
+    fun testSceneReplacedWhileLoadingGetsItsOwnLines() {
+        val scriptId = insertScript()
+        val script = acquire(scriptId)
+
+        var delivered: Script? = null
+        repository.sessions.acquire(scriptId, 1) { delivered = it }
+        // the scene isn't loaded, so it is replaced by one that replaces the actor as it loads
+        script.replaceActor(bob, alice)
+        runMain()
+        runMain()
+
+        assertTrue(delivered === script)
+        assertTrue(script.getScene(1).isLoaded)
+        assertEquals("ALICE", script.getScene(1).lines[0].actor.name)
+    }
+
+    @Test
+    fun testSceneLoadedAfterActorReplacementHasTheReplacement() {
+        val scriptId = insertScript()
+        val script = acquire(scriptId)
+        script.replaceActor(bob, alice)
+        assertTrue(!script.getScene(2).isLoaded)
+
+        var delivered: Script? = null
+        repository.sessions.acquire(scriptId, 2) { delivered = it }
+        runMain()
+
+        assertTrue(delivered === script)
+        assertTrue(script.getScene(2).isLoaded)
+        assertEquals("ALICE", script.getScene(2).lines[0].actor.name)
+        assertTrue(!script.getScene(2).hasLinesOf(bob))
+    }
+
+    private fun insertScript(): Long {
+        val script = Script("Test")
+        script.addActor(bob)
+        script.addActor(alice)
+        for (i in 0 until 3) {
+            val scene = Scene("SCENE $i")
+            scene.addLine(Line(bob, "Line $i"))
+            script.addScene(scene)
+        }
+        val scriptId = repository.insertScript(script, null).get()
+        // where the id is set on the script
+        runMain()
+        return scriptId
+    }
+
+    /** Acquires the script without a scene, which loads it without the lines of its scenes. */
+    private fun acquire(scriptId: Long): Script {
+        var delivered: Script? = null
+        repository.sessions.acquire(scriptId) { delivered = it }
+        runMain()
+        return delivered!!
+    }
+
+    private fun runMain() {
+        mainQueue.poll(10, TimeUnit.SECONDS)!!.run()
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.benchmark
+
+import com.brokenshotgun.runlines.data.BinaryScriptCodec
+import com.brokenshotgun.runlines.data.FountainSerializer
+import com.brokenshotgun.runlines.data.JsonScriptCodec
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.concurrent.TimeUnit
+
+/**
+ * Encoding and decoding a whole script with [BinaryScriptCodec] against the JSON of
+ * [JsonScriptCodec], and decoding one scene of it. The encoded sizes are printed by the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class CodecBenchmark {
+    @Param(TestScripts.BIG_FISH, TestScripts.LAST_BIRTHDAY_CARD, TestScripts.BRICK_AND_STEEL)
+    @JvmField
+    var scriptName = ""
+
+    @Param("1", "10")
+    @JvmField
+    var scale = 1
+
+    private lateinit var script: Script
+    private lateinit var json: ByteArray
+    private lateinit var binary: ByteArray
+    private var middleScene = 0
+
+    @Setup
+    fun setup() {
+        script = FountainSerializer.deserialize(TestScripts.load(scriptName, scale))
+        json = JsonScriptCodec.encode(script)
+        binary = BinaryScriptCodec.encode(script)
+        middleScene = script.scenes.size / 2
+        println("$scriptName x$scale: JSON ${json.size} bytes, binary ${binary.size} bytes " +
+                "(${100 * binary.size / json.size}%)")
+    }
+
+    @Benchmark
+    fun encodeJson(): ByteArray = JsonScriptCodec.encode(script)
+
+    @Benchmark
+    fun decodeJson(): Script = JsonScriptCodec.decode(json)
+
+    @Benchmark
+    fun encodeBinary(): ByteArray = BinaryScriptCodec.encode(script)
+
+    @Benchmark
+    fun decodeBinary(): Script = BinaryScriptCodec.decode(binary)
+
+    @Benchmark
+    fun decodeBinaryScene(): Scene? = BinaryScriptCodec.decodeScene(binary, middleScene)
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.benchmark
+
+import com.brokenshotgun.runlines.data.FountainSerializer
+import com.brokenshotgun.runlines.data.ParserMode
+import com.brokenshotgun.runlines.data.PdfParser
+import com.brokenshotgun.runlines.model.Script
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.concurrent.TimeUnit
+
+/** Parses the test scripts into a [Script] with each of the parsers. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class DeserializeBenchmark {
+    @Param(TestScripts.BIG_FISH, TestScripts.LAST_BIRTHDAY_CARD, TestScripts.BRICK_AND_STEEL)
+    @JvmField
+    var scriptName = ""
+
+    @Param("1", "10")
+    @JvmField
+    var scale = 1
+
+    @Param("LEXER", "LEGACY", "PARALLEL")
+    @JvmField
+    var mode = ParserMode.LEXER
+
+    private lateinit var text: String
+
+    @Setup
+    fun setup() {
+        text = TestScripts.load(scriptName, scale)
+    }
+
+    @Benchmark
+    fun deserialize(): Script = FountainSerializer.deserialize(text, mode)
+
+    /** The text cleanup of a PDF import followed by [FountainSerializer.deserialize]. */
+    @Benchmark
+    fun pdfParse(): Script {
+        val previousMode = FountainSerializer.parserMode
+        FountainSerializer.parserMode = mode
+        try {
+            return PdfParser.parse(text)
+        } finally {
+            FountainSerializer.parserMode = previousMode
+        }
+    }
+}
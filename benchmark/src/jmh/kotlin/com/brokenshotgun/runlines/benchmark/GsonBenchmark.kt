@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.benchmark
+
+import com.brokenshotgun.runlines.data.FountainSerializer
+import com.brokenshotgun.runlines.data.ScriptJson
+import com.brokenshotgun.runlines.model.Script
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.concurrent.TimeUnit
+
+/**
+ * The JSON round trip scripts stored as JSON go through, with Gson's reflection and with the
+ * streaming adapters in [ScriptJson] that replaced it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class GsonBenchmark {
+    @Param(TestScripts.BIG_FISH, TestScripts.LAST_BIRTHDAY_CARD, TestScripts.BRICK_AND_STEEL)
+    @JvmField
+    var scriptName = ""
+
+    @Param("1", "10")
+    @JvmField
+    var scale = 1
+
+    // configured like the one ScriptReaderDbHelper used before ScriptJson
+    private val gson: Gson = GsonBuilder().create()
+    private lateinit var script: Script
+    private lateinit var json: String
+
+    @Setup
+    fun setup() {
+        script = FountainSerializer.deserialize(TestScripts.load(scriptName, scale))
+        json = gson.toJson(script)
+    }
+
+    @Benchmark
+    fun toJson(): String = gson.toJson(script)
+
+    @Benchmark
+    fun fromJson(): Script = gson.fromJson(json, Script::class.java)
+
+    @Benchmark
+    fun toJsonStreaming(): String = ScriptJson.toJson(script)
+
+    @Benchmark
+    fun fromJsonStreaming(): Script? = ScriptJson.fromJson(json)
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.benchmark
+
+import com.brokenshotgun.runlines.data.FountainSerializer
+import com.brokenshotgun.runlines.data.ScriptParcelFormat
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.Serializable
+import java.util.concurrent.TimeUnit
+
+/**
+ * Parceling a script in the layout of [ScriptParcelFormat], inline and packed, against the one it
+ * replaced, which wrote actor names on every line and the actors' voices with Java serialization.
+ *
+ * `android.os.Parcel` can't run on the JVM, so the layouts are written to [JvmParcel] instead,
+ * which lays values out the way a parcel does. The parcel sizes are printed by the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class ParcelBenchmark {
+    @Param(TestScripts.BIG_FISH, TestScripts.LAST_BIRTHDAY_CARD, TestScripts.BRICK_AND_STEEL)
+    @JvmField
+    var scriptName = ""
+
+    @Param("1", "10")
+    @JvmField
+    var scale = 1
+
+    private lateinit var script: Script
+    private val parcel = JvmParcel()
+    private lateinit var legacy: ByteArray
+    private lateinit var inline: ByteArray
+    private lateinit var packed: ByteArray
+
+    @Setup
+    fun setup() {
+        script = FountainSerializer.deserialize(TestScripts.load(scriptName, scale))
+        legacy = writeLegacy()
+        inline = writeInline()
+        packed = writePacked()
+        println("$scriptName x$scale: legacy ${legacy.size} bytes, inline ${inline.size} bytes " +
+                "(${100 * inline.size / legacy.size}%), packed ${packed.size} bytes " +
+                "(${100 * packed.size / legacy.size}%)")
+    }
+
+    @Benchmark
+    fun writeLegacy(): ByteArray {
+        parcel.clear()
+        LegacyLayout.write(script, parcel)
+        return parcel.marshall()
+    }
+
+    @Benchmark
+    fun readLegacy(): Script = LegacyLayout.read(parcel.unmarshall(legacy))
+
+    @Benchmark
+    fun writeInline(): ByteArray {
+        parcel.clear()
+        ScriptParcelFormat.write(script, parcel, false)
+        return parcel.marshall()
+    }
+
+    @Benchmark
+    fun readInline(): Script = ScriptParcelFormat.read(parcel.unmarshall(inline))
+
+    @Benchmark
+    fun writePacked(): ByteArray {
+        parcel.clear()
+        ScriptParcelFormat.write(script, parcel, true)
+        return parcel.marshall()
+    }
+
+    @Benchmark
+    fun readPacked(): Script = ScriptParcelFormat.read(parcel.unmarshall(packed))
+
+    /**
+     * Lays values out like `Parcel` does: everything in 4 byte words, strings as their length and
+     * UTF-16 characters with a terminating 0, byte arrays as their length and bytes.
+     */
+    private class JvmParcel : ScriptParcelFormat.Writer, ScriptParcelFormat.Reader {
+        private var bytes = ByteArray(4096)
+        private var size = 0
+        private var position = 0
+
+        fun clear() {
+            size = 0
+            position = 0
+        }
+
+        fun marshall(): ByteArray = bytes.copyOf(size)
+
+        fun unmarshall(data: ByteArray): JvmParcel {
+            ensure(data.size)
+            System.arraycopy(data, 0, bytes, 0, data.size)
+            size = data.size
+            position = 0
+            return this
+        }
+
+        override fun writeInt(value: Int) {
+            ensure(4)
+            bytes[size++] = (value ushr 24).toByte()
+            bytes[size++] = (value ushr 16).toByte()
+            bytes[size++] = (value ushr 8).toByte()
+            bytes[size++] = value.toByte()
+        }
+
+        override fun writeLong(value: Long) {
+            writeInt((value ushr 32).toInt())
+            writeInt(value.toInt())
+        }
+
+        override fun writeString(value: String?) {
+            if (value == null) {
+                writeInt(-1)
+                return
+            }
+            writeInt(value.length)
+            ensure(2 * value.length + 4)
+            for (char in value) {
+                bytes[size++] = (char.toInt() ushr 8).toByte()
+                bytes[size++] = char.toInt().toByte()
+            }
+            bytes[size++] = 0
+            bytes[size++] = 0
+            pad()
+        }
+
+        override fun writeByteArray(value: ByteArray?) {
+            if (value == null) {
+                writeInt(-1)
+                return
+            }
+            writeInt(value.size)
+            ensure(value.size + 4)
+            System.arraycopy(value, 0, bytes, size, value.size)
+            size += value.size
+            pad()
+        }
+
+        override fun readInt(): Int {
+            val value = ((bytes[position].toInt() and 0xff) shl 24) or
+                    ((bytes[position + 1].toInt() and 0xff) shl 16) or
+                    ((bytes[position + 2].toInt() and 0xff) shl 8) or
+                    (bytes[position + 3].toInt() and 0xff)
+            position += 4
+            return value
+        }
+
+        override fun readLong(): Long = (readInt().toLong() shl 32) or (readInt().toLong() and 0xffffffffL)
+
+        override fun readString(): String? {
+            val length = readInt()
+            if (length < 0) return null
+            val chars = CharArray(length)
+            for (i in 0 until length) {
+                chars[i] = (((bytes[position].toInt() and 0xff) shl 8) or (bytes[position + 1].toInt() and 0xff)).toChar()
+                position += 2
+            }
+            position = align(position + 2)
+            return String(chars)
+        }
+
+        override fun createByteArray(): ByteArray? {
+            val length = readInt()
+            if (length < 0) return null
+            val value = bytes.copyOfRange(position, position + length)
+            position = align(position + length)
+            return value
+        }
+
+        fun writeSerializable(value: Serializable) {
+            writeString(value.javaClass.name)
+            val out = ByteArrayOutputStream()
+            ObjectOutputStream(out).use { it.writeObject(value) }
+            writeByteArray(out.toByteArray())
+        }
+
+        fun readSerializable(): Any? {
+            readString()
+            val data = createByteArray() ?: return null
+            return ObjectInputStream(ByteArrayInputStream(data)).use { it.readObject() }
+        }
+
+        private fun pad() {
+            while (size % 4 != 0) bytes[size++] = 0
+        }
+
+        private fun align(offset: Int): Int = (offset + 3) and 3.inv()
+
+        private fun ensure(count: Int) {
+            if (size + count > bytes.size) {
+                bytes = bytes.copyOf(maxOf(bytes.size * 2, size + count))
+            }
+        }
+    }
+
+    /** The layout scripts were parceled in before [ScriptParcelFormat]. */
+    private object LegacyLayout {
+        fun write(script: Script, dest: JvmParcel) {
+            for (value in arrayOf(script.name, script.credit, script.author, script.source, script.draftDate, script.contact)) {
+                dest.writeString(value)
+            }
+            dest.writeInt(script.actors.size)
+            for (actor in script.actors) dest.writeString(actor.name)
+            dest.writeInt(script.scenes.size)
+            for (scene in script.scenes) {
+                dest.writeString(scene.name)
+                dest.writeInt(scene.number)
+                dest.writeInt(scene.lines.size)
+                for (line in scene.lines) {
+                    dest.writeString(line.actor.name)
+                    dest.writeString(line.line)
+                    dest.writeInt(line.order)
+                    writeStringList(dest, line.characterExtensions)
+                }
+            }
+            writeStringList(dest, script.allVoices)
+            dest.writeSerializable(HashMap(script.actorVoices))
+            dest.writeLong(script.id)
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        fun read(source: JvmParcel): Script {
+            val script = Script(source.readString() ?: "Untitled script")
+            script.credit = source.readString()
+            script.author = source.readString()
+            script.source = source.readString()
+            script.draftDate = source.readString()
+            script.contact = source.readString()
+
+            val actorsByName = HashMap<String?, Actor>()
+            actorsByName[Actor.ACTION_NAME] = Actor.ACTION
+            repeat(source.readInt()) {
+                val name = source.readString()
+                if (!actorsByName.containsKey(name)) {
+                    val actor = Actor(name)
+                    actorsByName[name] = actor
+                    script.addActor(actor)
+                }
+            }
+            repeat(source.readInt()) {
+                val name = source.readString()
+                val number = source.readInt()
+                val lineCount = source.readInt()
+                val lines = ArrayList<Line>(lineCount)
+                repeat(lineCount) {
+                    val actorName = source.readString()
+                    val actor = actorsByName.getOrPut(actorName) { Actor(actorName) }
+                    val line = Line(actor, source.readString())
+                    line.order = source.readInt()
+                    readStringList(source, line.characterExtensions)
+                    lines.add(line)
+                }
+                script.scenes.add(Scene(name, number, lines))
+            }
+            readStringList(source, script.allVoices)
+            (source.readSerializable() as HashMap<String, String>?)?.let { script.actorVoices.putAll(it) }
+            script.id = source.readLong()
+            return script
+        }
+
+        private fun writeStringList(dest: JvmParcel, list: List<String>) {
+            dest.writeInt(list.size)
+            for (string in list) dest.writeString(string)
+        }
+
+        private fun readStringList(source: JvmParcel, list: MutableList<String>) {
+            list.clear()
+            repeat(source.readInt()) { source.readString()?.let { list.add(it) } }
+        }
+    }
+}
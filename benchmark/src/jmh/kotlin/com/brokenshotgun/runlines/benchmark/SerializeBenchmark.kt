@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.benchmark
+
+import com.brokenshotgun.runlines.data.FountainSerializer
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Script
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/** Turns parsed test scripts back into text: the Fountain source and the html of every line. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class SerializeBenchmark {
+    @Param(TestScripts.BIG_FISH, TestScripts.LAST_BIRTHDAY_CARD, TestScripts.BRICK_AND_STEEL)
+    @JvmField
+    var scriptName = ""
+
+    @Param("1", "10")
+    @JvmField
+    var scale = 1
+
+    private lateinit var script: Script
+    private val lines = mutableListOf<Line>()
+
+    @Setup
+    fun setup() {
+        script = FountainSerializer.deserialize(TestScripts.load(scriptName, scale))
+        for (scene in script.scenes) {
+            lines.addAll(scene.lines)
+        }
+    }
+
+    @Benchmark
+    fun serialize(): String = FountainSerializer.serialize(script)
+
+    @Benchmark
+    fun lineHtml(blackhole: Blackhole) {
+        for (line in lines) {
+            // clears the html cached by the previous call
+            line.line = line.line
+            blackhole.consume(line.lineHtml)
+        }
+    }
+}
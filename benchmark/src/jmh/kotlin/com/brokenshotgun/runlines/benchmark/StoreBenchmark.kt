@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.benchmark
+
+import com.brokenshotgun.runlines.data.FileScriptStore
+import com.brokenshotgun.runlines.data.FountainSerializer
+import com.brokenshotgun.runlines.data.InMemoryScriptStore
+import com.brokenshotgun.runlines.data.ScriptStore
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import com.brokenshotgun.runlines.model.ScriptSummary
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+
+/**
+ * Loading, listing and saving scripts of a library of [libraryScripts] copies of Big Fish with
+ * the [FileScriptStore] against the [InMemoryScriptStore], which shows what is left once the
+ * disk is out of the way. The SQLite store needs Android and is not part of this.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class StoreBenchmark {
+    @Param(FILES, MEMORY)
+    @JvmField
+    var storeName = ""
+
+    @Param("20")
+    @JvmField
+    var libraryScripts = 20
+
+    private lateinit var directory: File
+    private lateinit var store: ScriptStore
+    private lateinit var script: Script
+    private var middleScene = 0
+
+    @Setup
+    fun setup() {
+        directory = Files.createTempDirectory("store-benchmark").toFile()
+        store = if (storeName == FILES) FileScriptStore(directory) else InMemoryScriptStore()
+        val text = TestScripts.load(TestScripts.BIG_FISH, 1)
+        repeat(libraryScripts) { store.insertScript(FountainSerializer.deserialize(text)) }
+        script = store.loadScript(store.loadSummaries().first().id)!!
+        middleScene = script.scenes.size / 2
+    }
+
+    @TearDown
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Benchmark
+    fun loadScript(): Script? = store.loadScript(script.id)
+
+    @Benchmark
+    fun loadScene(): Scene? = store.loadScene(script.id, middleScene)
+
+    /** What opening a scene costs with lazy scenes, see [ScriptStore.loadOutline]. */
+    @Benchmark
+    fun loadOutlineScene(): List<Line> = store.loadOutline(script.id)!!.scenes[middleScene].lines
+
+    @Benchmark
+    fun loadSummaries(): List<ScriptSummary> = store.loadSummaries()
+
+    @Benchmark
+    fun updateLine() = store.updateLine(script, middleScene, 0)
+
+    companion object {
+        const val FILES = "files"
+        const val MEMORY = "memory"
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.benchmark
+
+/** The scripts bundled with the unit tests, and bigger ones made from them. */
+object TestScripts {
+    const val BIG_FISH = "bigfish.fountain.txt"
+    const val LAST_BIRTHDAY_CARD = "TheLastBirthdayCard.fountain.txt"
+    const val BRICK_AND_STEEL = "Brick&Steel.fountain.txt"
+
+    /**
+     * Returns the text of the script [name], its body repeated [scale] times. The title page of the
+     * copies stays in, as a few lines of action.
+     */
+    fun load(name: String, scale: Int): String {
+        val stream = TestScripts::class.java.classLoader.getResourceAsStream(name)
+                ?: throw IllegalArgumentException("No test script $name")
+        val text = stream.bufferedReader().use { it.readText() }
+        val scaled = StringBuilder(text.length * scale + scale * 2)
+        for (i in 0 until scale) {
+            if (i > 0) scaled.append("\n\n")
+            scaled.append(text)
+        }
+        return scaled.toString()
+    }
+}
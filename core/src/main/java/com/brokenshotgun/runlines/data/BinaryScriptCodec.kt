@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import java.nio.ByteBuffer
+
+/**
+ * A compact binary encoding of a script.
+ *
+ * Actor names, voices and character extensions repeat on many lines, so each is written once
+ * in a string table at the start and referred to by its index after that. Numbers and lengths
+ * are varints. An index of the scenes' offsets follows the script's details, so one scene can be
+ * decoded without going through the ones before it, see [decodeScene], and the scenes listed
+ * without their lines, see [decodeOutline]. All of them also decode from a [ByteBuffer], such as a
+ * memory mapped file, without copying it.
+ *
+ * The first byte is the [VERSION] of the layout, any change to it needs a new version that the
+ * decoder still reads the old one next to.
+ */
+object BinaryScriptCodec : ScriptCodec {
+    const val VERSION: Byte = 1
+
+    override fun encode(script: Script): ByteArray {
+        val strings = StringTable()
+        val scenes = ByteWriter()
+        val sceneOffsets = IntArray(script.scenes.size)
+        for ((index, scene) in script.scenes.withIndex()) {
+            sceneOffsets[index] = scenes.size
+            writeScene(scenes, scene, strings)
+        }
+
+        val details = ByteWriter()
+        for (value in arrayOf(script.name, script.credit, script.author, script.source, script.draftDate, script.contact)) {
+            details.writeString(value)
+        }
+        details.writeSignedVarint(script.id)
+        details.writeVarint(script.actors.size)
+        for (actor in script.actors) details.writeVarint(strings.ref(actor.name))
+        details.writeVarint(script.allVoices.size)
+        for (voice in script.allVoices) details.writeVarint(strings.ref(voice))
+        details.writeVarint(script.actorVoices.size)
+        for ((actor, voice) in script.actorVoices) {
+            details.writeVarint(strings.ref(actor))
+            details.writeVarint(strings.ref(voice))
+        }
+        details.writeVarint(sceneOffsets.size)
+        for (offset in sceneOffsets) details.writeInt(offset)
+
+        val out = ByteWriter(details.size + scenes.size + 64 * strings.size)
+        out.writeByte(VERSION.toInt())
+        strings.write(out)
+        out.write(details)
+        out.write(scenes)
+        return out.toByteArray()
+    }
+
+    override fun decode(bytes: ByteArray): Script = decode(ByteBuffer.wrap(bytes))
+
+    /** Decodes the script encoded from the position of [buffer] on, which is left where it is. */
+    fun decode(buffer: ByteBuffer): Script {
+        val reader = ByteReader(buffer)
+        val strings = readHeader(reader)
+        val script = readDetails(reader, strings)
+        val sceneCount = reader.readVarint()
+        reader.skip(4 * sceneCount)
+        repeat(sceneCount) { script.scenes.add(readScene(reader, strings)) }
+        return script
+    }
+
+    override fun decodeOutline(bytes: ByteArray, lineLoader: (sceneIndex: Int) -> Scene.LineLoader): Script =
+            decodeOutline(ByteBuffer.wrap(bytes), lineLoader)
+
+    /** As [decode], with only the name and number of each scene, see [ScriptCodec.decodeOutline]. */
+    fun decodeOutline(buffer: ByteBuffer, lineLoader: (sceneIndex: Int) -> Scene.LineLoader): Script {
+        val reader = ByteReader(buffer)
+        val strings = readHeader(reader)
+        val script = readDetails(reader, strings)
+        val sceneCount = reader.readVarint()
+        val sceneOffsets = IntArray(sceneCount) { reader.readInt() }
+        val scenesStart = reader.position
+        for (sceneIndex in 0 until sceneCount) {
+            reader.position = scenesStart + sceneOffsets[sceneIndex]
+            val name = reader.readString()
+            val number = reader.readSignedVarint().toInt()
+            script.scenes.add(Scene(name, number, lineLoader(sceneIndex)))
+        }
+        return script
+    }
+
+    override fun decodeScene(bytes: ByteArray, sceneIndex: Int): Scene? = decodeScene(ByteBuffer.wrap(bytes), sceneIndex)
+
+    /** As [decode], for the scene at [sceneIndex] only. */
+    fun decodeScene(buffer: ByteBuffer, sceneIndex: Int): Scene? {
+        val reader = ByteReader(buffer)
+        val strings = readHeader(reader)
+        repeat(6) { reader.skipString() }
+        reader.readSignedVarint()
+        repeat(reader.readVarint()) { reader.readVarint() }
+        repeat(reader.readVarint()) { reader.readVarint() }
+        repeat(2 * reader.readVarint()) { reader.readVarint() }
+        val sceneCount = reader.readVarint()
+        if (sceneIndex < 0 || sceneIndex >= sceneCount) return null
+        val scenesStart = reader.position + 4 * sceneCount
+        reader.skip(4 * sceneIndex)
+        reader.position = scenesStart + reader.readInt()
+        return readScene(reader, strings)
+    }
+
+    private fun writeScene(out: ByteWriter, scene: Scene, strings: StringTable) {
+        out.writeString(scene.name)
+        out.writeSignedVarint(scene.number.toLong())
+        out.writeVarint(scene.lines.size)
+        for (line in scene.lines) {
+            // lines of scripts read from old JSON can be missing their actor
+            val actor: Actor? = line.actor
+            out.writeVarint(if (actor != null) strings.ref(actor.name) else 0)
+            out.writeString(line.line)
+            out.writeSignedVarint(line.order.toLong())
+            val extensions: List<String>? = line.characterExtensions
+            out.writeVarint(extensions?.size ?: 0)
+            extensions?.forEach { out.writeVarint(strings.ref(it)) }
+        }
+    }
+
+    private fun readDetails(reader: ByteReader, strings: DecodedStrings): Script {
+        val script = Script(reader.readString() ?: "")
+        script.credit = reader.readString()
+        script.author = reader.readString()
+        script.source = reader.readString()
+        script.draftDate = reader.readString()
+        script.contact = reader.readString()
+        script.id = reader.readSignedVarint()
+        script.actors.clear()
+        repeat(reader.readVarint()) { strings.actor(reader.readVarint())?.let { script.actors.add(it) } }
+        repeat(reader.readVarint()) { strings.string(reader.readVarint())?.let { script.allVoices.add(it) } }
+        repeat(reader.readVarint()) {
+            val actor = strings.string(reader.readVarint())
+            val voice = strings.string(reader.readVarint())
+            if (actor != null && voice != null) script.assignVoice(actor, voice)
+        }
+        return script
+    }
+
+    private fun readScene(reader: ByteReader, strings: DecodedStrings): Scene {
+        val name = reader.readString()
+        val number = reader.readSignedVarint().toInt()
+        val lineCount = reader.readVarint()
+        val lines = ArrayList<Line>(lineCount)
+        repeat(lineCount) {
+            val line = Line(strings.actor(reader.readVarint()), reader.readString())
+            line.order = reader.readSignedVarint().toInt()
+            repeat(reader.readVarint()) { strings.string(reader.readVarint())?.let { line.characterExtensions.add(it) } }
+            lines.add(line)
+        }
+        return Scene(name, number, lines)
+    }
+
+    private fun readHeader(reader: ByteReader): DecodedStrings {
+        val version = reader.readByte()
+        if (version != VERSION.toInt()) {
+            throw IllegalArgumentException("Unknown script encoding version $version")
+        }
+        val strings = arrayOfNulls<String>(reader.readVarint())
+        for (index in strings.indices) {
+            strings[index] = reader.readString()
+        }
+        return DecodedStrings(strings)
+    }
+
+    /** The strings of the script being encoded, referred to by their index plus one, 0 is null. */
+    private class StringTable {
+        private val indexes = HashMap<String?, Int>()
+        private val strings = ArrayList<String>()
+
+        val size: Int get() = strings.size
+
+        fun ref(string: String?): Int {
+            if (string == null) return 0
+            return indexes.getOrPut(string) {
+                strings.add(string)
+                strings.size
+            }
+        }
+
+        fun write(out: ByteWriter) {
+            out.writeVarint(strings.size)
+            for (string in strings) out.writeString(string)
+        }
+    }
+
+    /** The string table of the script being decoded, with one [Actor] per name. */
+    private class DecodedStrings(private val strings: Array<String?>) {
+        private val actors = arrayOfNulls<Actor>(strings.size)
+
+        fun string(ref: Int): String? = if (ref == 0) null else strings[ref - 1]
+
+        fun actor(ref: Int): Actor? {
+            if (ref == 0) return null
+            return actors[ref - 1] ?: strings[ref - 1].let { name ->
+                val actor = if (name == Actor.ACTION_NAME) Actor.ACTION else Actor(name)
+                actors[ref - 1] = actor
+                actor
+            }
+        }
+    }
+
+    private class ByteWriter(capacity: Int = 256) {
+        private var bytes = ByteArray(capacity)
+        var size = 0
+            private set
+
+        fun writeByte(value: Int) {
+            ensure(1)
+            bytes[size++] = value.toByte()
+        }
+
+        fun writeInt(value: Int) {
+            ensure(4)
+            bytes[size++] = (value ushr 24).toByte()
+            bytes[size++] = (value ushr 16).toByte()
+            bytes[size++] = (value ushr 8).toByte()
+            bytes[size++] = value.toByte()
+        }
+
+        fun writeVarint(value: Int) = writeVarint(value.toLong() and 0xffffffffL)
+
+        fun writeSignedVarint(value: Long) = writeVarint((value shl 1) xor (value shr 63))
+
+        private fun writeVarint(value: Long) {
+            ensure(10)
+            var rest = value
+            while (rest and 0x7fL.inv() != 0L) {
+                bytes[size++] = ((rest and 0x7f) or 0x80).toByte()
+                rest = rest ushr 7
+            }
+            bytes[size++] = rest.toByte()
+        }
+
+        /** Writes the length plus one, 0 for null, and the UTF-8 bytes. */
+        fun writeString(value: String?) {
+            if (value == null) {
+                writeVarint(0)
+                return
+            }
+            val utf8 = value.toByteArray(Charsets.UTF_8)
+            writeVarint(utf8.size + 1)
+            ensure(utf8.size)
+            System.arraycopy(utf8, 0, bytes, size, utf8.size)
+            size += utf8.size
+        }
+
+        fun write(other: ByteWriter) {
+            ensure(other.size)
+            System.arraycopy(other.bytes, 0, bytes, size, other.size)
+            size += other.size
+        }
+
+        fun toByteArray(): ByteArray = bytes.copyOf(size)
+
+        private fun ensure(count: Int) {
+            if (size + count > bytes.size) {
+                bytes = bytes.copyOf(maxOf(bytes.size * 2, size + count))
+            }
+        }
+    }
+
+    // reads by absolute index, so the buffer's own position stays put
+    private class ByteReader(private val buffer: ByteBuffer) {
+        var position = buffer.position()
+
+        fun readByte(): Int = buffer.get(position++).toInt() and 0xff
+
+        fun readInt(): Int = (readByte() shl 24) or (readByte() shl 16) or (readByte() shl 8) or readByte()
+
+        fun readVarint(): Int = readUnsignedVarint().toInt()
+
+        fun readSignedVarint(): Long {
+            val value = readUnsignedVarint()
+            return (value ushr 1) xor -(value and 1)
+        }
+
+        private fun readUnsignedVarint(): Long {
+            var value = 0L
+            var shift = 0
+            while (true) {
+                val b = readByte()
+                value = value or ((b and 0x7f).toLong() shl shift)
+                if (b and 0x80 == 0) return value
+                shift += 7
+            }
+        }
+
+        fun readString(): String? {
+            val length = readVarint() - 1
+            if (length < 0) return null
+            val value = if (buffer.hasArray()) {
+                String(buffer.array(), buffer.arrayOffset() + position, length, Charsets.UTF_8)
+            } else {
+                val bytes = ByteArray(length)
+                for (i in 0 until length) bytes[i] = buffer.get(position + i)
+                String(bytes, Charsets.UTF_8)
+            }
+            position += length
+            return value
+        }
+
+        fun skipString() {
+            skip(maxOf(readVarint() - 1, 0))
+        }
+
+        fun skip(count: Int) {
+            position += count
+        }
+    }
+}
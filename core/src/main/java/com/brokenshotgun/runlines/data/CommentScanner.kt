@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+/**
+ * Finds boneyard (`/* */`) and note (`[[ ]]`) regions in a single pass over the text.
+ *
+ * A region is what the block and bracket comment patterns of [FountainSerializer] match: a line
+ * break, the opening mark, at least one character that isn't `<` or `>`, then the first closing
+ * mark that is followed by a line break. Unlike the patterns, the scan never looks at a character
+ * twice, however many marks there are that don't close.
+ */
+internal class CommentScanner(private val open: String, private val close: String) {
+    private val lead = "\n" + open
+
+    /**
+     * Returns the start and end offsets of each region in [text], in pairs, the line breaks around
+     * it included.
+     */
+    fun find(text: String): IntArray {
+        var regions = IntArray(8)
+        var count = 0
+        val length = text.length
+        var from = 0
+        while (true) {
+            val start = text.indexOf(lead, from)
+            if (start == -1) break
+
+            val contentStart = start + lead.length
+            var closeAt = -1
+            var i = contentStart
+            while (i < length) {
+                val c = text[i]
+                if (c == '<' || c == '>') break
+                if (i > contentStart && text.startsWith(close, i) && i + close.length < length &&
+                        text[i + close.length] == '\n') {
+                    closeAt = i
+                    break
+                }
+                i++
+            }
+
+            if (closeAt == -1) {
+                // a region starting before the < or > would run into it as well
+                if (i == length) break
+                from = i + 1
+                continue
+            }
+
+            if (count + 2 > regions.size) regions = regions.copyOf(regions.size * 2)
+            regions[count++] = start
+            regions[count++] = closeAt + close.length + 1
+            from = closeAt + close.length + 1
+        }
+        return regions.copyOf(count)
+    }
+
+    /** Returns [text] with every line break in [regions], the ones around them too, replaced. */
+    fun escapeLineBreaks(text: String, regions: IntArray, replacement: String): String {
+        if (regions.isEmpty()) return text
+
+        val result = StringBuilder(text.length + regions.size * replacement.length)
+        var copied = 0
+        for (r in regions.indices step 2) {
+            result.append(text, copied, regions[r])
+            for (i in regions[r] until regions[r + 1]) {
+                val c = text[i]
+                if (c == '\n') result.append(replacement) else result.append(c)
+            }
+            copied = regions[r + 1]
+        }
+        result.append(text, copied, text.length)
+        return result.toString()
+    }
+
+    /** Returns [text] with each of the [regions] replaced by its content in a [tag] element. */
+    fun tag(text: String, regions: IntArray, tag: String): String {
+        if (regions.isEmpty()) return text
+
+        val result = StringBuilder(text.length + regions.size * (tag.length + 3))
+        var copied = 0
+        for (r in regions.indices step 2) {
+            result.append(text, copied, regions[r])
+            result.append("\n<").append(tag).append('>')
+            result.append(text, regions[r] + lead.length, regions[r + 1] - close.length - 1)
+            result.append("</").append(tag).append(">\n")
+            copied = regions[r + 1]
+        }
+        result.append(text, copied, text.length)
+        return result.toString()
+    }
+
+    companion object {
+        @JvmField
+        val BONEYARD = CommentScanner("/*", "*/")
+        @JvmField
+        val NOTE = CommentScanner("[[", "]]")
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+/**
+ * Receives a script from [FountainSerializer.deserialize] while it is parsed: the title page first,
+ * then each body element in script order and finally the end of the script.
+ */
+interface ElementListener {
+    /** Called once before any element, with an empty map if the script has no title page. */
+    fun onTitlePage(titleTokens: Map<String, List<String>>)
+
+    fun onElement(element: FNElement)
+
+    fun onEndOfScript()
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import com.brokenshotgun.runlines.model.ScriptSummary
+import com.brokenshotgun.runlines.model.SearchHit
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Keeps each script in a file of its own in [directory], encoded with [BinaryScriptCodec].
+ *
+ * Files are memory mapped to read them, so loading one scene of a long script only pages in the
+ * header and that scene, through the codec's index of scene offsets. The script list is read from
+ * a small header at the start of each file and never decodes a script. Every save writes the
+ * whole script to a new file and renames it over the old one, so readers never see half a file
+ * and need no lock. There is no search index, [search] goes through every script.
+ *
+ * File layout: the [MAGIC] number, the [FILE_VERSION], the length of the header, the header
+ * (create and modified dates, scene and line counts, size, name and author) and then the
+ * encoded script to the end of the file.
+ */
+class FileScriptStore(private val directory: File) : ScriptStore {
+
+    private class Header(val createDate: Long, val summary: ScriptSummary)
+
+    // the next id to give out, found from the files the first time one is inserted
+    private var nextId = 0L
+    private val writeLock = Any()
+
+    override fun insertScript(script: Script): Long {
+        synchronized(writeLock) {
+            if (nextId == 0L) {
+                nextId = (scriptIds().maxOrNull() ?: 0L) + 1
+            }
+            script.id = nextId++
+            val now = System.currentTimeMillis()
+            write(script, now, now)
+        }
+        return script.id
+    }
+
+    override fun loadScript(scriptId: Long): Script? =
+            map(scriptId) { BinaryScriptCodec.decode(it) }?.also { it.id = scriptId }
+
+    override fun loadScene(scriptId: Long, sceneIndex: Int): Scene? =
+            map(scriptId) { BinaryScriptCodec.decodeScene(it, sceneIndex) }
+
+    override fun loadOutline(scriptId: Long): Script? =
+            map(scriptId) { buffer -> BinaryScriptCodec.decodeOutline(buffer) { lineLoader(scriptId, it) } }
+                    ?.also { it.id = scriptId }
+
+    override fun loadSummaries(): List<ScriptSummary> =
+            scriptIds().mapNotNull { readHeader(it) }
+                    .sortedWith(compareByDescending<Header> { it.createDate }.thenByDescending { it.summary.id })
+                    .map { it.summary }
+
+    override fun updateScript(script: Script) = save(script)
+
+    override fun updateScene(script: Script, sceneIndex: Int) = save(script)
+
+    override fun updateLine(script: Script, sceneIndex: Int, lineIndex: Int) = save(script)
+
+    override fun updateScriptInfo(script: Script) = save(script)
+
+    override fun renameScript(scriptId: Long, name: String) {
+        synchronized(writeLock) {
+            val script = loadScript(scriptId) ?: return
+            script.name = name
+            save(script)
+        }
+    }
+
+    override fun deleteScript(scriptId: Long) {
+        synchronized(writeLock) {
+            file(scriptId).delete()
+        }
+    }
+
+    override fun search(query: String, limit: Int): List<SearchHit> =
+            LibrarySearch.search(scriptIds().asSequence().mapNotNull { loadScript(it) }, query, limit)
+
+    // like an update of a row, a save of a deleted script does nothing
+    private fun save(script: Script) {
+        synchronized(writeLock) {
+            val header = readHeader(script.id) ?: return
+            write(script, header.createDate, System.currentTimeMillis())
+        }
+    }
+
+    private fun write(script: Script, createDate: Long, modifiedDate: Long) {
+        val summary = ScriptSummary.of(script, modifiedDate)
+        val header = ByteArrayOutputStream()
+        DataOutputStream(header).use { out ->
+            out.writeLong(createDate)
+            out.writeLong(modifiedDate)
+            out.writeInt(summary.sceneCount)
+            out.writeInt(summary.lineCount)
+            out.writeLong(summary.size)
+            writeString(out, summary.name)
+            writeString(out, summary.author)
+        }
+        val encoded = BinaryScriptCodec.encode(script)
+
+        if (!directory.isDirectory && !directory.mkdirs()) {
+            throw IOException("Could not create $directory")
+        }
+        val file = file(script.id)
+        val temp = File(directory, file.name + TEMP_SUFFIX)
+        FileOutputStream(temp).use { stream ->
+            val out = DataOutputStream(stream.buffered())
+            out.writeInt(MAGIC)
+            out.writeByte(FILE_VERSION)
+            out.writeInt(header.size())
+            header.writeTo(out)
+            out.write(encoded)
+            out.flush()
+            stream.fd.sync()
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete()
+            throw IOException("Could not write $file")
+        }
+    }
+
+    private fun readHeader(scriptId: Long): Header? {
+        val file = file(scriptId)
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(file), HEADER_BUFFER_SIZE)).use { input ->
+                checkStart(input.readInt(), input.readByte().toInt(), file)
+                input.readInt()
+                val createDate = input.readLong()
+                val modifiedDate = input.readLong()
+                val sceneCount = input.readInt()
+                val lineCount = input.readInt()
+                val size = input.readLong()
+                val name = readString(input) ?: ""
+                val author = readString(input)
+                Header(createDate, ScriptSummary(scriptId, name, author, sceneCount, lineCount, modifiedDate, size))
+            }
+        } catch (e: IOException) {
+            // deleted since the directory was listed
+            if (file.exists()) throw e
+            null
+        }
+    }
+
+    /** Maps the file of the script and runs [read] on its encoded script, or returns null if there is no file. */
+    private inline fun <T> map(scriptId: Long, read: (ByteBuffer) -> T): T? {
+        val file = file(scriptId)
+        val buffer = try {
+            RandomAccessFile(file, "r").use { it.channel.map(FileChannel.MapMode.READ_ONLY, 0, it.length()) }
+        } catch (e: IOException) {
+            if (file.exists()) throw e
+            return null
+        }
+        checkStart(buffer.getInt(0), buffer.get(4).toInt(), file)
+        // through Buffer, older Android versions have no ByteBuffer.position(Int)
+        val encoded: Buffer = buffer
+        encoded.position(START_SIZE + buffer.getInt(5))
+        return read(buffer)
+    }
+
+    private fun checkStart(magic: Int, version: Int, file: File) {
+        if (magic != MAGIC || version != FILE_VERSION) {
+            throw IOException("$file is not a script file this version can read")
+        }
+    }
+
+    private fun scriptIds(): List<Long> =
+            directory.list().orEmpty().mapNotNull { name ->
+                if (name.endsWith(SUFFIX)) name.substring(0, name.length - SUFFIX.length).toLongOrNull() else null
+            }
+
+    private fun file(scriptId: Long) = File(directory, scriptId.toString() + SUFFIX)
+
+    private fun writeString(out: DataOutputStream, value: String?) {
+        out.writeBoolean(value != null)
+        if (value != null) {
+            out.writeUTF(value.take(MAX_HEADER_STRING))
+        }
+    }
+
+    private fun readString(input: DataInputStream): String? = if (input.readBoolean()) input.readUTF() else null
+
+    companion object {
+        /** "RLSF", for Run Lines script file. */
+        const val MAGIC = 0x524c5346
+        const val FILE_VERSION = 1
+        private const val SUFFIX = ".script"
+        private const val TEMP_SUFFIX = ".tmp"
+        // the magic number, version and header length
+        private const val START_SIZE = 9
+        private const val HEADER_BUFFER_SIZE = 512
+        // writeUTF takes up to 64 KB, and up to three bytes a character
+        private const val MAX_HEADER_STRING = 16 * 1024
+    }
+}
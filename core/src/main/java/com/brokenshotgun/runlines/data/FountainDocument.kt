@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.data.FountainSerializer.ElementAssembler
+import com.brokenshotgun.runlines.model.Script
+
+/**
+ * The text of a Fountain script along with its elements and [Script], kept up to date as the text
+ * is edited without parsing all of it again.
+ *
+ * The body is kept in chunks split at the scene headings the [FountainLexer.BoundaryScanner] picks,
+ * which lex to the same elements on their own as they do as part of the whole body. An [edit]
+ * lexes the chunks it touches again, up to the first chunk after it that still starts at such a
+ * heading, and splices the new elements and scenes in place of the old ones. An edit of the title
+ * page parses the whole script again.
+ *
+ * Actors are matched by name with the ones the script already has, one that loses its last line
+ * stays in [Script.getActors] until the script is parsed from scratch.
+ */
+class FountainDocument(text: String) {
+    /** The text of the script, with every edit applied. */
+    var text: String = text
+        private set
+
+    private val elementList = mutableListOf<FNElement>()
+
+    /** The body elements of [text], as [FountainSerializer.deserializeBody] would return them. */
+    val elements: List<FNElement> get() = elementList
+
+    private val chunks = mutableListOf<Chunk>()
+
+    /** Edits starting before this may change the title page or where the body starts. */
+    private var titleLimit = 0
+
+    val script: Script
+
+    init {
+        val builder = Script.Builder()
+        builder.onTitlePage(FountainSerializer.parseTitlePage(text))
+        parseBody()
+        for (element in elementList) {
+            builder.onElement(element)
+        }
+        builder.onEndOfScript()
+        script = builder.build()
+    }
+
+    /**
+     * Replaces the text from [start] until [end] with [replacement] and updates the elements and
+     * the script. Only the scenes around the edit are parsed again.
+     */
+    fun edit(start: Int, end: Int, replacement: String) {
+        require(start in 0..end && end <= text.length) { "Invalid range $start..$end" }
+        text = text.substring(0, start) + replacement + text.substring(end)
+
+        if (start < titleLimit) {
+            val rebuilt = Script(FountainSerializer.parseTitlePage(text), emptyArray())
+            script.name = rebuilt.name
+            script.credit = rebuilt.credit
+            script.author = rebuilt.author
+            script.source = rebuilt.source
+            script.draftDate = rebuilt.draftDate
+            script.contact = rebuilt.contact
+            parseBody()
+            script.replaceScenes(0, script.scenes.size, elementList)
+            return
+        }
+
+        val delta = replacement.length - (end - start)
+        val editEnd = start + replacement.length
+
+        // the chunk with the first line the edit touches, or the one before if that line starts a
+        // chunk: whether it still does decides where the chunk before it ends
+        var lineStart = start
+        while (lineStart > 0 && !isLineBreak(text[lineStart - 1])) lineStart--
+        var first = chunks.size - 1
+        while (first > 0 && chunks[first].start >= lineStart) first--
+
+        // find the chunks from there on until one that starts after the edit at the same heading
+        val scanner = FountainLexer.BoundaryScanner(first > 0)
+        val starts = mutableListOf(chunks[first].start)
+        var kept = first + 1
+        var lineAt = chunks[first].start
+        var resynced = false
+        while (lineAt < text.length) {
+            val lineEnd = lineEnd(lineAt)
+            if (scanner.isBoundary(text.substring(lineAt, lineEnd)) && lineAt > chunks[first].start) {
+                if (lineAt >= editEnd) {
+                    while (kept < chunks.size && chunks[kept].start < lineAt - delta) kept++
+                    if (kept < chunks.size && chunks[kept].start == lineAt - delta) {
+                        resynced = true
+                        break
+                    }
+                }
+                starts += lineAt
+            }
+            lineAt = nextLine(lineEnd)
+        }
+        if (!resynced) kept = chunks.size
+
+        val newChunks = mutableListOf<Chunk>()
+        val newElements = mutableListOf<FNElement>()
+        for (i in starts.indices) {
+            val chunkEnd = if (i + 1 < starts.size) starts[i + 1] else if (resynced) lineAt else text.length
+            newChunks += lex(starts[i], chunkEnd, first + i == 0, newElements)
+        }
+
+        var firstElement = 0
+        var firstScene = 0
+        for (i in 0 until first) {
+            firstElement += chunks[i].elementCount
+            firstScene += chunks[i].sceneCount
+        }
+        var oldElements = 0
+        var oldScenes = 0
+        var continuesLine = false
+        for (i in first until kept) {
+            oldElements += chunks[i].elementCount
+            oldScenes += chunks[i].sceneCount
+            continuesLine = continuesLine || chunks[i].continuesLine
+        }
+
+        val replaced = elementList.subList(firstElement, firstElement + oldElements)
+        replaced.clear()
+        replaced.addAll(newElements)
+        val replacedChunks = chunks.subList(first, kept)
+        replacedChunks.clear()
+        replacedChunks.addAll(newChunks)
+        for (i in first + newChunks.size until chunks.size) {
+            chunks[i].start += delta
+        }
+
+        // dialogue at the top of a chunk goes to the last character's line before it, which may be
+        // in the chunks that were replaced
+        for (i in first until chunks.size) {
+            if (chunks[i].continuesLine) continuesLine = true
+            if (continuesLine || (i >= first + newChunks.size && chunks[i].hasCharacter)) break
+        }
+
+        if (continuesLine || (first == 0 && !resynced)) {
+            // build all of the scenes again, there may not even be a scene heading left
+            script.replaceScenes(0, script.scenes.size, elementList)
+        } else {
+            script.replaceScenes(firstScene, firstScene + oldScenes, newElements)
+        }
+    }
+
+    private fun parseBody() {
+        val body = FountainSerializer.getScriptBodyStart(text)
+        var leadingLineBreaks = 0
+        while (leadingLineBreaks < text.length && text[leadingLineBreaks] == '\n') leadingLineBreaks++
+        val firstBlankLine = text.indexOf("\n\n", leadingLineBreaks)
+        titleLimit = if (firstBlankLine == -1) Int.MAX_VALUE else firstBlankLine + 2
+
+        val starts = mutableListOf(body)
+        val scanner = FountainLexer.BoundaryScanner(false)
+        var lineAt = body
+        while (lineAt < text.length) {
+            val lineEnd = lineEnd(lineAt)
+            if (scanner.isBoundary(text.substring(lineAt, lineEnd))) starts += lineAt
+            lineAt = nextLine(lineEnd)
+        }
+
+        elementList.clear()
+        chunks.clear()
+        for (i in starts.indices) {
+            val chunkEnd = if (i + 1 < starts.size) starts[i + 1] else text.length
+            chunks += lex(starts[i], chunkEnd, i == 0, elementList)
+        }
+    }
+
+    /**
+     * Lexes the chunk from [start] until [end], the start of the next chunk or the end of the
+     * text, and adds its elements to [elements].
+     */
+    private fun lex(start: Int, end: Int, isFirst: Boolean, elements: MutableList<FNElement>): Chunk {
+        val chunk = Chunk(start)
+        // the first chunk always has an element, see FountainLexer.BoundaryScanner
+        val assembler = ElementAssembler(if (isFirst) 0 else 1) { element ->
+            elements += element
+            chunk.elementCount++
+            when (element.elementType) {
+                ElementType.SCENE_HEADING -> chunk.sceneCount++
+                ElementType.CHARACTER -> chunk.hasCharacter = true
+                ElementType.DIALOGUE, ElementType.PARENTHETICAL ->
+                    if (!isFirst && !chunk.hasCharacter) chunk.continuesLine = true
+                else -> {}
+            }
+        }
+        val lexer = FountainLexer(assembler)
+
+        // frame the chunk like a body
+        lexer.feed("")
+        lexer.feed("")
+        var lineAt = start
+        while (true) {
+            val lineEnd = lineEnd(lineAt, end)
+            if (lineEnd == end) {
+                // the text after the last line break is a line of its own at the end of the body,
+                // unless the break is a lone \r that the line break framing the body completes
+                if (end == text.length && !(lineAt == end && lineAt > 0 && text[lineAt - 1] == '\r')) {
+                    lexer.feed(text.substring(lineAt, lineEnd))
+                }
+                break
+            }
+            lexer.feed(text.substring(lineAt, lineEnd))
+            lineAt = nextLine(lineEnd)
+        }
+
+        if (end == text.length) {
+            lexer.feed("")
+            lexer.finish()
+        } else {
+            lexer.finishBefore(text.substring(end, lineEnd(end)))
+        }
+        assembler.finish()
+        return chunk
+    }
+
+    private fun lineEnd(from: Int, limit: Int = text.length): Int {
+        var i = from
+        while (i < limit && !isLineBreak(text[i])) i++
+        return i
+    }
+
+    private fun nextLine(lineEnd: Int): Int {
+        var i = lineEnd
+        if (i < text.length && text[i] == '\r') i++
+        if (i < text.length && text[i] == '\n' && (i == lineEnd || text[lineEnd] == '\r')) i++
+        return i
+    }
+
+    private fun isLineBreak(c: Char): Boolean = c == '\n' || c == '\r'
+
+    private class Chunk(var start: Int) {
+        var elementCount = 0
+        var sceneCount = 0
+        var hasCharacter = false
+
+        /** Whether dialogue comes before the first character cue, it goes to the chunk before. */
+        var continuesLine = false
+    }
+}
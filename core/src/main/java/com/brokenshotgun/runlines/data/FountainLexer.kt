@@ -0,0 +1,633 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.data.FountainSerializer.ElementAssembler
+import java.io.StringReader
+
+/**
+ * Single pass, line oriented lexer for the body of a Fountain script.
+ *
+ * This is meant to produce the same elements as the regex pipeline in [FountainSerializer] but
+ * walks the script once, one line at a time, instead of rewriting the whole document with each
+ * pattern. Each line is classified as soon as the next non-blank line is known (character cues need
+ * to see what follows them); text that isn't a line element on its own is gathered into a run and
+ * split into parentheticals, dialogue and action when the run ends.
+ *
+ * The classification rules mirror the legacy patterns and many of their quirks (e.g. any line
+ * starting with "int" is a scene heading, an all caps line directly followed by text is a character
+ * cue), and both parsers agree on the test scripts. They don't agree everywhere yet: the legacy
+ * pipeline tags lines inside the markup it already added, so a section heading or parenthetical
+ * right after another parenthetical can come out differently. Boneyard and note blocks also differ
+ * on purpose: the legacy pipeline folds them into the surrounding action, the lexer reports them as
+ * `Boneyard` and `Comment` elements, which [com.brokenshotgun.runlines.model.Script.Builder] leaves
+ * out of the script. [ParserMode.LEGACY] is the default until these are settled.
+ */
+internal class FountainLexer(private val elements: ElementAssembler) {
+
+    /** The previous logical line, held back until the character cue rule can be decided. */
+    private var pendingText: String? = null
+    private var pendingKind = NONE
+    private var pendingGlue = 0
+
+    /** Empty lines seen since [pendingText]. */
+    private var blankLines = 0
+
+    /** Untagged text since the last element, see [flushRun]. */
+    private val run = StringBuilder()
+    private var runFollowsCharacter = false
+
+    /** Lines of a boneyard or note block that hasn't been closed yet. */
+    private val blockLines = mutableListOf<String>()
+    private var blockKind = NONE
+
+    /** Lexes a whole script body as returned by `FountainSerializer.getScriptBody`. */
+    fun lex(body: String) {
+        val lines = LineReader(StringReader(body))
+        var raw = lines.readLine()
+        while (raw != null) {
+            // the body ends with a line break, the empty text after it isn't a line
+            if (lines.isTerminated || raw.isNotEmpty()) feed(raw)
+            raw = lines.readLine()
+        }
+        finish()
+    }
+
+    /**
+     * Accepts the next line of the body, without its line break. Nothing is held back apart from
+     * the previous line, the text since the last element and an unclosed boneyard or note block.
+     */
+    fun feed(raw: String) {
+        if (blockKind != NONE) {
+            blockLines.add(raw)
+            if (closesBlock(raw, blockKind, BLOCK_DELIMITER_LENGTH)) {
+                val content = blockLines.joinToString("\n")
+                val kind = blockKind
+                blockLines.clear()
+                blockKind = NONE
+                block(kind, content.substring(BLOCK_DELIMITER_LENGTH, content.length - BLOCK_DELIMITER_LENGTH))
+            }
+            return
+        }
+
+        val kind = when {
+            raw.startsWith(BONEYARD_OPEN) -> BONEYARD
+            raw.startsWith(NOTE_OPEN) -> COMMENT
+            else -> NONE
+        }
+        if (kind == NONE) {
+            line(raw)
+        } else if (closesBlock(raw, kind, BLOCK_DELIMITER_LENGTH * 2)) {
+            block(kind, raw.substring(BLOCK_DELIMITER_LENGTH, raw.length - BLOCK_DELIMITER_LENGTH))
+        } else {
+            blockKind = kind
+            blockLines.add(raw)
+        }
+    }
+
+    /** Whether [raw], at least [minLength] long, ends the block of [kind]. */
+    private fun closesBlock(raw: String, kind: Int, minLength: Int): Boolean =
+            raw.length >= minLength && raw.endsWith(if (kind == BONEYARD) BONEYARD_CLOSE else NOTE_CLOSE)
+
+    /**
+     * A block that is never closed isn't one: its first line is an ordinary line and the lines
+     * after it are read again, they may open a block of their own.
+     */
+    private fun reopenUnclosedBlock() {
+        while (blockKind != NONE) {
+            val lines = blockLines.toList()
+            blockLines.clear()
+            blockKind = NONE
+            line(lines[0])
+            for (i in 1 until lines.size) feed(lines[i])
+        }
+    }
+
+    private fun line(raw: String) {
+        if (raw.isEmpty()) {
+            blankLines++
+            return
+        }
+
+        val text = sanitize(raw)
+        var kind = TEXT
+        if (text[0] == '=' && text.length > 2 && text[1] != '=' &&
+                !(pendingKind == SYNOPSIS && blankLines == 0)) {
+            kind = SYNOPSIS
+        }
+        next(text, kind)
+    }
+
+    private fun block(kind: Int, content: String) {
+        next(sanitize(content), kind)
+    }
+
+    /**
+     * Accepts the next non-blank line: classifies it as far as the regex pipeline would before the
+     * character cue rule, then settles the previous line and everything in between.
+     */
+    private fun next(text: String, lineKind: Int) {
+        val previousKind = pendingKind
+        var blanks = blankLines
+
+        // a centered line eats every blank line after it, the other consuming elements their own
+        // line break, which leaves the next line glued to them
+        val glue = when {
+            previousKind == CENTERED -> CENTERED
+            blanks == 0 && (previousKind == FORCED_TRANSITION || previousKind == SCENE_HEADING ||
+                    previousKind == TRANSITION) -> previousKind
+            else -> 0
+        }
+
+        var kind = lineKind
+        if (kind == TEXT) {
+            kind = when {
+                isPageBreak(text) -> PAGE_BREAK
+                glue != CENTERED && isCenteredText(text) -> CENTERED
+                glue != CENTERED && glue != FORCED_TRANSITION && isForcedTransition(text) -> FORCED_TRANSITION
+                else -> TEXT
+            }
+        }
+
+        // page breaks collapse the blank lines around them
+        if (kind == PAGE_BREAK) blanks = 1
+        else if (previousKind == PAGE_BREAK) blanks = 0
+        if (previousKind == CENTERED) blanks = 0
+
+        // blank lines left between the previous line and this one once the scene headings and
+        // forced transitions have taken their line break and the scene headings added their own
+        var emptyLines = blanks
+        val breakTaken = (previousKind == FORCED_TRANSITION || previousKind == SCENE_HEADING) && emptyLines > 0
+        if (breakTaken) emptyLines--
+
+        if (kind == TEXT && glue != CENTERED && glue != FORCED_TRANSITION) {
+            if (isSceneHeading(text)) {
+                kind = SCENE_HEADING
+                emptyLines++
+            } else if ((emptyLines > 0 || previousKind == SCENE_HEADING && breakTaken) &&
+                    text.length > 3 && equalsAsciiIgnoreCase(text, 0, "est")) {
+                // the scene heading pattern takes the line break before "est" as its [^\w] (a
+                // heading right before still counts, it is matched in the same pass) and the
+                // blank line it uses up is given back by the template
+                kind = SCENE_HEADING
+            }
+        }
+
+        val triples = emptyLines / 3
+        var remaining = emptyLines - triples * 3
+        if (remaining == 2 && kind == TEXT && text.indexOf('#') == -1) {
+            kind = FIRST_LINE_ACTION
+            remaining = 0
+        }
+
+        if (kind == TEXT && glue != CENTERED && glue != FORCED_TRANSITION &&
+                glue != SCENE_HEADING && glue != TRANSITION && isTransition(text)) {
+            kind = TRANSITION
+        }
+
+        // the previous line can only be a character cue if something other than a blank line
+        // follows it once all of the above has been applied
+        val cueAllowed = emptyLines == 0 || triples > 0 || kind == FIRST_LINE_ACTION
+        val settledKind = settlePending(cueAllowed)
+        lineBreaks(settledKind, breakTaken, triples, remaining)
+
+        pendingText = text
+        pendingKind = kind
+        pendingGlue = if (glue == 0 && blanks == 0 && settledKind == CHARACTER) CHARACTER else glue
+        blankLines = 0
+    }
+
+    /** Emits the pending line and returns its final kind, or [NONE] if there isn't one. */
+    private fun settlePending(cueAllowed: Boolean): Int {
+        val text = pendingText ?: return NONE
+        var kind = pendingKind
+
+        if (kind == TEXT && cueAllowed && (pendingGlue == 0 || pendingGlue == CHARACTER) && isCharacterCue(text)) {
+            kind = CHARACTER
+        }
+        if (kind == TEXT && pendingGlue == 0 && text[0] == '#') {
+            kind = SECTION_HEADING
+        }
+
+        when (kind) {
+            TEXT -> text(text)
+            SYNOPSIS -> element(ElementType.SYNOPSIS, text, 1)
+            PAGE_BREAK -> element(ElementType.PAGE_BREAK, "")
+            CENTERED, FIRST_LINE_ACTION -> element(ElementType.ACTION, text)
+            FORCED_TRANSITION, TRANSITION -> element(ElementType.TRANSITION, text)
+            SCENE_HEADING -> element(ElementType.SCENE_HEADING, text)
+            CHARACTER -> element(ElementType.CHARACTER, text)
+            SECTION_HEADING -> element(ElementType.SECTION_HEADING, text)
+            BONEYARD -> element(ElementType.BONEYARD, text)
+            COMMENT -> element(ElementType.COMMENT, text)
+        }
+
+        pendingText = null
+        pendingKind = NONE
+        return kind
+    }
+
+    /** Ends the body, settling the last line and whatever text follows the last element. */
+    fun finish() {
+        reopenUnclosedBlock()
+
+        val blanks = if (pendingKind == PAGE_BREAK || pendingKind == CENTERED) 0 else blankLines
+        var emptyLines = blanks
+        val breakTaken = (pendingKind == FORCED_TRANSITION || pendingKind == SCENE_HEADING) && emptyLines > 0
+        if (breakTaken) emptyLines--
+
+        val triples = emptyLines / 3
+        val settledKind = settlePending(triples > 0)
+        lineBreaks(settledKind, breakTaken, triples, emptyLines - triples * 3)
+
+        flushRun(false)
+        blankLines = 0
+    }
+
+    /**
+     * Ends a chunk of a body that was split before [nextHeading], one of the [sceneBoundaries].
+     * Everything up to the heading is emitted as if the heading had followed; the heading itself
+     * starts the next chunk.
+     */
+    fun finishBefore(nextHeading: String) {
+        feed(nextHeading)
+        flushRun(true)
+        pendingText = null
+        pendingKind = NONE
+        blankLines = 0
+    }
+
+    /**
+     * Emits what is left of the line break after a settled line and the blank lines after it. Every
+     * three blank lines turn into an empty action, which still ends the current run.
+     */
+    private fun lineBreaks(settledKind: Int, breakTaken: Boolean, triples: Int, remaining: Int) {
+        if (settledKind != NONE && !consumesLineBreak(settledKind, breakTaken)) text("\n")
+        for (i in 0 until triples) {
+            boundary()
+            text("\n")
+        }
+        for (i in 0 until remaining) text("\n")
+    }
+
+    /**
+     * Whether the pattern for [kind] swallowed the line break after the line. Scene headings and
+     * forced transitions hand it back when a blank line follows, see [next].
+     */
+    private fun consumesLineBreak(kind: Int, breakTaken: Boolean): Boolean = when (kind) {
+        CHARACTER, TRANSITION, CENTERED -> true
+        FORCED_TRANSITION, SCENE_HEADING -> !breakTaken
+        else -> false
+    }
+
+    private fun text(text: String) {
+        run.append(text)
+    }
+
+    private fun element(type: ElementType, text: String, start: Int = 0) {
+        flushRun(true)
+        elements.add(type, text, start)
+        runFollowsCharacter = type == ElementType.CHARACTER
+    }
+
+    /** An empty element, it only ends the current run. */
+    private fun boundary() {
+        flushRun(true)
+        runFollowsCharacter = false
+    }
+
+    /**
+     * Splits the text gathered between two elements into parentheticals, dialogue and action.
+     *
+     * A parenthetical runs from an opening bracket to the first closing bracket at the end of a
+     * line, dialogue follows a character cue or a single line parenthetical up to the next blank
+     * line or parenthetical, and whatever is left up to a blank line or the next element is action.
+     */
+    private fun flushRun(followedByElement: Boolean) {
+        if (run.isEmpty()) {
+            runFollowsCharacter = false
+            return
+        }
+
+        // the elements are ranges of this text, one string for the whole run
+        val text = run.toString()
+        val length = text.length
+        var opensDialogue = runFollowsCharacter
+        var segmentStart = 0
+        var searchFrom = 0
+        while (true) {
+            val open = text.indexOf('(', searchFrom)
+            if (open == -1) break
+
+            var close = text.indexOf(')', open + 1)
+            var contentEnd = -1
+            var matchEnd = -1
+            while (close != -1) {
+                if (close + 2 < length && isSpace(text[close + 1]) && text[close + 2] == '\n') {
+                    contentEnd = close + 2
+                    matchEnd = close + 3
+                    break
+                }
+                if (close + 1 < length && text[close + 1] == '\n') {
+                    contentEnd = close + 1
+                    matchEnd = close + 2
+                    break
+                }
+                close = text.indexOf(')', close + 1)
+            }
+            // no closing bracket for this one means none for any later one either
+            if (matchEnd == -1) break
+
+            textSegment(text, segmentStart, open, opensDialogue, true, true)
+            if (text[contentEnd - 1] == '\n' || blankLineAt(text, open, contentEnd) != -1) {
+                // the legacy action pattern splits these up again
+                actions(text, open, contentEnd, true)
+                opensDialogue = false
+            } else {
+                elements.add(ElementType.PARENTHETICAL, text, open, contentEnd)
+                opensDialogue = indexOf(text, '\n', open, contentEnd) == -1
+            }
+            segmentStart = matchEnd
+            searchFrom = matchEnd
+        }
+        textSegment(text, segmentStart, length, opensDialogue, false, followedByElement)
+
+        run.setLength(0)
+        runFollowsCharacter = false
+    }
+
+    private fun textSegment(text: String, start: Int, end: Int, opensDialogue: Boolean,
+                            beforeParenthetical: Boolean, followedByElement: Boolean) {
+        var from = start
+        if (opensDialogue) {
+            var dialogueEnd = blankLineAt(text, start, end)
+            if (dialogueEnd == -1 && beforeParenthetical && end > start && text[end - 1] == '\n') {
+                dialogueEnd = end - 1
+            }
+            if (dialogueEnd != -1) {
+                elements.add(ElementType.DIALOGUE, text, start, dialogueEnd)
+                from = dialogueEnd
+            }
+        }
+        actions(text, from, end, followedByElement)
+    }
+
+    /** Emits the actions in the part of [text] from [start] until [end]. */
+    private fun actions(text: String, start: Int, end: Int, followedByElement: Boolean) {
+        var from = start
+        while (from < end) {
+            var lineEnd = indexOf(text, '\n', from, end)
+            while (lineEnd != -1) {
+                if (lineEnd + 1 < end && text[lineEnd + 1] == '\n') break
+                if (lineEnd + 1 == end && followedByElement) break
+                lineEnd = indexOf(text, '\n', lineEnd + 1, end)
+            }
+            if (lineEnd == -1) break
+
+            if (!isBlank(text, from, lineEnd)) {
+                elements.add(ElementType.ACTION, text, from, lineEnd)
+            }
+            from = lineEnd + 2
+        }
+    }
+
+    /** Where the first blank line in [text] from [start] until [end] starts, or -1. */
+    private fun blankLineAt(text: String, start: Int, end: Int): Int {
+        for (i in start until end - 1) {
+            if (text[i] == '\n' && text[i + 1] == '\n') return i
+        }
+        return -1
+    }
+
+    private fun indexOf(text: String, c: Char, start: Int, end: Int): Int {
+        for (i in start until end) {
+            if (text[i] == c) return i
+        }
+        return -1
+    }
+
+    /**
+     * Finds the lines a body can be split before, one line at a time.
+     *
+     * These are the scene headings that can't be anything else: not inside a boneyard or note block
+     * and not glued to a centered line or forced transition above them. A lexer starting at one of
+     * them is in the same state as one that got there from the top. The first such heading is left
+     * out so the first chunk always ends up with an element, [afterFirstHeading] tells the scanner
+     * it starts past it, at an earlier boundary.
+     */
+    class BoundaryScanner(private var afterFirstHeading: Boolean) {
+        private var blockClose: String? = null
+        private var previousGlues = false
+
+        /** Whether the body can be split before [raw], the next line. */
+        fun isBoundary(raw: String): Boolean {
+            val close = blockClose
+            if (close != null) {
+                if (raw.length >= BLOCK_DELIMITER_LENGTH && raw.endsWith(close)) blockClose = null
+                previousGlues = false
+                return false
+            }
+            if (raw.isEmpty()) return false
+
+            if (raw.startsWith(BONEYARD_OPEN) || raw.startsWith(NOTE_OPEN)) {
+                val blockEnd = if (raw.startsWith(BONEYARD_OPEN)) BONEYARD_CLOSE else NOTE_CLOSE
+                if (raw.length < BLOCK_DELIMITER_LENGTH * 2 || !raw.endsWith(blockEnd)) blockClose = blockEnd
+                previousGlues = false
+                return false
+            }
+
+            val text = sanitize(raw)
+            val centeredOrForced = isCenteredText(text) || isForcedTransition(text)
+            var boundary = false
+            if (!previousGlues && !centeredOrForced && text[0] != '=' && !isPageBreak(text) && isSceneHeading(text)) {
+                boundary = afterFirstHeading
+                afterFirstHeading = true
+            }
+            previousGlues = centeredOrForced
+            return boundary
+        }
+    }
+
+    companion object {
+        private const val NONE = 0
+        private const val TEXT = 1
+        private const val SYNOPSIS = 2
+        private const val PAGE_BREAK = 3
+        private const val CENTERED = 4
+        private const val FORCED_TRANSITION = 5
+        private const val SCENE_HEADING = 6
+        private const val FIRST_LINE_ACTION = 7
+        private const val TRANSITION = 8
+        private const val CHARACTER = 9
+        private const val SECTION_HEADING = 10
+        private const val BONEYARD = 11
+        private const val COMMENT = 12
+
+
+        private const val BONEYARD_OPEN = "/*"
+        private const val BONEYARD_CLOSE = "*/"
+        private const val NOTE_OPEN = "[["
+        private const val NOTE_CLOSE = "]]"
+        private const val BLOCK_DELIMITER_LENGTH = 2
+
+        private const val ESCAPED_GT = "&gt;"
+        private const val ESCAPED_LT = "&lt;"
+
+        /**
+         * Returns the indices of the [lines] of a body that the body can be split before, so that
+         * each chunk can be lexed on its own (see [finishBefore]) with the same result.
+         */
+        fun sceneBoundaries(lines: List<String>): List<Int> {
+            val boundaries = mutableListOf<Int>()
+            val scanner = BoundaryScanner(false)
+            for (i in lines.indices) {
+                if (scanner.isBoundary(lines[i])) boundaries.add(i)
+            }
+            return boundaries
+        }
+
+        /** Same escaping the legacy pipeline applies before its patterns run. */
+        fun sanitize(line: String): String {
+            if (line.indexOf('<') == -1 && line.indexOf('>') == -1 && line.indexOf("...") == -1) {
+                return line
+            }
+            return line.replace("<", ESCAPED_LT).replace(">", ESCAPED_GT).replace("...", "::trip::")
+        }
+
+        /** `\s` as the JDK regex engine sees it. */
+        private fun isSpace(c: Char): Boolean =
+                c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\u000C' || c == '\r'
+
+        private fun isWordChar(c: Char): Boolean =
+                c in 'a'..'z' || c in 'A'..'Z' || c in '0'..'9' || c == '_'
+
+        private fun isBlank(text: CharSequence, start: Int, end: Int): Boolean {
+            for (i in start until end) {
+                if (!isSpace(text[i])) return false
+            }
+            return true
+        }
+
+        private fun equalsAsciiIgnoreCase(text: String, start: Int, lowerCase: String): Boolean {
+            if (start + lowerCase.length > text.length) return false
+            for (i in lowerCase.indices) {
+                val c = text[start + i]
+                if (c != lowerCase[i] && c != lowerCase[i] - ('a' - 'A')) return false
+            }
+            return true
+        }
+
+        /** `\s*[=\-_]{3,8}\s*` */
+        fun isPageBreak(text: String): Boolean {
+            var start = 0
+            var end = text.length
+            while (start < end && isSpace(text[start])) start++
+            while (end > start && isSpace(text[end - 1])) end--
+            if (end - start < 3 || end - start > 8) return false
+            for (i in start until end) {
+                val c = text[i]
+                if (c != '=' && c != '-' && c != '_') return false
+            }
+            return true
+        }
+
+        /** `>\s*[^<>\n]+<\s*` on an escaped line */
+        fun isCenteredText(text: String): Boolean {
+            if (!text.startsWith(ESCAPED_GT)) return false
+            var end = text.length
+            while (end > 0 && isSpace(text[end - 1])) end--
+            return end - ESCAPED_LT.length > ESCAPED_GT.length && text.startsWith(ESCAPED_LT, end - ESCAPED_LT.length)
+        }
+
+        /** `>\s*[^<>\n]+` on an escaped line */
+        fun isForcedTransition(text: String): Boolean =
+                text.length > ESCAPED_GT.length && text.startsWith(ESCAPED_GT)
+
+        /** `(int|ext|[^\w]est|\.|i\.?/e\.?).+`, ignoring case */
+        fun isSceneHeading(text: String): Boolean {
+            val length = text.length
+            if (length >= 4 && (equalsAsciiIgnoreCase(text, 0, "int") || equalsAsciiIgnoreCase(text, 0, "ext"))) {
+                return true
+            }
+            if (length >= 5 && !isWordChar(text[0]) && equalsAsciiIgnoreCase(text, 1, "est")) {
+                return true
+            }
+            if (length >= 2 && text[0] == '.') {
+                return true
+            }
+            if (text[0] == 'i' || text[0] == 'I') {
+                var i = 1
+                if (i < length && text[i] == '.') i++
+                if (i < length && text[i] == '/') {
+                    i++
+                    if (i < length && (text[i] == 'e' || text[i] == 'E')) {
+                        return i + 1 < length
+                    }
+                }
+            }
+            return false
+        }
+
+        private val FIXED_TRANSITIONS = arrayOf("FADE TO BLACK.", "FADE OUT.", "CUT TO BLACK.")
+
+        /** `[*_]*([^<>a-z]*TO:|FADE TO BLACK\.|FADE OUT\.|CUT TO BLACK\.)[*_]*` */
+        fun isTransition(text: String): Boolean {
+            var end = text.length
+            while (end > 0 && (text[end - 1] == '*' || text[end - 1] == '_')) end--
+
+            if (end >= 3 && text.startsWith("TO:", end - 3)) {
+                var upperCase = true
+                for (i in 0 until end - 3) {
+                    val c = text[i]
+                    if (c in 'a'..'z' || c == '<' || c == '>') {
+                        upperCase = false
+                        break
+                    }
+                }
+                if (upperCase) return true
+            }
+
+            var start = 0
+            while (start < end && (text[start] == '*' || text[start] == '_')) start++
+            for (transition in FIXED_TRANSITIONS) {
+                if (end - start == transition.length && text.startsWith(transition, start)) return true
+            }
+            return false
+        }
+
+        /** `[ \t]*[^<>a-z\s/][^<>a-z:!?]*[^<>a-z(!?:,.][ \t]?`, the line after it is checked by the caller */
+        fun isCharacterCue(text: String): Boolean {
+            val length = text.length
+            var start = 0
+            while (start < length && (text[start] == ' ' || text[start] == '\t')) start++
+            if (length - start < 2) return false
+
+            val first = text[start]
+            if (first in 'a'..'z' || first == '<' || first == '>' || first == '/' || isSpace(first)) return false
+
+            val last = text[length - 1]
+            if (last in 'a'..'z' || last == '<' || last == '>' || last == '(' || last == '!' ||
+                    last == '?' || last == ':' || last == ',' || last == '.') return false
+
+            for (i in start + 1 until length - 1) {
+                val c = text[i]
+                if (c in 'a'..'z' || c == '<' || c == '>' || c == ':' || c == '!' || c == '?') return false
+            }
+            return true
+        }
+    }
+}
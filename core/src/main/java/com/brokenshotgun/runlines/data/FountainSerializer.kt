@@ -0,0 +1,710 @@
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Script
+import java.io.IOException
+import java.io.Reader
+import java.util.*
+
+/** Data classes */
+
+/**
+ * An element of a script body.
+ *
+ * The text is kept as a range of the line or block of text the element was found in and only
+ * copied out the first time it is read, so elements nobody reads never get a string of their own.
+ */
+class FNElement() {
+    var elementType = ElementType.ACTION
+    var isCentered = false
+    var sceneNumber = ""
+    var isDualDialogue = false
+    var sectionDepth = 0
+
+    private var source = ""
+    private var start = 0
+    private var end = 0
+    private var text: String? = ""
+
+    constructor(elementType: ElementType, elementText: String) : this() {
+        this.elementType = elementType
+        this.elementText = elementText
+    }
+
+    var elementText: String
+        get() = text ?: source.substring(start, end).also {
+            text = it
+            source = ""
+        }
+        set(value) {
+            text = value
+            source = ""
+        }
+
+    /** Sets the text to the part of [source] from [start] until [end], copied out when first read. */
+    internal fun setText(source: String, start: Int, end: Int) {
+        this.source = source
+        this.start = start
+        this.end = end
+        text = null
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is FNElement) return false
+        return elementType == other.elementType && elementText == other.elementText &&
+                isCentered == other.isCentered && sceneNumber == other.sceneNumber &&
+                isDualDialogue == other.isDualDialogue && sectionDepth == other.sectionDepth
+    }
+
+    override fun hashCode(): Int =
+            Objects.hash(elementType, elementText, isCentered, sceneNumber, isDualDialogue, sectionDepth)
+
+    override fun toString(): String =
+            "FNElement(elementType=$elementType, elementText=$elementText, isCentered=$isCentered, " +
+            "sceneNumber=$sceneNumber, isDualDialogue=$isDualDialogue, sectionDepth=$sectionDepth)"
+}
+
+/** The kinds of elements of a script body. */
+enum class ElementType(
+        /** The name of the element in the Fountain spec and the markup of the regex pipeline. */
+        val markupName: String) {
+    SCENE_HEADING("Scene Heading"),
+    ACTION("Action"),
+    CHARACTER("Character"),
+    DIALOGUE("Dialogue"),
+    PARENTHETICAL("Parenthetical"),
+    TRANSITION("Transition"),
+    SECTION_HEADING("Section Heading"),
+    SYNOPSIS("Synopsis"),
+    PAGE_BREAK("Page Break"),
+    BONEYARD("Boneyard"),
+    COMMENT("Comment");
+
+    companion object {
+        private val byMarkupName = values().associateBy { it.markupName }
+
+        /** Returns the type with [markupName], throws [IllegalArgumentException] if there is none. */
+        @JvmStatic
+        fun forMarkupName(markupName: String): ElementType =
+                byMarkupName[markupName] ?: throw IllegalArgumentException("No element type $markupName")
+    }
+}
+
+object FountainSerializer {
+    private const val UNIVERSAL_LINE_BREAKS_PATTERN  = "\\r\\n|\\r|\\n"
+    private const val UNIVERSAL_LINE_BREAKS_TEMPLATE = "\n"
+
+    /** Patterns */
+    private const val SCENE_HEADER_PATTERN       = "(?<=\\n)(([iI][nN][tT]|[eE][xX][tT]|[^\\w][eE][sS][tT]|\\.|[iI]\\.?/[eE]\\.?)([^\\n]+))\\n"
+    // only tried right after a < or > or where the last action ended, an action starting anywhere
+    // in between runs into the same < or > as one starting there
+    private const val ACTION_PATTERN             = "(?:\\G|(?<=[<>]))([^<>]*?)(\\n{2}|\\n<)"
+    private const val MULTI_LINE_ACTION_PATTERN  = "\n{2}(([^a-z\\n:]+?[\\.\\?,\\s!\\*_]*?)\n{2}){1,2}"
+    // the last character of the cue, or the one before a trailing space, is checked behind the line
+    // instead of giving the line back a character at a time
+    private const val CHARACTER_CUE_PATTERN      = "(?<=\\n)([ \\t]*+[^<>a-z\\s\\/\\n][^<>a-z:!\\?\\n]++(?<=[^<>a-z\\(!\\?:,\\n\\.][ \\t]?))\\n{1}(?!\\n)"
+    private const val DIALOGUE_PATTERN           = "(<(Character|Parenthetical)>[^<>\\n]+<\\/(Character|Parenthetical)>)([^<>]*?)(?=\\n{2}|\\n{1}<Parenthetical>)"
+    private const val PARENTHETICAL_PATTERN      = "(\\([^<>]*?\\)[\\s]?)\n"
+    private const val TRANSITION_PATTERN         = "\\n([\\*_]*+([^<>\\na-z]*TO:|FADE TO BLACK\\.|FADE OUT\\.|CUT TO BLACK\\.)[\\*_]*)\\n"
+    private const val FORCED_TRANSITION_PATTERN  = "\\n((&gt;|>)\\s*[^<>\\n]+)\\n"     // need to look for &gt; pattern because we run this regex against marked up content
+    private const val FALSE_TRANSITION_PATTERN   = "\\n((&gt;|>)\\s*[^<>\\n]+(&lt;\\s*))\\n"     // need to look for &gt; pattern because we run this regex against marked up content
+    private const val PAGE_BREAK_PATTERN         = "(?<=\\n)(\\s*+[\\=\\-\\_]{3,8}\\s*)\\n{1}"
+    private const val CLEANUP_PATTERN            = "<Action>\\s*<\\/Action>"
+    private const val FIRST_LINE_ACTION_PATTERN  = "^\\n\\n([^<>\\n#]*?)\\n"
+    private const val SCENE_NUMBER_PATTERN       = "(\\#([0-9A-Za-z\\.\\)-]+)\\#)"
+    private const val SECTION_HEADER_PATTERN     = "^((#+)(\\s*+[^\\n]*))\n?$"
+
+    const val CHARACTER_EXTENSION_PATTERN = "(\\([^<>]*?\\)[\\s]?)"
+
+    /** Templates */
+    private const val SCENE_HEADER_TEMPLATE      = "\n<Scene Heading>$1</Scene Heading>"
+    private const val ACTION_TEMPLATE            = "<Action>$1</Action>$2"
+    private const val MULTI_LINE_ACTION_TEMPLATE = "\n<Action>$2</Action>"
+    private const val CHARACTER_CUE_TEMPLATE     = "<Character>$1</Character>"
+    private const val DIALOGUE_TEMPLATE          = "$1<Dialogue>$4</Dialogue>"
+    private const val PARENTHETICAL_TEMPLATE     = "<Parenthetical>$1</Parenthetical>"
+    private const val TRANSITION_TEMPLATE        = "\n<Transition>$1</Transition>"
+    private const val FORCED_TRANSITION_TEMPLATE = "\n<Transition>$1</Transition>"
+    private const val FALSE_TRANSITION_TEMPLATE  = "\n<Action>$1</Action>"
+    private const val PAGE_BREAK_TEMPLATE        = "\n<Page Break></Page Break>\n"
+    private const val CLEANUP_TEMPLATE           = ""
+    private const val FIRST_LINE_ACTION_TEMPLATE = "<Action>$1</Action>\n"
+    private const val SECTION_HEADER_TEMPLATE    = "<Section Heading>$1</Section Heading>"
+
+    /** Block Comments */
+    private const val BLOCK_COMMENT_PATTERN      = "\\n/\\*([^<>]+?)\\*/\\n"
+    private const val BRACKET_COMMENT_PATTERN    = "\\n\\[{2}([^<>]+?)]{2}\\n"
+    private const val SYNOPSIS_PATTERN           = "\\n={1}([^<>=][^<>]+?)\\n"     // we need to make sure we don't catch ==== as a synopsis
+
+    private const val BLOCK_COMMENT_TEMPLATE     = "\n<Boneyard>$1</Boneyard>\n"
+    private const val BRACKET_COMMENT_TEMPLATE   = "\n<Comment>$1</Comment>\n"
+    private const val SYNOPSIS_TEMPLATE          = "\n<Synopsis>$1</Synopsis>\n"
+
+    private const val NEWLINE_REPLACEMENT        = "@@@@@"
+    private const val NEWLINE_RESTORE            = "\n"
+
+    /** Budget of each regex pass: the characters it may read, a minimum plus so many per character of the body, and its time. */
+    private const val REGEX_MIN_STEPS            = 1_000_000L
+    private const val REGEX_STEPS_PER_CHAR       = 64L
+    private const val REGEX_PASS_MILLIS          = 2000L
+
+    /** Title Page */
+    private const val TITLE_PAGE_PATTERN             = "^([^\\n]+:(([ \\t]*|\\n)[^\\n]+\\n)+)+\\n"
+    private const val INLINE_DIRECTIVE_PATTERN       = "^([\\w\\s&]+):\\s*([^\\s][\\w&,.?!:()/\\s-©*_]+)$"
+    private const val MULTI_LINE_DIRECTIVE_PATTERN   = "^([\\w\\s&]+):\\s*$"
+    private const val MULTI_LINE_DATA_PATTERN        = "^([ ]{2,8}|\\t)([^<>]+)$"
+
+    /** Misc */
+    private const val DUAL_DIALOGUE_PATTERN          = "\\^\\s*$"
+    private const val CENTERED_TEXT_PATTERN          = "^>[^<>\\n]+<"
+
+    /** Styling for FDX */
+    const val BOLD_ITALIC_UNDERLINE_PATTERN  = "(_\\*{3}|\\*{3}_)([^<>]+)(_\\*{3}|\\*{3}_)"
+    const val BOLD_ITALIC_PATTERN            = "(\\*{3})([^<>]+)(\\*{3})"
+    const val BOLD_UNDERLINE_PATTERN         = "(_\\*{2}|\\*{2}_)([^<>]+)(_\\*{2}|\\*{2}_)"
+    const val ITALIC_UNDERLINE_PATTERN       = "(_\\*{1}|\\*{1}_)([^<>]+)(_\\*{1}|\\*{1}_)"
+    const val BOLD_PATTERN                   = "(\\*{2})([^<>]+)(\\*{2})"
+    const val ITALIC_PATTERN                 = "(?<!\\\\)(\\*{1})([^<>]+)(\\*{1})"
+    const val UNDERLINE_PATTERN              = "(_)([^<>_]+)(_)"
+
+    /** Styling templates */
+    const val BOLD_ITALIC_UNDERLINE_TEMPLATE = "Bold+Italic+Underline"
+    const val BOLD_ITALIC_TEMPLATE           = "Bold+Italic"
+    const val BOLD_UNDERLINE_TEMPLATE        = "Bold+Underline"
+    const val ITALIC_UNDERLINE_TEMPLATE      = "Italic+Underline"
+    const val BOLD_TEMPLATE                  = "Bold"
+    const val ITALIC_TEMPLATE                = "Italic"
+    const val UNDERLINE_TEMPLATE             = "Underline"
+
+    @JvmStatic
+    fun getCharacterExtensions(characterName: String) : List<String> {
+        if (characterName.indexOf('(') == -1) {
+            return emptyList()
+        }
+        val charExtList = mutableListOf<String>()
+        CHARACTER_EXTENSION_PATTERN.toRegex().findAll(characterName).forEach { charExtList.add(it.value) }
+        return charExtList.toList()
+    }
+
+    @JvmStatic
+    fun serialize(script: Script): String {
+        val builder = StringBuilder()
+
+        builder.append("Title: ").append(script.name).append("\n")
+        if (script.credit != null) {
+            builder.append("Credit: ").append(script.credit).append("\n")
+        }
+        if (script.author != null) {
+            builder.append("Author: ").append(script.author).append("\n")
+        }
+        if (script.source != null) {
+            builder.append("Source: ").append(script.source).append("\n")
+        }
+        if (script.draftDate != null) {
+            builder.append("Draft date: ").append(script.draftDate).append("\n")
+        }
+        if (script.contact != null) {
+            builder.append("Contact: ").append(script.contact).append("\n")
+        }
+        builder.append("\n\n")
+
+        for (scene in script.scenes) {
+            var sceneName = scene.name.toUpperCase(Locale.getDefault())
+            if (!sceneName.startsWith("INT.") && !sceneName.startsWith("EXT.")) {
+                sceneName = ".$sceneName"
+            }
+            builder.append(sceneName).append("\n\n")
+            for (line in scene.lines) {
+                val actorName = line.actor.name.toUpperCase(Locale.getDefault())
+                if (actorName != "" &&
+                    actorName != Actor.ACTION_NAME) {
+                    builder.append(actorName).append("\n")
+                }
+                builder.append(line.line).append("\n\n")
+            }
+        }
+
+        return builder.toString()
+    }
+
+    /**
+     * Parser used by [deserialize] when none is given, may be changed at runtime. The regex pipeline
+     * stays the default until the lexer gives the same elements for every script, see [FountainLexer].
+     */
+    @JvmStatic
+    var parserMode = ParserMode.LEGACY
+
+    @JvmStatic
+    fun deserialize(script: String): Script = deserialize(script, parserMode)
+
+    @JvmStatic
+    fun deserialize(script: String, mode: ParserMode): Script {
+        val titleTokens = parseTitlePageOfString(getScriptTitlePage(script))
+        val bodyTokens = parseBody(getScriptBody(script), mode)
+
+        /*
+        // for debugging only
+        println("##### all tokens for Script #####")
+        println(titleTokens)
+        for(token in bodyTokens) {
+            println("[isCentered=${token.isCentered}, " +
+                    "sceneNumber=${token.sceneNumber}, " +
+                    "isDualDialogue=${token.isDualDialogue}, " +
+                    "sectionDepth=${token.sectionDepth}]\t" +
+                    "<${token.elementType}>${token.elementText}</${token.elementType}>")
+        }
+        */
+
+        return Script(titleTokens, bodyTokens)
+    }
+
+    /** Parses only the body of [script], skipping its title page, into elements. */
+    @JvmStatic
+    fun deserializeBody(script: String, mode: ParserMode): Array<FNElement> =
+            parseBody(getScriptBody(script), mode)
+
+    /** Reads a whole script from [reader] into a [Script], see [deserialize]. */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun deserialize(reader: Reader): Script {
+        val builder = Script.Builder()
+        deserialize(reader, builder)
+        return builder.build()
+    }
+
+    /**
+     * Parses the script read from [reader] as it comes in and pushes the title page and then each
+     * body element to [listener]. Only the block of text being parsed is held in memory, never the
+     * whole script, unless [parserMode] is [ParserMode.LEGACY]. [ParserMode.PARALLEL] reads it with
+     * the lexer on the calling thread, splitting needs the whole body. The reader isn't closed.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun deserialize(reader: Reader, listener: ElementListener) {
+        if (parserMode == ParserMode.LEGACY) {
+            // the regex pipeline needs all of the text at once
+            val script = reader.readText().replace(UNIVERSAL_LINE_BREAKS_PATTERN.toRegex(), UNIVERSAL_LINE_BREAKS_TEMPLATE)
+            listener.onTitlePage(parseTitlePageOfString(getScriptTitlePage(script)))
+            val elements = ElementAssembler(sink = listener::onElement)
+            parseBodyOfString(getScriptBody(script), elements)
+            elements.finish()
+            listener.onEndOfScript()
+            return
+        }
+
+        val lines = LineReader(reader)
+
+        // Same as getScriptTitlePage and getScriptBody: skip the leading blank lines, then the
+        // lines up to the first blank line are the title page if they match its pattern.
+        var line = lines.readLine()
+        while (line != null && line.isEmpty() && lines.isTerminated) {
+            line = lines.readLine()
+        }
+
+        val documentTop = mutableListOf<String>()
+        var foundBlankLine = false
+        while (line != null) {
+            if (line.isEmpty() && lines.isTerminated) {
+                foundBlankLine = true
+                break
+            }
+            documentTop += line
+            if (!lines.isTerminated) break
+            line = lines.readLine()
+        }
+
+        var titleTokens = emptyMap<String, List<String>>()
+        if (foundBlankLine) {
+            val titlePage = documentTop.joinToString("\n", postfix = "\n")
+            if (TITLE_PAGE_PATTERN.toRegex().matches(titlePage + "\n")) {
+                titleTokens = parseTitlePageOfString(titlePage.trim('\n'))
+                documentTop.clear()
+            }
+            documentTop += ""
+        }
+        listener.onTitlePage(titleTokens)
+
+        // the body is framed by blank lines like getScriptBody does
+        val elements = ElementAssembler(sink = listener::onElement)
+        val lexer = FountainLexer(elements)
+        lexer.feed("")
+        lexer.feed("")
+        for (bodyLine in documentTop) {
+            lexer.feed(bodyLine)
+        }
+        documentTop.clear()
+        line = lines.readLine()
+        while (line != null) {
+            lexer.feed(line)
+            line = lines.readLine()
+        }
+        lexer.feed("")
+        lexer.finish()
+        elements.finish()
+        listener.onEndOfScript()
+    }
+
+    private fun parseBody(scriptBody: String, mode: ParserMode) : Array<FNElement> {
+        if (mode == ParserMode.PARALLEL) {
+            return ParallelBodyParser.parse(scriptBody)
+        }
+
+        val result = mutableListOf<FNElement>()
+        val elements = ElementAssembler { result.add(it) }
+        if (mode == ParserMode.LEGACY) {
+            parseBodyOfString(scriptBody, elements)
+        } else {
+            FountainLexer(elements).lex(scriptBody)
+        }
+        elements.finish()
+        return result.toTypedArray()
+    }
+
+    private fun parseBodyOfString(scriptBody: String, elements: ElementAssembler) {
+        // Three-pass parsing method.
+        // 1st we check for block comments, and manipulate them for regexes
+        // 2nd we run regexes against the file to convert it into a marked up format
+        // 3rd we split the marked up elements, and loop through them adding each to
+        //   an our array of FNElements.
+        //
+        // The intermediate marked up format makes subsequent parsing very simple,
+        // even if it means less efficiency overall.
+
+        // 1st pass - Block comments
+        // The regexes aren't smart enough (yet) to deal with newlines in the
+        // comments, so we need to convert them before processing.
+        // Each is marked in one scan, then the document is rewritten once.
+        var scriptContent = scriptBody
+
+        val boneyard = CommentScanner.BONEYARD
+        scriptContent = boneyard.escapeLineBreaks(scriptContent, boneyard.find(scriptContent), NEWLINE_REPLACEMENT)
+
+        val notes = CommentScanner.NOTE
+        scriptContent = notes.escapeLineBreaks(scriptContent, notes.find(scriptContent), NEWLINE_REPLACEMENT)
+
+        // Sanitize < and > chars for conversion to the markup
+        scriptContent = scriptContent.replace("<", "&lt;", true)
+        scriptContent = scriptContent.replace(">", "&gt;", true)
+        scriptContent = scriptContent.replace("...", "::trip::", true)
+
+        // 2nd pass - Regexes
+        // Blast the script with regexes.
+        // Make sure pattern and template regexes match up!
+        val patterns  = arrayOf(UNIVERSAL_LINE_BREAKS_PATTERN, BLOCK_COMMENT_PATTERN,
+                BRACKET_COMMENT_PATTERN, SYNOPSIS_PATTERN, PAGE_BREAK_PATTERN, FALSE_TRANSITION_PATTERN, FORCED_TRANSITION_PATTERN,
+                SCENE_HEADER_PATTERN, FIRST_LINE_ACTION_PATTERN, TRANSITION_PATTERN,
+                CHARACTER_CUE_PATTERN, PARENTHETICAL_PATTERN, DIALOGUE_PATTERN, SECTION_HEADER_PATTERN,
+                ACTION_PATTERN, CLEANUP_PATTERN, NEWLINE_REPLACEMENT)
+
+        val templates = arrayOf(UNIVERSAL_LINE_BREAKS_TEMPLATE, BLOCK_COMMENT_TEMPLATE,
+                BRACKET_COMMENT_TEMPLATE, SYNOPSIS_TEMPLATE, PAGE_BREAK_TEMPLATE, FALSE_TRANSITION_TEMPLATE, FORCED_TRANSITION_TEMPLATE,
+                SCENE_HEADER_TEMPLATE, FIRST_LINE_ACTION_TEMPLATE, TRANSITION_TEMPLATE,
+                CHARACTER_CUE_TEMPLATE, PARENTHETICAL_TEMPLATE, DIALOGUE_TEMPLATE, SECTION_HEADER_TEMPLATE,
+                ACTION_TEMPLATE, CLEANUP_TEMPLATE, NEWLINE_RESTORE)
+
+        if (patterns.count() != templates.count()) {
+            throw Exception("The pattern and template arrays don't have the same number of objects!")
+        }
+
+        // Each pattern gets a budget, some text still makes the matcher backtrack for ages. The
+        // lexer never goes back over a line, so it takes over when a budget is spent.
+        val maxSteps = REGEX_MIN_STEPS + REGEX_STEPS_PER_CHAR * scriptBody.length
+        try {
+            for(i in patterns.indices) {
+                scriptContent = when (patterns[i]) {
+                    // same matches as the patterns, without their backtracking over unclosed comments and brackets
+                    BLOCK_COMMENT_PATTERN -> boneyard.tag(scriptContent, boneyard.find(scriptContent), "Boneyard")
+                    BRACKET_COMMENT_PATTERN -> notes.tag(scriptContent, notes.find(scriptContent), "Comment")
+                    PARENTHETICAL_PATTERN -> ParentheticalScanner.tag(scriptContent)
+                    else -> MatchBudget(maxSteps, REGEX_PASS_MILLIS)
+                            .replace(patterns[i].toRegex(RegexOption.MULTILINE), scriptContent, templates[i])
+                }
+            }
+        } catch (e: MatchBudgetExceededException) {
+            FountainLexer(elements).lex(scriptBody)
+            return
+        }
+
+        // 3rd pass - Array construction
+        val tagMatching = "<([a-zA-Z\\s]+)>([^<>]*)</[a-zA-Z\\s]+>"
+        tagMatching.toRegex().findAll(scriptContent).forEach { tag ->
+            elements.add(ElementType.forMarkupName(tag.groupValues[1]), tag.groupValues[2])
+        }
+    }
+
+    private fun parseTitlePageOfString(scriptTitle: String) : Map<String, List<String>> {
+        val contents = mutableMapOf<String, List<String>>()
+
+        // Line by line parsing
+        // split the title page using newlines, then walk through the array and determine what is what
+        // this allows us to look for very specific things and better handle non-uniform title pages
+
+        // split the string
+        val splitTitlePage = scriptTitle.split("\n")
+        var openDirective: String? = null
+        val directiveData = mutableListOf<String>()
+        for (line in splitTitlePage) {
+            // is this an inline directive or a multi-line one?
+            val inlineResult = INLINE_DIRECTIVE_PATTERN.toRegex().find(line)
+            if (inlineResult != null) {
+                if (openDirective != null && directiveData.count() > 0) {
+                    contents[openDirective] = directiveData.toList()
+                    directiveData.clear()
+                }
+                openDirective = null
+
+                var key = inlineResult.groupValues[1].toLowerCase(Locale.getDefault())
+                val value = inlineResult.groupValues[2]
+
+                // validation
+                if (key == "author" || key == "author(s)") {
+                    key = "authors"
+                }
+
+                contents[key] = listOf(value)
+                continue
+            }
+
+            val multiLineDirectiveResult = MULTI_LINE_DIRECTIVE_PATTERN.toRegex().find(line)
+            if (multiLineDirectiveResult != null) {
+                if (openDirective != null && directiveData.count() > 0) {
+                    contents[openDirective] = directiveData.toList()
+                }
+
+                openDirective = multiLineDirectiveResult.groupValues[1].toLowerCase(Locale.getDefault())
+                directiveData.clear()
+
+                if (openDirective == "author" || openDirective == "author(s)") {
+                    openDirective = "authors"
+                }
+
+                continue
+            }
+
+            val multiLineDataResult = MULTI_LINE_DATA_PATTERN.toRegex().find(line)
+            if (multiLineDataResult != null) {
+                directiveData += multiLineDataResult.groupValues[2]
+            }
+        }
+
+        if (openDirective != null && directiveData.count() > 0) {
+            contents[openDirective] = directiveData.toList()
+        }
+
+        return contents.toMap()
+    }
+
+    private fun getScriptBody(script: String) : String {
+        return "\n\n${script.substring(getScriptBodyStart(script))}\n\n"
+    }
+
+    /** Where the body of [script] starts, past the leading blank lines and the title page. */
+    internal fun getScriptBodyStart(script: String) : Int {
+        var start = 0
+        while (start < script.length && script[start] == '\n') {
+            start++
+        }
+
+        // Find title page by looking for the first blank line, then checking the
+        // text above it. If a title page is found we remove it, leaving only the
+        // body content.
+        val firstBlankLine = script.indexOf("\n\n", start)
+        if(firstBlankLine != -1) {
+            var documentTop = script.substring(start, firstBlankLine+1)
+            documentTop += "\n"
+
+            if (TITLE_PAGE_PATTERN.toRegex().matches(documentTop)) {
+                start = firstBlankLine+1
+            }
+        }
+
+        return start
+    }
+
+    internal fun parseTitlePage(script: String) : Map<String, List<String>> =
+            parseTitlePageOfString(getScriptTitlePage(script))
+
+    private fun getScriptTitlePage(script: String) : String {
+        var body = script
+        body = body.replace("^\\n+".toRegex(), "")
+
+        val firstBlankLine = body.indexOf("\n\n")
+        if(firstBlankLine != -1) {
+            var documentTop = body.substring(0, firstBlankLine+1)
+            documentTop += "\n"
+
+            if (TITLE_PAGE_PATTERN.toRegex().matches(documentTop)) {
+                documentTop = documentTop.replace("^\n+".toRegex(), "")
+                documentTop = documentTop.replace("\n+$".toRegex(), "")
+                return documentTop
+            }
+        }
+
+        return ""
+    }
+
+    private val sceneHeaderRegexIgnoreCase = SCENE_HEADER_PATTERN.toRegex(RegexOption.IGNORE_CASE)
+    private val centeredTextRegex = CENTERED_TEXT_PATTERN.toRegex()
+    private val centeredTextContentRegex = "(>?)\\s*([^<>\\n]*)\\s*(<?)".toRegex()
+    private val forcedSceneHeadingRegex = "^\\.?(.+)".toRegex()
+    private val sectionHeaderRegex = SECTION_HEADER_PATTERN.toRegex()
+    private val dualDialogueRegex = DUAL_DIALOGUE_PATTERN.toRegex()
+    private val dualDialogueMarkRegex = "\\s*\\^$".toRegex()
+
+    /** Whether the text from [start] until [end] may have something escaped by the parsers in it. */
+    private fun isEscaped(text: String, start: Int, end: Int): Boolean {
+        for (i in start until end) {
+            val c = text[i]
+            if (c == '&' || c == ':' || c == '@') return true
+        }
+        return false
+    }
+
+    private fun isDialogueBlock(elementType: ElementType): Boolean =
+            elementType == ElementType.DIALOGUE || elementType == ElementType.PARENTHETICAL
+
+    /**
+     * Turns the raw elements found by either parser into [FNElement]s: restores the escaped text,
+     * trims it and picks up centered text, forced scene headings, section depths and dual dialogue.
+     *
+     * Elements are handed to [sink] as soon as a dual dialogue cue can no longer reach back to
+     * them, so the last character cue and its dialogue are only passed on at the next element that
+     * isn't dialogue, or by [finish]. [count] is the number of elements before the first one added,
+     * for a part of a body that doesn't start at the top.
+     *
+     * Text with nothing to restore is trimmed in place and kept as a range of the text it came in,
+     * character names are shared between the cues of the same character.
+     */
+    internal class ElementAssembler(private var count: Int = 0, private val sink: (FNElement) -> Unit) {
+        /** The last element that isn't dialogue and the dialogue after it. */
+        private val held = mutableListOf<FNElement>()
+
+        private val characterNames = HashMap<String, String>()
+
+        /** Adds an element with the text of [source] from [start] until [end]. */
+        fun add(elementType: ElementType, source: String, start: Int = 0, end: Int = source.length) {
+            val element = FNElement()
+            element.elementType = elementType
+            val i = count
+
+            val first: Char?
+            if (elementType == ElementType.SCENE_HEADING || isEscaped(source, start, end)) {
+                // Convert < and > back to normal
+                var cleanedText = source.substring(start, end)
+                if (cleanedText.contains(NEWLINE_REPLACEMENT)) {
+                    cleanedText = cleanedText.replace(NEWLINE_REPLACEMENT, NEWLINE_RESTORE)
+                }
+                cleanedText = cleanedText.replace("&lt;", "<", true)
+                cleanedText = cleanedText.replace("&gt;", ">", true)
+                cleanedText = cleanedText.replace("::trip::", "...", true)
+
+                // Deal with scene numbers if we are in a scene heading
+                if (elementType == ElementType.SCENE_HEADING) {
+                    val sceneNumberMatch = sceneHeaderRegexIgnoreCase.find(cleanedText)
+                    if (sceneNumberMatch != null) {
+                        val fullSceneNumberText = sceneNumberMatch.groupValues[1]
+                        val sceneNumber = sceneNumberMatch.groupValues[2]
+                        element.sceneNumber = sceneNumber
+                        cleanedText = cleanedText.replace(fullSceneNumberText, "", true)
+                    }
+                }
+
+                element.elementText = cleanedText.trim()
+                first = element.elementText.firstOrNull()
+            } else {
+                var from = start
+                var to = end
+                while (from < to && source[from].isWhitespace()) from++
+                while (to > from && source[to - 1].isWhitespace()) to--
+                element.setText(source, from, to)
+                first = if (from < to) source[from] else null
+            }
+
+            // More refined processing of elements based on text/type
+            if (first == '>') {
+                val centeredTextMatch = centeredTextRegex.find(element.elementText)
+                if (centeredTextMatch != null) {
+                    element.isCentered = true
+                    val match = centeredTextContentRegex.find(element.elementText)
+                    if (match != null) {
+                        element.elementText = match.groupValues[2].trim()
+                    }
+                }
+            }
+
+            when (element.elementType) {
+                ElementType.SCENE_HEADING -> {
+                    // Check for a forced scene heading. Remove preceding dot.
+                    val forcedSceneHeadingMatch = forcedSceneHeadingRegex.find(element.elementText)
+                    if (forcedSceneHeadingMatch != null) {
+                        element.elementText = forcedSceneHeadingMatch.groupValues[1]
+                    }
+                }
+                ElementType.SECTION_HEADING -> {
+                    // Clean the section text, and get the section depth
+                    val sectionHeaderMatch = sectionHeaderRegex.find(element.elementText)
+                    if (sectionHeaderMatch != null) {
+                        val depthChars = sectionHeaderMatch.groupValues[2]
+                        val depth = depthChars.length
+                        element.sectionDepth = depth
+                        element.elementText = sectionHeaderMatch.groupValues[3].trim()
+                    }
+                }
+                ElementType.CHARACTER -> {
+                    val name = element.elementText
+                    element.elementText = characterNames.getOrPut(name) { name }
+                }
+                else -> {}
+            }
+
+            if (i > 1 && element.elementType == ElementType.CHARACTER && element.elementText.indexOf('^') != -1 &&
+                    dualDialogueRegex.containsMatchIn(element.elementText)) {
+                element.isDualDialogue = true
+
+                // clean the ^ mark
+                element.elementText = element.elementText.replace(dualDialogueMarkRegex, "")
+
+                var j = held.size - 1
+
+                var previousElement: FNElement?
+                do {
+                    previousElement = held[j]
+                    if (previousElement.elementType == ElementType.CHARACTER) {
+                        previousElement.isDualDialogue = true
+                        previousElement.elementText = previousElement.elementText.replace("^", "")
+                    }
+                    j--
+                } while (j >= 0 && isDialogueBlock(previousElement!!.elementType))
+            }
+
+            if (!isDialogueBlock(element.elementType)) {
+                release()
+            }
+            held.add(element)
+            count++
+        }
+
+        /** Passes on the elements still held back, call once the last element has been added. */
+        fun finish() {
+            release()
+        }
+
+        private fun release() {
+            for (element in held) {
+                sink(element)
+            }
+            held.clear()
+        }
+    }
+}
+
+/** Which body parser [FountainSerializer.deserialize] uses. */
+enum class ParserMode {
+    /** The original multi-pass regex pipeline. */
+    LEGACY,
+    /** The single pass [FountainLexer], which doesn't agree with [LEGACY] on every script yet. */
+    LEXER,
+    /** The [FountainLexer] run on chunks of the body split at scene headings, in parallel. */
+    PARALLEL
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import com.brokenshotgun.runlines.model.ScriptSummary
+import com.brokenshotgun.runlines.model.SearchHit
+
+/**
+ * Keeps scripts in memory, for tests and benchmarks. Each script is kept encoded with [codec],
+ * so it is copied in and out the way a store on disk would, and every save stores all of it.
+ */
+class InMemoryScriptStore @JvmOverloads constructor(
+        private val codec: ScriptCodec = BinaryScriptCodec) : ScriptStore {
+
+    private class Entry(val bytes: ByteArray, val summary: ScriptSummary, val createDate: Long)
+
+    // guarded by this
+    private val entries = HashMap<Long, Entry>()
+    private var nextId = 1L
+
+    @Synchronized
+    override fun insertScript(script: Script): Long {
+        script.id = nextId++
+        val now = System.currentTimeMillis()
+        entries[script.id] = entry(script, now, now)
+        return script.id
+    }
+
+    override fun loadScript(scriptId: Long): Script? {
+        val entry = entry(scriptId) ?: return null
+        val script = codec.decode(entry.bytes)
+        script.id = scriptId
+        return script
+    }
+
+    override fun loadScene(scriptId: Long, sceneIndex: Int): Scene? =
+            entry(scriptId)?.let { codec.decodeScene(it.bytes, sceneIndex) }
+
+    override fun loadOutline(scriptId: Long): Script? {
+        val entry = entry(scriptId) ?: return null
+        val script = codec.decodeOutline(entry.bytes) { lineLoader(scriptId, it) }
+        script.id = scriptId
+        return script
+    }
+
+    override fun loadSummaries(): List<ScriptSummary> {
+        val sorted = synchronized(this) {
+            entries.values.sortedWith(compareByDescending<Entry> { it.createDate }.thenByDescending { it.summary.id })
+        }
+        // summaries can be renamed by the caller
+        return sorted.map { entry ->
+            val summary = entry.summary
+            ScriptSummary(summary.id, summary.name, summary.author, summary.sceneCount, summary.lineCount,
+                    summary.modifiedDate, summary.size)
+        }
+    }
+
+    override fun updateScript(script: Script) = save(script)
+
+    override fun updateScene(script: Script, sceneIndex: Int) = save(script)
+
+    override fun updateLine(script: Script, sceneIndex: Int, lineIndex: Int) = save(script)
+
+    override fun updateScriptInfo(script: Script) = save(script)
+
+    @Synchronized
+    override fun renameScript(scriptId: Long, name: String) {
+        val script = loadScript(scriptId) ?: return
+        script.name = name
+        save(script)
+    }
+
+    @Synchronized
+    override fun deleteScript(scriptId: Long) {
+        entries.remove(scriptId)
+    }
+
+    override fun search(query: String, limit: Int): List<SearchHit> {
+        val scriptIds = synchronized(this) { entries.keys.toList() }
+        return LibrarySearch.search(scriptIds.asSequence().mapNotNull { loadScript(it) }, query, limit)
+    }
+
+    // like an update of a row, a save of a deleted script does nothing
+    @Synchronized
+    private fun save(script: Script) {
+        val entry = entries[script.id] ?: return
+        entries[script.id] = entry(script, entry.createDate, System.currentTimeMillis())
+    }
+
+    @Synchronized
+    private fun entry(scriptId: Long): Entry? = entries[scriptId]
+
+    private fun entry(script: Script, createDate: Long, modifiedDate: Long) =
+            Entry(codec.encode(script), ScriptSummary.of(script, modifiedDate), createDate)
+}
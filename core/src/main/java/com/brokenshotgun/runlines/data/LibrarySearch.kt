@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Script
+import com.brokenshotgun.runlines.model.SearchHit
+import java.util.Locale
+import kotlin.math.ln
+
+/**
+ * Searches scripts by going through all of their lines, for the stores that keep no index.
+ *
+ * Matches and ranks the way the app's full text index does: a line or scene heading matches if
+ * every word of the query starts a word of its text, actor or heading. Each match counts by its
+ * column, and by how few rows of the library have the word in that column.
+ */
+internal object LibrarySearch {
+    private val WORD = Regex("[\\p{L}\\p{N}]+")
+    private const val SNIPPET_WORDS = 12
+    private const val ELLIPSIS = "…"
+
+    // text, actor and heading, the columns of the database's index
+    private const val COLUMNS = 3
+    private const val HEADING_COLUMN = 2
+    private val COLUMN_WEIGHTS = doubleArrayOf(1.0, 2.0, 1.5)
+
+    fun search(scripts: Sequence<Script>, query: String, limit: Int): List<SearchHit> {
+        val terms = WORD.findAll(query).map { it.value.toLowerCase(Locale.ROOT) }.toList()
+        if (terms.isEmpty()) return emptyList()
+
+        val candidates = mutableListOf<Candidate>()
+        val rowsWithHits = IntArray(terms.size * COLUMNS)
+        var rows = 0
+        val columns = arrayOfNulls<String>(COLUMNS)
+        for (script in scripts) {
+            for ((sceneIndex, scene) in script.scenes.withIndex()) {
+                columns.fill(null)
+                columns[HEADING_COLUMN] = scene.name
+                rows++
+                match(columns, terms, rowsWithHits)?.let { candidates.add(Candidate(script, sceneIndex, -1, it)) }
+                for ((lineIndex, line) in scene.lines.withIndex()) {
+                    columns.fill(null)
+                    columns[0] = line.line
+                    // lines of scripts read from old JSON can be missing their actor
+                    val actor: Actor? = line.actor
+                    columns[1] = actor?.name
+                    rows++
+                    match(columns, terms, rowsWithHits)?.let { candidates.add(Candidate(script, sceneIndex, lineIndex, it)) }
+                }
+            }
+        }
+
+        for (candidate in candidates) {
+            var score = 0.0
+            for (i in candidate.hits.indices) {
+                if (candidate.hits[i] > 0) {
+                    score += COLUMN_WEIGHTS[i % COLUMNS] * candidate.hits[i] * ln(1 + rows.toDouble() / rowsWithHits[i])
+                }
+            }
+            candidate.score = score
+        }
+        return candidates.sortedByDescending { it.score }.take(limit).map { candidate ->
+            val scene = candidate.script.scenes[candidate.sceneIndex]
+            val text = if (candidate.lineIndex < 0) scene.name else scene.lines[candidate.lineIndex].line
+            SearchHit(candidate.script.id, candidate.script.name, candidate.sceneIndex, candidate.lineIndex,
+                    snippet(text, terms), candidate.score)
+        }
+    }
+
+    /**
+     * Counts the words of each column that start with each term, by term and then column, and
+     * adds the row to [rowsWithHits]. Returns null if some term is in no column.
+     */
+    private fun match(columns: Array<String?>, terms: List<String>, rowsWithHits: IntArray): IntArray? {
+        val hits = IntArray(terms.size * COLUMNS)
+        for ((column, value) in columns.withIndex()) {
+            if (value == null) continue
+            for (word in WORD.findAll(value)) {
+                for ((term, prefix) in terms.withIndex()) {
+                    if (word.value.startsWith(prefix, ignoreCase = true)) hits[term * COLUMNS + column]++
+                }
+            }
+        }
+        var matched = true
+        for (term in terms.indices) {
+            var found = false
+            for (column in 0 until COLUMNS) {
+                if (hits[term * COLUMNS + column] > 0) {
+                    rowsWithHits[term * COLUMNS + column]++
+                    found = true
+                }
+            }
+            matched = matched && found
+        }
+        return if (matched) hits else null
+    }
+
+    /** Up to [SNIPPET_WORDS] words of [text] around the first match, with matches marked. */
+    private fun snippet(text: String?, terms: List<String>): String {
+        if (text == null) return ""
+        val words = WORD.findAll(text).toList()
+        val first = words.indexOfFirst { matches(it.value, terms) }.coerceAtLeast(0)
+        val from = if (words.size <= SNIPPET_WORDS) 0 else (first - SNIPPET_WORDS / 4).coerceIn(0, words.size - SNIPPET_WORDS)
+        val to = minOf(words.size, from + SNIPPET_WORDS)
+        val snippet = StringBuilder()
+        var at = 0
+        if (from > 0) {
+            snippet.append(ELLIPSIS)
+            at = words[from].range.first
+        }
+        for (i in from until to) {
+            val word = words[i]
+            snippet.append(text, at, word.range.first)
+            if (matches(word.value, terms)) {
+                snippet.append(SearchHit.MATCH_START).append(word.value).append(SearchHit.MATCH_END)
+            } else {
+                snippet.append(word.value)
+            }
+            at = word.range.last + 1
+        }
+        if (to < words.size) snippet.append(ELLIPSIS) else snippet.append(text, at, text.length)
+        return snippet.toString()
+    }
+
+    private fun matches(word: String, terms: List<String>) = terms.any { word.startsWith(it, ignoreCase = true) }
+
+    private class Candidate(val script: Script, val sceneIndex: Int, val lineIndex: Int, val hits: IntArray) {
+        var score = 0.0
+    }
+}
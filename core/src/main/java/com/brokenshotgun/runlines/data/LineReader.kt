@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import java.io.IOException
+import java.io.Reader
+
+/**
+ * Reads lines ended by `\n`, `\r\n` or `\r`.
+ *
+ * Unlike [java.io.BufferedReader.readLine] the text after the last line break is always returned
+ * as a final line, even when it is empty, and [isTerminated] tells whether the line just read had a
+ * line break. That is the difference between "a\n" and "a", which the Fountain rules care about.
+ */
+internal class LineReader(private val reader: Reader) {
+    private val buffer = CharArray(BUFFER_SIZE)
+    private var position = 0
+    private var limit = 0
+    private var skipLineFeed = false
+    private var done = false
+
+    /** Whether the last line returned by [readLine] was followed by a line break. */
+    var isTerminated = false
+        private set
+
+    /** Returns the next line without its line break, or null once the last line has been read. */
+    @Throws(IOException::class)
+    fun readLine(): String? {
+        if (done) return null
+
+        var line: StringBuilder? = null
+        while (true) {
+            if (position == limit && !fill()) {
+                done = true
+                isTerminated = false
+                return line?.toString() ?: ""
+            }
+
+            if (skipLineFeed) {
+                skipLineFeed = false
+                if (buffer[position] == '\n') {
+                    position++
+                    continue
+                }
+            }
+
+            val start = position
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') position++
+
+            if (position < limit) {
+                val lineBreak = buffer[position++]
+                skipLineFeed = lineBreak == '\r'
+                isTerminated = true
+                if (line == null) return String(buffer, start, position - start - 1)
+                line.append(buffer, start, position - start - 1)
+                return line.toString()
+            }
+
+            if (line == null) line = StringBuilder()
+            line.append(buffer, start, position - start)
+        }
+    }
+
+    private fun fill(): Boolean {
+        val read = reader.read(buffer, 0, buffer.size)
+        if (read <= 0) return false
+        position = 0
+        limit = read
+        return true
+    }
+
+    companion object {
+        private const val BUFFER_SIZE = 8192
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+/**
+ * Limits the work a regex replacement may do: the number of characters the matcher reads, which
+ * counts every step of its backtracking, and the time it runs for.
+ *
+ * The matcher reads the text through a [CharSequence] that keeps count, so a budget only holds on
+ * a runtime that matches against the sequence it is given. One that copies the input first, like
+ * the ICU based matcher of Android, runs the replacement unchecked.
+ */
+internal class MatchBudget(private val maxSteps: Long, maxMillis: Long) {
+    private val deadline = System.nanoTime() + maxMillis * 1_000_000L
+    private var steps = 0L
+
+    /**
+     * Same as [Regex.replace], throws [MatchBudgetExceededException] as soon as the budget is spent.
+     */
+    fun replace(regex: Regex, input: String, template: String): String =
+            regex.replace(CountingSequence(input), template)
+
+    private fun step() {
+        steps++
+        if (steps > maxSteps) {
+            throw MatchBudgetExceededException("Read more than $maxSteps characters")
+        }
+        if (steps and CLOCK_CHECK_MASK == 0L && System.nanoTime() > deadline) {
+            throw MatchBudgetExceededException("Ran out of time after $steps characters")
+        }
+    }
+
+    private inner class CountingSequence(private val text: String) : CharSequence {
+        override val length: Int get() = text.length
+
+        override fun get(index: Int): Char {
+            step()
+            return text[index]
+        }
+
+        // the parts the matcher copies out aren't matched against again
+        override fun subSequence(startIndex: Int, endIndex: Int): CharSequence =
+                text.substring(startIndex, endIndex)
+
+        override fun toString(): String = text
+    }
+
+    companion object {
+        /** The clock is read every 4096 steps, when none of these bits of the count are set. */
+        private const val CLOCK_CHECK_MASK = 0xFFFL
+    }
+}
+
+/** Thrown by [MatchBudget] when a replacement goes over its budget. */
+internal class MatchBudgetExceededException(message: String) : RuntimeException(message)
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.data.FountainSerializer.ElementAssembler
+import java.io.StringReader
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import kotlin.math.min
+
+/**
+ * Lexes a script body in chunks split at scene headings, on a bounded fork/join pool, and puts
+ * the elements back together in script order.
+ *
+ * The chunks are split at [FountainLexer.sceneBoundaries] only, so the result is the same as
+ * lexing the body in one go. A dual dialogue cue never reaches back past a scene heading, and the
+ * actors are still matched up by whoever consumes the elements, in order.
+ */
+internal object ParallelBodyParser {
+    /** Bodies with fewer lines than this are lexed in one go, and so are chunks of that size. */
+    private const val LINES_PER_TASK = 2000
+
+    /** Upper bound on the number of threads, whatever the number of cores. */
+    private const val MAX_PARALLELISM = 8
+
+    private val pool: ForkJoinPool by lazy {
+        ForkJoinPool(min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM))
+    }
+
+    /** Lexes a script body as returned by `FountainSerializer.getScriptBody`. */
+    fun parse(scriptBody: String): Array<FNElement> {
+        val lines = mutableListOf<String>()
+        val reader = LineReader(StringReader(scriptBody))
+        var line = reader.readLine()
+        while (line != null) {
+            // the body ends with a line break, the empty text after it isn't a line
+            if (reader.isTerminated || line.isNotEmpty()) lines += line
+            line = reader.readLine()
+        }
+
+        val boundaries = FountainLexer.sceneBoundaries(lines)
+        val chunkStarts = IntArray(boundaries.size + 1)
+        for (i in boundaries.indices) {
+            chunkStarts[i + 1] = boundaries[i]
+        }
+
+        val chunks = arrayOfNulls<List<FNElement>>(chunkStarts.size)
+        val task = ChunkTask(lines, chunkStarts, chunks, 0, chunkStarts.size)
+        if (lines.size < LINES_PER_TASK || boundaries.isEmpty()) {
+            task.compute()
+        } else {
+            pool.invoke(task)
+        }
+
+        val elements = mutableListOf<FNElement>()
+        for (chunk in chunks) {
+            if (chunk != null) elements += chunk
+        }
+        return elements.toTypedArray()
+    }
+
+    /**
+     * Lexes the chunks [from] until [to], splitting the range in half as long as it is bigger than
+     * [LINES_PER_TASK]. A range is lexed as a single chunk, its elements stored at [from].
+     */
+    private class ChunkTask(private val lines: List<String>,
+                            private val chunkStarts: IntArray,
+                            private val chunks: Array<List<FNElement>?>,
+                            private val from: Int,
+                            private val to: Int) : RecursiveAction() {
+
+        public override fun compute() {
+            val start = chunkStarts[from]
+            val end = if (to < chunkStarts.size) chunkStarts[to] else lines.size
+            if (to - from == 1 || end - start <= LINES_PER_TASK) {
+                chunks[from] = lex(start, end)
+                return
+            }
+
+            val middle = (from + to) ushr 1
+            invokeAll(ChunkTask(lines, chunkStarts, chunks, from, middle),
+                    ChunkTask(lines, chunkStarts, chunks, middle, to))
+        }
+
+        private fun lex(start: Int, end: Int): List<FNElement> {
+            val elements = mutableListOf<FNElement>()
+            // the first chunk always has an element, see FountainLexer.BoundaryScanner
+            val assembler = ElementAssembler(if (from == 0) 0 else 1) { elements += it }
+            val lexer = FountainLexer(assembler)
+            if (from > 0) {
+                // frame the chunk like a body
+                lexer.feed("")
+                lexer.feed("")
+            }
+            for (i in start until end) {
+                lexer.feed(lines[i])
+            }
+            if (end < lines.size) {
+                lexer.finishBefore(lines[end])
+            } else {
+                lexer.finish()
+            }
+            assembler.finish()
+            return elements
+        }
+    }
+}
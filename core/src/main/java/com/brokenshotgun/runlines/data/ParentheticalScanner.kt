@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+/**
+ * Tags parentheticals the way the parenthetical pattern of [FountainSerializer] does, in a single
+ * pass over the text.
+ *
+ * A parenthetical is an opening bracket, then the first closing bracket that is followed by a line
+ * break, or by a whitespace character and a line break, with no `<` or `>` in between. The pattern
+ * tries each opening bracket in turn and reads on to the next `<` or `>` every time, the scan skips
+ * the brackets before one it already knows doesn't close.
+ */
+internal object ParentheticalScanner {
+    fun tag(text: String): String {
+        val length = text.length
+        var result: StringBuilder? = null
+        var copied = 0
+        var from = 0
+        while (true) {
+            val start = text.indexOf('(', from)
+            if (start == -1) break
+
+            var end = -1
+            var contentEnd = -1
+            var i = start + 1
+            while (i < length) {
+                val c = text[i]
+                if (c == ')') {
+                    if (i + 2 < length && isWhitespace(text[i + 1]) && text[i + 2] == '\n') {
+                        contentEnd = i + 2
+                        end = i + 3
+                        break
+                    }
+                    if (i + 1 < length && text[i + 1] == '\n') {
+                        contentEnd = i + 1
+                        end = i + 2
+                        break
+                    }
+                } else if (c == '<' || c == '>') {
+                    break
+                }
+                i++
+            }
+
+            if (end == -1) {
+                // a bracket opened before the < or > would run into it as well
+                if (i == length) break
+                from = i + 1
+                continue
+            }
+
+            if (result == null) result = StringBuilder(length + 64)
+            result.append(text, copied, start)
+            result.append("<Parenthetical>").append(text, start, contentEnd).append("</Parenthetical>")
+            copied = end
+            from = end
+        }
+
+        if (result == null) return text
+        result.append(text, copied, length)
+        return result.toString()
+    }
+
+    /** The characters `\s` stands for in a pattern. */
+    private fun isWhitespace(c: Char): Boolean =
+            c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\u000C' || c == '\r'
+}
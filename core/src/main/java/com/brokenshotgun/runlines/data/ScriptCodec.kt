@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+
+/** Turns a whole script into bytes to store and back. */
+interface ScriptCodec {
+    fun encode(script: Script): ByteArray
+
+    fun decode(bytes: ByteArray): Script
+
+    /** Decodes the scene at [sceneIndex] of an encoded script, or returns null if it has none. */
+    fun decodeScene(bytes: ByteArray, sceneIndex: Int): Scene? = decode(bytes).scenes.getOrNull(sceneIndex)
+
+    /**
+     * Decodes the script without the lines of its scenes, each scene gets the loader [lineLoader]
+     * returns for its index to load them with, see [Scene.LineLoader]. Codecs that can't leave the
+     * lines out decode all of them.
+     */
+    fun decodeOutline(bytes: ByteArray, lineLoader: (sceneIndex: Int) -> Scene.LineLoader): Script = decode(bytes)
+}
+
+/** The JSON scripts used to be stored as, see [ScriptJson]. */
+object JsonScriptCodec : ScriptCodec {
+    override fun encode(script: Script): ByteArray = ScriptJson.toJson(script).toByteArray(Charsets.UTF_8)
+
+    override fun decode(bytes: ByteArray): Script =
+            ScriptJson.fromJson(String(bytes, Charsets.UTF_8)) ?: throw IllegalArgumentException("No script")
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import com.google.gson.TypeAdapter
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.google.gson.stream.JsonWriter
+
+/**
+ * Streaming Gson adapters for the model, in place of Gson's reflection. They write the same JSON
+ * the reflective adapters did, fields in declaration order and nulls left out, so scripts stored
+ * as JSON read back unchanged.
+ *
+ * While a script is read every line of an actor gets the same [Actor], the one in
+ * [Script.getActors], instead of a copy per line.
+ */
+object ScriptJson {
+    @JvmStatic
+    val gson: Gson = register(GsonBuilder()).create()
+
+    /** Adds the model adapters to [builder]. */
+    @JvmStatic
+    fun register(builder: GsonBuilder): GsonBuilder =
+            builder.registerTypeAdapter(Script::class.java, ScriptAdapter().nullSafe())
+                    .registerTypeAdapter(Scene::class.java, SceneAdapter().nullSafe())
+                    .registerTypeAdapter(Line::class.java, LineAdapter().nullSafe())
+                    .registerTypeAdapter(Actor::class.java, ActorAdapter().nullSafe())
+
+    @JvmStatic
+    fun toJson(script: Script): String = gson.toJson(script, Script::class.java)
+
+    @JvmStatic
+    fun fromJson(json: String): Script? = gson.fromJson(json, Script::class.java)
+
+    /** The actors of the script being read, by name. */
+    private class ActorTable {
+        private val actors = HashMap<String, Actor>()
+
+        init {
+            actors[Actor.ACTION_NAME] = Actor.ACTION
+        }
+
+        fun intern(name: String): Actor = actors.getOrPut(name) { Actor(name) }
+    }
+
+    private class ScriptAdapter : TypeAdapter<Script>() {
+        override fun write(out: JsonWriter, script: Script) {
+            out.beginObject()
+            out.name("name").value(script.name)
+            out.name("credit").value(script.credit)
+            out.name("author").value(script.author)
+            out.name("source").value(script.source)
+            out.name("draftDate").value(script.draftDate)
+            out.name("contact").value(script.contact)
+            out.name("actors").beginArray()
+            for (actor in script.actors) writeActor(out, actor)
+            out.endArray()
+            out.name("scenes").beginArray()
+            for (scene in script.scenes) writeScene(out, scene)
+            out.endArray()
+            out.name("allVoices")
+            writeStrings(out, script.allVoices)
+            out.name("actorVoices").beginObject()
+            for ((actor, voice) in script.actorVoices) {
+                out.name(actor).value(voice)
+            }
+            out.endObject()
+            out.name("id").value(script.id)
+            out.endObject()
+        }
+
+        override fun read(reader: JsonReader): Script {
+            val table = ActorTable()
+            val script = Script("")
+            script.actors.clear()
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    "name" -> script.name = nextString(reader) ?: ""
+                    "credit" -> script.credit = nextString(reader)
+                    "author" -> script.author = nextString(reader)
+                    "source" -> script.source = nextString(reader)
+                    "draftDate" -> script.draftDate = nextString(reader)
+                    "contact" -> script.contact = nextString(reader)
+                    "actors" -> readArray(reader) { readActor(reader, table)?.let { script.actors.add(it) } }
+                    "scenes" -> readArray(reader) { readScene(reader, table)?.let { script.scenes.add(it) } }
+                    "allVoices" -> readStrings(reader, script.allVoices)
+                    "actorVoices" -> readVoices(reader, script.actorVoices)
+                    "id" -> script.id = reader.nextLong()
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+            return script
+        }
+    }
+
+    private class SceneAdapter : TypeAdapter<Scene>() {
+        override fun write(out: JsonWriter, scene: Scene) = writeScene(out, scene)
+
+        override fun read(reader: JsonReader): Scene? = readScene(reader, ActorTable())
+    }
+
+    private class LineAdapter : TypeAdapter<Line>() {
+        override fun write(out: JsonWriter, line: Line) = writeLine(out, line)
+
+        override fun read(reader: JsonReader): Line? = readLine(reader, ActorTable())
+    }
+
+    private class ActorAdapter : TypeAdapter<Actor>() {
+        override fun write(out: JsonWriter, actor: Actor) = writeActor(out, actor)
+
+        override fun read(reader: JsonReader): Actor? = readActor(reader, ActorTable())
+    }
+
+    private fun writeScene(out: JsonWriter, scene: Scene) {
+        out.beginObject()
+        out.name("name").value(scene.name)
+        out.name("number").value(scene.number.toLong())
+        out.name("lines").beginArray()
+        for (line in scene.lines) writeLine(out, line)
+        out.endArray()
+        out.endObject()
+    }
+
+    private fun readScene(reader: JsonReader, table: ActorTable): Scene? {
+        if (skipNull(reader)) return null
+        val scene = Scene()
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "name" -> scene.name = nextString(reader)
+                "number" -> scene.number = reader.nextInt()
+                "lines" -> readArray(reader) { readLine(reader, table)?.let { scene.lines.add(it) } }
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return scene
+    }
+
+    private fun writeLine(out: JsonWriter, line: Line) {
+        out.beginObject()
+        // lines of scripts read from old JSON can be missing their actor
+        val actor: Actor? = line.actor
+        if (actor != null) {
+            out.name("actor")
+            writeActor(out, actor)
+        }
+        out.name("line").value(line.line)
+        out.name("order").value(line.order.toLong())
+        out.name("characterExtensions")
+        writeStrings(out, line.characterExtensions)
+        out.endObject()
+    }
+
+    private fun readLine(reader: JsonReader, table: ActorTable): Line? {
+        if (skipNull(reader)) return null
+        val line = Line(null, null)
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "actor" -> line.setActor(readActor(reader, table))
+                "line" -> line.line = nextString(reader)
+                "order" -> line.order = reader.nextInt()
+                "characterExtensions" -> readStrings(reader, line.characterExtensions)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return line
+    }
+
+    private fun writeActor(out: JsonWriter, actor: Actor) {
+        out.beginObject()
+        out.name("name").value(actor.name)
+        out.endObject()
+    }
+
+    private fun readActor(reader: JsonReader, table: ActorTable): Actor? {
+        if (skipNull(reader)) return null
+        var name: String? = null
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.nextName() == "name") {
+                name = nextString(reader)
+            } else {
+                reader.skipValue()
+            }
+        }
+        reader.endObject()
+        // an actor without a name can't be shared, and breaks equals like it did before
+        return if (name != null) table.intern(name) else Actor(null)
+    }
+
+    private fun writeStrings(out: JsonWriter, strings: List<String?>?) {
+        if (strings == null) {
+            out.nullValue()
+            return
+        }
+        out.beginArray()
+        for (string in strings) out.value(string)
+        out.endArray()
+    }
+
+    private fun readStrings(reader: JsonReader, strings: MutableList<String>) =
+            readArray(reader) { nextString(reader)?.let { strings.add(it) } }
+
+    private fun readVoices(reader: JsonReader, voices: MutableMap<String, String>) {
+        if (skipNull(reader)) return
+        reader.beginObject()
+        while (reader.hasNext()) {
+            val actor = reader.nextName()
+            nextString(reader)?.let { voices[actor] = it }
+        }
+        reader.endObject()
+    }
+
+    private inline fun readArray(reader: JsonReader, readElement: () -> Unit) {
+        if (skipNull(reader)) return
+        reader.beginArray()
+        while (reader.hasNext()) {
+            readElement()
+        }
+        reader.endArray()
+    }
+
+    private fun nextString(reader: JsonReader): String? = if (skipNull(reader)) null else reader.nextString()
+
+    private fun skipNull(reader: JsonReader): Boolean {
+        if (reader.peek() != JsonToken.NULL) return false
+        reader.nextNull()
+        return true
+    }
+}
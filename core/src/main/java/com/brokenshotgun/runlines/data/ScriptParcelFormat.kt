@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Actor
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+
+/**
+ * The layout a script is parceled in. It is kept apart from the Android `Parcel` it is written to,
+ * behind [Writer] and [Reader], so it can be tested and benchmarked on the JVM. The methods of both
+ * are named after the `Parcel` ones they stand for.
+ *
+ * Each actor is written once, in a table at the start, and lines refer to it by its index. Voices
+ * are plain strings. Instead of the scenes being written line by line, the whole script can be
+ * packed into a single [BinaryScriptCodec] byte array, which is smaller still as its strings are
+ * UTF-8 and its numbers varints, and is copied into the parcel in one go.
+ */
+object ScriptParcelFormat {
+    interface Writer {
+        fun writeInt(value: Int)
+        fun writeLong(value: Long)
+        fun writeString(value: String?)
+        fun writeByteArray(value: ByteArray?)
+    }
+
+    interface Reader {
+        fun readInt(): Int
+        fun readLong(): Long
+        fun readString(): String?
+        fun createByteArray(): ByteArray?
+    }
+
+    private const val SCENES_INLINE = 0
+    private const val SCENES_PACKED = 1
+
+    // the actor index of a line without one
+    private const val NO_ACTOR = -1
+
+    private const val UNTITLED_SCRIPT = "Untitled script"
+
+    fun write(script: Script, out: Writer, packScenes: Boolean) {
+        if (packScenes) {
+            out.writeInt(SCENES_PACKED)
+            out.writeByteArray(BinaryScriptCodec.encode(script))
+            return
+        }
+
+        out.writeInt(SCENES_INLINE)
+        for (value in arrayOf(script.name, script.credit, script.author, script.source, script.draftDate, script.contact)) {
+            out.writeString(value)
+        }
+        out.writeLong(script.id)
+
+        // the script's own actors, then any that only lines refer to
+        val actors = ArrayList<Actor>(script.actors)
+        val actorIndexes = HashMap<String, Int>()
+        for ((index, actor) in actors.withIndex()) {
+            if (!actorIndexes.containsKey(actor.name)) actorIndexes[actor.name] = index
+        }
+        for (scene in script.scenes) {
+            for (line in scene.lines) {
+                val actor: Actor? = line.actor
+                if (actor != null && !actorIndexes.containsKey(actor.name)) {
+                    actorIndexes[actor.name] = actors.size
+                    actors.add(actor)
+                }
+            }
+        }
+        out.writeInt(actors.size)
+        out.writeInt(script.actors.size)
+        for (actor in actors) out.writeString(actor.name)
+
+        out.writeInt(script.allVoices.size)
+        for (voice in script.allVoices) out.writeString(voice)
+        out.writeInt(script.actorVoices.size)
+        for ((actor, voice) in script.actorVoices) {
+            out.writeString(actor)
+            out.writeString(voice)
+        }
+
+        out.writeInt(script.scenes.size)
+        for (scene in script.scenes) {
+            out.writeString(scene.name)
+            out.writeInt(scene.number)
+            out.writeInt(scene.lines.size)
+            for (line in scene.lines) {
+                // lines of scripts read from old JSON can be missing their actor or extensions
+                val actor: Actor? = line.actor
+                out.writeInt(if (actor != null) actorIndexes.getValue(actor.name) else NO_ACTOR)
+                out.writeString(line.line)
+                out.writeInt(line.order)
+                val extensions: List<String>? = line.characterExtensions
+                out.writeInt(extensions?.size ?: 0)
+                extensions?.forEach { out.writeString(it) }
+            }
+        }
+    }
+
+    fun read(input: Reader): Script {
+        val mode = input.readInt()
+        if (mode == SCENES_PACKED) {
+            val bytes = input.createByteArray() ?: throw IllegalArgumentException("No packed script")
+            return BinaryScriptCodec.decode(bytes)
+        }
+        if (mode != SCENES_INLINE) {
+            throw IllegalArgumentException("Unknown parceled script layout $mode")
+        }
+
+        val script = Script(input.readString() ?: UNTITLED_SCRIPT)
+        script.credit = input.readString()
+        script.author = input.readString()
+        script.source = input.readString()
+        script.draftDate = input.readString()
+        script.contact = input.readString()
+        script.id = input.readLong()
+
+        val actors = arrayOfNulls<Actor>(input.readInt())
+        val scriptActorCount = input.readInt()
+        script.actors.clear()
+        for (index in actors.indices) {
+            val name = input.readString()
+            val actor = if (name == Actor.ACTION_NAME) Actor.ACTION else Actor(name)
+            actors[index] = actor
+            if (index < scriptActorCount) script.actors.add(actor)
+        }
+
+        repeat(input.readInt()) { input.readString()?.let { script.allVoices.add(it) } }
+        repeat(input.readInt()) {
+            val actor = input.readString()
+            val voice = input.readString()
+            if (actor != null && voice != null) script.assignVoice(actor, voice)
+        }
+
+        val sceneCount = input.readInt()
+        for (sceneIndex in 0 until sceneCount) {
+            val name = input.readString()
+            val number = input.readInt()
+            val lineCount = input.readInt()
+            val lines = ArrayList<Line>(lineCount)
+            repeat(lineCount) {
+                val actorIndex = input.readInt()
+                val line = Line(if (actorIndex == NO_ACTOR) null else actors[actorIndex], input.readString())
+                line.order = input.readInt()
+                repeat(input.readInt()) { input.readString()?.let { line.characterExtensions.add(it) } }
+                lines.add(line)
+            }
+            script.scenes.add(Scene(name, number, lines))
+        }
+        return script
+    }
+}
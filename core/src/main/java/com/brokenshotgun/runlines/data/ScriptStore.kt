@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.data
+
+import com.brokenshotgun.runlines.model.Line
+import com.brokenshotgun.runlines.model.Scene
+import com.brokenshotgun.runlines.model.Script
+import com.brokenshotgun.runlines.model.ScriptSummary
+import com.brokenshotgun.runlines.model.SearchHit
+
+/**
+ * Where the scripts of the library are kept. The app's own store is the SQLite database, the
+ * others keep each script in a file, see [FileScriptStore], or in memory, see [InMemoryScriptStore].
+ *
+ * A store may be called from several threads at once, but only one of them writes at a time.
+ * Scripts passed to a store are not kept, and scripts it returns are not shared, so the caller
+ * can go on editing either.
+ */
+interface ScriptStore {
+    /** Stores a new script, sets its [Script.id] and returns it. */
+    fun insertScript(script: Script): Long
+
+    /** Loads the whole script with the given id, or null if there is none. */
+    fun loadScript(scriptId: Long): Script?
+
+    /** Loads one scene of the script with the given id, or null if there is no such scene. */
+    fun loadScene(scriptId: Long, sceneIndex: Int): Scene?
+
+    /**
+     * Loads the script with the given id without the lines of its scenes, or null if there is none.
+     * Each scene loads its lines with [loadScene] the first time they are used, see [Scene.LineLoader],
+     * so opening one scene of a long script only costs that scene.
+     */
+    fun loadOutline(scriptId: Long): Script?
+
+    /** What the scenes of [loadOutline] load their lines with. */
+    fun lineLoader(scriptId: Long, sceneIndex: Int): Scene.LineLoader = StoredLines(this, scriptId, sceneIndex)
+
+    /** What the script list shows of every script, newest first. */
+    fun loadSummaries(): List<ScriptSummary>
+
+    /** Saves the whole script. */
+    fun updateScript(script: Script)
+
+    /**
+     * Saves the details and actors of the script and the scene at [sceneIndex], for edits that
+     * stay within one scene. A store may save the rest of the script as well.
+     */
+    fun updateScene(script: Script, sceneIndex: Int)
+
+    /** Saves the line at [lineIndex] of the scene at [sceneIndex]. A store may save more of the script. */
+    fun updateLine(script: Script, sceneIndex: Int, lineIndex: Int)
+
+    /** Saves the name, credits and voices of the script. A store may save its scenes as well. */
+    fun updateScriptInfo(script: Script)
+
+    /** Renames the script without the caller loading it. */
+    fun renameScript(scriptId: Long, name: String)
+
+    /** Deletes the script, if there is one with the given id. */
+    fun deleteScript(scriptId: Long)
+
+    /**
+     * Finds up to [limit] lines and scene headings that contain every word of [query] as the
+     * start of a word, in their text, actor or heading, best matches first.
+     */
+    fun search(query: String, limit: Int): List<SearchHit>
+
+    /**
+     * Loads the lines of the scene at [sceneIndex] of the script stored in [store], so a save can
+     * tell a scene whose lines were never loaded is still stored where it is, and skip its lines.
+     */
+    class StoredLines(val store: ScriptStore, val scriptId: Long, val sceneIndex: Int) : Scene.LineLoader {
+        override fun loadLines(): List<Line>? = store.loadScene(scriptId, sceneIndex)?.lines
+    }
+}
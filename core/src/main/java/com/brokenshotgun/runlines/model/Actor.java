@@ -16,14 +16,22 @@
 
 package com.brokenshotgun.runlines.model;
 
-import android.os.Parcel;
-import android.os.Parcelable;
+import org.jetbrains.annotations.NotNull;
 
-import androidx.annotation.NonNull;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A character of a script. Actors are equal by name, so the actors of a copy of a script match
+ * the original's, but each actor also has its own {@link #getId() id} to find it by.
+ */
+public class Actor {
+    private static final AtomicLong nextId = new AtomicLong();
 
-public class Actor implements Parcelable {
     private String name;
 
+    // only for this process, not saved; given out on first use as readers don't call a constructor
+    private transient long id;
+
     public static final String ACTION_NAME = "ACTION";
     public static final Actor ACTION = new Actor(ACTION_NAME);
 
@@ -35,7 +43,15 @@ public class Actor implements Parcelable {
         return name;
     }
 
-    @NonNull
+    /** An id unique to this actor among all actors of the process, which stays the same for its life. */
+    public long getId() {
+        if (id == 0L) {
+            id = nextId.incrementAndGet();
+        }
+        return id;
+    }
+
+    @NotNull
     @Override
     public String toString() {
         return name;
@@ -56,30 +72,4 @@ public class Actor implements Parcelable {
     public int hashCode() {
         return name.hashCode();
     }
-
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(name);
-    }
-
-    protected Actor(Parcel in) {
-        name = in.readString();
-    }
-
-    public static final Creator<Actor> CREATOR = new Creator<Actor>() {
-        @Override
-        public Actor createFromParcel(Parcel in) {
-            return new Actor(in);
-        }
-
-        @Override
-        public Actor[] newArray(int size) {
-            return new Actor[size];
-        }
-    };
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.model;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The positions of the lines of each actor in a scene, one {@link BitSet} per actor, kept up to
+ * date by {@link Scene} as it changes its lines.
+ */
+class ActorLines {
+    private static final BitSet NONE = new BitSet();
+
+    private final Map<Actor, BitSet> positions = new HashMap<>();
+
+    ActorLines(List<Line> lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            bitsOf(lines.get(i).getActor()).set(i);
+        }
+    }
+
+    /** The positions of {@code actor}'s lines, which must not be changed. */
+    BitSet get(Actor actor) {
+        BitSet bits = positions.get(actor);
+        return bits != null ? bits : NONE;
+    }
+
+    void set(int position, Actor actor) {
+        bitsOf(actor).set(position);
+    }
+
+    void move(int position, Actor from, Actor to) {
+        BitSet bits = positions.get(from);
+        if (bits != null) {
+            bits.clear(position);
+            if (bits.isEmpty()) {
+                positions.remove(from);
+            }
+        }
+        bitsOf(to).set(position);
+    }
+
+    /** Makes room at {@code position} for a line of {@code actor}. */
+    void insert(int position, Actor actor) {
+        for (BitSet bits : positions.values()) {
+            shift(bits, position, 1);
+        }
+        bitsOf(actor).set(position);
+    }
+
+    /** Closes the gap of the line of {@code actor} removed from {@code position}. */
+    void remove(int position, Actor actor) {
+        BitSet removed = positions.get(actor);
+        if (removed != null) {
+            removed.clear(position);
+            if (removed.isEmpty()) {
+                positions.remove(actor);
+            }
+        }
+        for (BitSet bits : positions.values()) {
+            shift(bits, position + 1, -1);
+        }
+    }
+
+    /** Gives the lines of {@code actor} to {@code replacement}. */
+    void replace(Actor actor, Actor replacement) {
+        BitSet bits = positions.remove(actor);
+        if (bits != null) {
+            bitsOf(replacement).or(bits);
+        }
+    }
+
+    private BitSet bitsOf(Actor actor) {
+        BitSet bits = positions.get(actor);
+        if (bits == null) {
+            bits = new BitSet();
+            positions.put(actor, bits);
+        }
+        return bits;
+    }
+
+    // moves the bits from position on by distance, which costs the number of bits moved
+    private static void shift(BitSet bits, int from, int distance) {
+        int length = bits.length();
+        if (from >= length) {
+            return;
+        }
+        BitSet moved = bits.get(from, length);
+        bits.clear(from, length);
+        for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+            bits.set(from + i + distance);
+        }
+    }
+}
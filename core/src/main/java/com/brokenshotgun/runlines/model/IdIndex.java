@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds items of a list by their ids without walking the list. Positions are remembered from the
+ * last time the list was indexed and checked when they are used, so the list may be changed
+ * without telling the index: a stale position just indexes the list again. Looking up an id that
+ * isn't in the list always does.
+ */
+public final class IdIndex<T> {
+    /** Gives the id of an item. */
+    public interface IdOf<T> {
+        long idOf(@NotNull T item);
+    }
+
+    private final IdOf<T> idOf;
+    private final HashMap<Long, Integer> positions = new HashMap<>();
+
+    public IdIndex(@NotNull IdOf<T> idOf) {
+        this.idOf = idOf;
+    }
+
+    /** The position of the item with {@code id} in {@code items}, or -1 if there is none. */
+    public int indexOf(@NotNull List<T> items, long id) {
+        Integer position = positions.get(id);
+        if (position != null && position < items.size() && idOf.idOf(items.get(position)) == id) {
+            return position;
+        }
+        rebuild(items);
+        position = positions.get(id);
+        return position != null ? position : -1;
+    }
+
+    /** Forgets every position, for when the list is replaced. */
+    public void clear() {
+        positions.clear();
+    }
+
+    private void rebuild(List<T> items) {
+        positions.clear();
+        for (int i = 0; i < items.size(); i++) {
+            positions.put(idOf.idOf(items.get(i)), i);
+        }
+    }
+}
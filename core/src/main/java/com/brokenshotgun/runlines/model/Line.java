@@ -16,17 +16,21 @@
 
 package com.brokenshotgun.runlines.model;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-
-import androidx.annotation.NonNull;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class Line implements Parcelable {
+/**
+ * A line of a scene. Lines are compared by identity, two lines with the same actor and text are
+ * still different lines, and each has an {@link #getId() id} to find it by.
+ */
+public class Line {
+    private static final AtomicLong nextId = new AtomicLong();
+
     private Actor actor;
     private String line;
     public int order;
@@ -34,6 +38,9 @@ public class Line implements Parcelable {
 
     public transient boolean enabled;
 
+    // only for this process, not saved; given out on first use as readers don't call a constructor
+    private transient long id;
+
     public Line(Actor actor) {
         this(actor, "");
     }
@@ -45,6 +52,17 @@ public class Line implements Parcelable {
         this.characterExtensions = new ArrayList<>();
     }
 
+    /** A copy of {@code copy}, which is a line of its own with its own id. */
+    public Line(@NotNull Line copy) {
+        this(copy.actor, copy.line);
+        this.order = copy.order;
+        this.enabled = copy.enabled;
+        // lines read from old JSON can be missing the extensions
+        if (copy.characterExtensions != null) {
+            this.characterExtensions.addAll(copy.characterExtensions);
+        }
+    }
+
     public void addDialogue(String newLine) {
         if (line == null || line.equals("")) {
             this.line = newLine;
@@ -63,30 +81,17 @@ public class Line implements Parcelable {
         this.lineHtml = null; // clear cached html version
     }
 
-    @NonNull
+    @NotNull
     public Actor getActor() {
         return actor;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-
-        Line line1 = (Line) o;
-
-        if (order != line1.order) return false;
-        if (!actor.equals(line1.actor)) return false;
-        return line.equals(line1.line);
-
-    }
-
-    @Override
-    public int hashCode() {
-        int result = actor.hashCode();
-        result = 31 * result + line.hashCode();
-        result = 31 * result + order;
-        return result;
+    /** An id unique to this line among all lines of the process, which stays the same for its life. */
+    public long getId() {
+        if (id == 0L) {
+            id = nextId.incrementAndGet();
+        }
+        return id;
     }
 
     public String getLine() {
@@ -132,7 +137,7 @@ public class Line implements Parcelable {
         return lineHtml;
     }
 
-    @NonNull
+    @NotNull
     @Override
     public String toString() {
         return "Line{" +
@@ -140,38 +145,4 @@ public class Line implements Parcelable {
                 ", characterExtensions=" + characterExtensions +
                 '}';
     }
-
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        dest.writeParcelable(actor, flags);
-        dest.writeString(line);
-        dest.writeInt(order);
-        dest.writeStringList(characterExtensions);
-    }
-
-    private Line(Parcel in) {
-        actor = in.readParcelable(Actor.class.getClassLoader());
-        line = in.readString();
-        order = in.readInt();
-        characterExtensions = new ArrayList<>();
-        in.readStringList(characterExtensions);
-        enabled = true;
-    }
-
-    public static final Creator<Line> CREATOR = new Creator<Line>() {
-        @Override
-        public Line createFromParcel(Parcel in) {
-            return new Line(in);
-        }
-
-        @Override
-        public Line[] newArray(int size) {
-            return new Line[size];
-        }
-    };
 }
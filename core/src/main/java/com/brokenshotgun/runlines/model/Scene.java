@@ -0,0 +1,315 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A scene of a script. A scene can also be loaded without its lines, which its {@link LineLoader}
+ * then loads the first time they are used, so opening one scene of a long script doesn't cost the
+ * whole script. Such a scene can {@link #release()} its lines again to free the memory.
+ * <p>
+ * The scene keeps the positions of each actor's lines, see {@link #linesOf(Actor)}. Changes made
+ * through its methods keep them up to date; after changing the list from {@link #getLines()} or
+ * the actor of a line directly, call {@link #linesChanged()}.
+ */
+public class Scene {
+    /** Loads the lines of a scene that was loaded without them. */
+    public interface LineLoader {
+        /** Returns the lines, or null if the scene is gone. */
+        @Nullable
+        List<Line> loadLines();
+    }
+
+    private String name;
+    private int number;
+    private List<Line> lines;
+    private final LineLoader lineLoader;
+    private transient IdIndex<Line> lineIndex;
+    private transient ActorLines actorLines;
+    // the lines and their count when actorLines was last brought up to date
+    private transient List<Line> indexedLines;
+    private transient int indexedCount;
+
+    public Scene() {
+        this(null, 0, new ArrayList<Line>());
+    }
+
+    public Scene(String name) {
+        this(name, 0, new ArrayList<Line>());
+    }
+
+    public Scene(String name, int number, List<Line> lines) {
+        this.name = name;
+        this.number = number;
+        this.lines = lines;
+        this.lineLoader = null;
+    }
+
+    /** A scene whose lines are loaded by {@code lineLoader} when they are first used. */
+    public Scene(String name, int number, @NotNull LineLoader lineLoader) {
+        this.name = name;
+        this.number = number;
+        this.lines = null;
+        this.lineLoader = lineLoader;
+    }
+
+    /**
+     * A copy of {@code copy} with copies of its lines, so either can be edited without changing
+     * the other. A scene whose lines aren't loaded is copied with its loader.
+     */
+    public Scene(@NotNull Scene copy) {
+        this.name = copy.name;
+        this.number = copy.number;
+        this.lineLoader = copy.lineLoader;
+        if (copy.lines == null) {
+            this.lines = null;
+        } else {
+            this.lines = new ArrayList<>(copy.lines.size());
+            for (Line line : copy.lines) {
+                this.lines.add(new Line(line));
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public List<Line> getLines() {
+        if (lines == null) {
+            List<Line> loaded = lineLoader.loadLines();
+            lines = loaded != null ? loaded : new ArrayList<Line>();
+        }
+        return lines;
+    }
+
+    /** Whether the lines are in memory, which they always are without a {@link LineLoader}. */
+    public boolean isLoaded() {
+        return lines != null;
+    }
+
+    /**
+     * Gives a scene that is not loaded the lines loaded for it elsewhere, such as on another
+     * thread. Does nothing if the scene has its lines already. The lines have to come from its
+     * {@link #getLineLoader() loader}: lines read from the store directly miss what the loader
+     * changes, such as the actor a scene from {@link #replacingActor} replaces.
+     */
+    public void setLoadedLines(@NotNull List<Line> lines) {
+        if (this.lines == null) {
+            this.lines = lines;
+            clearIndexes();
+        }
+    }
+
+    /**
+     * Drops the lines until they are used again, if the scene has a {@link LineLoader} to load them
+     * with. Returns whether it did. Changes to the lines that weren't saved are lost.
+     */
+    public boolean release() {
+        if (lineLoader == null || lines == null) {
+            return false;
+        }
+        lines = null;
+        clearIndexes();
+        return true;
+    }
+
+    /** The loader of a scene loaded without its lines, or null. */
+    @Nullable
+    public LineLoader getLineLoader() {
+        return lineLoader;
+    }
+
+    /** The position of {@code line} in this scene, or -1 if it isn't in it. */
+    public int indexOfLine(@NotNull Line line) {
+        return indexOfLine(line.getId());
+    }
+
+    /** The position of the line with {@code lineId} in this scene, or -1 if it isn't in it. */
+    public int indexOfLine(long lineId) {
+        if (lineIndex == null) {
+            lineIndex = new IdIndex<>(new IdIndex.IdOf<Line>() {
+                @Override
+                public long idOf(@NotNull Line line) {
+                    return line.getId();
+                }
+            });
+        }
+        return lineIndex.indexOf(getLines(), lineId);
+    }
+
+    /**
+     * The positions of {@code actor}'s lines in this scene. The set belongs to the scene and must
+     * not be changed.
+     */
+    @NotNull
+    public BitSet linesOf(@NotNull Actor actor) {
+        return actorLines().get(actor);
+    }
+
+    /** Whether {@code actor} has a line in this scene. */
+    public boolean hasLinesOf(@NotNull Actor actor) {
+        return !actorLines().get(actor).isEmpty();
+    }
+
+    /** Drops the positions of the actors' lines after the lines were changed directly. */
+    public void linesChanged() {
+        actorLines = null;
+    }
+
+    private ActorLines actorLines() {
+        List<Line> lines = getLines();
+        if (!isIndexed(lines)) {
+            actorLines = new ActorLines(lines);
+            indexedLines = lines;
+            indexedCount = lines.size();
+        }
+        return actorLines;
+    }
+
+    // a change to the number of lines or a new list can't have gone through the scene
+    private boolean isIndexed(List<Line> lines) {
+        return actorLines != null && lines == indexedLines && lines.size() == indexedCount;
+    }
+
+    private void clearIndexes() {
+        if (lineIndex != null) {
+            lineIndex.clear();
+        }
+        actorLines = null;
+        indexedLines = null;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setNumber(int number) {
+        this.number = number;
+    }
+
+    public void addLine(Line line) {
+        insertLine(getLines().size(), line);
+    }
+
+    public void addAction(String action) {
+        addLine(new Line(Actor.ACTION, action));
+    }
+
+    public void insertLine(int index, @NotNull Line line) {
+        List<Line> lines = getLines();
+        boolean indexed = isIndexed(lines);
+        lines.add(index, line);
+        if (indexed) {
+            actorLines.insert(index, line.getActor());
+            indexedCount++;
+        } else {
+            actorLines = null;
+        }
+    }
+
+    @NotNull
+    public Line removeLine(int index) {
+        List<Line> lines = getLines();
+        boolean indexed = isIndexed(lines);
+        Line line = lines.remove(index);
+        if (indexed) {
+            actorLines.remove(index, line.getActor());
+            indexedCount--;
+        } else {
+            actorLines = null;
+        }
+        return line;
+    }
+
+    /** Gives the line at {@code index} to {@code actor}. */
+    public void setLineActor(int index, @NotNull Actor actor) {
+        List<Line> lines = getLines();
+        Line line = lines.get(index);
+        if (isIndexed(lines)) {
+            actorLines.move(index, line.getActor(), actor);
+        } else {
+            actorLines = null;
+        }
+        line.setActor(actor);
+    }
+
+    /**
+     * Gives the lines of {@code actor} to {@code replacement}, touching only those lines. The lines
+     * are loaded for it, see {@link #replacingActor} for a scene that isn't loaded.
+     */
+    public void replaceActor(Actor actor, Actor replacement) {
+        List<Line> lines = getLines();
+        ActorLines actorLines = actorLines();
+        BitSet positions = actorLines.get(actor);
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            lines.get(i).setActor(replacement);
+        }
+        actorLines.replace(actor, replacement);
+    }
+
+    /**
+     * {@link #replaceActor} for a scene that may not be loaded. A loaded scene is changed and
+     * returned; for one that isn't, a scene is returned that replaces the actor as its lines are
+     * loaded, so they aren't loaded for it and the replacement outlasts a {@link #release()}.
+     */
+    @NotNull
+    Scene replacingActor(@NotNull Actor actor, @NotNull Actor replacement) {
+        if (lines != null) {
+            replaceActor(actor, replacement);
+            return this;
+        }
+        return new Scene(name, number, new ReplacingLoader(lineLoader, actor, replacement));
+    }
+
+    /** Loads the lines of a scene with another actor in place of the replaced one. */
+    private static class ReplacingLoader implements LineLoader {
+        private final LineLoader lineLoader;
+        private final Actor actor;
+        private final Actor replacement;
+
+        ReplacingLoader(LineLoader lineLoader, Actor actor, Actor replacement) {
+            this.lineLoader = lineLoader;
+            this.actor = actor;
+            this.replacement = replacement;
+        }
+
+        @Nullable
+        @Override
+        public List<Line> loadLines() {
+            List<Line> lines = lineLoader.loadLines();
+            if (lines != null) {
+                for (Line line : lines) {
+                    if (actor.equals(line.getActor())) {
+                        line.setActor(replacement);
+                    }
+                }
+            }
+            return lines;
+        }
+    }
+}
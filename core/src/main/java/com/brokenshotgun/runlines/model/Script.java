@@ -16,28 +16,24 @@
 
 package com.brokenshotgun.runlines.model;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-import android.util.Log;
-
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-
+import com.brokenshotgun.runlines.data.ElementListener;
 import com.brokenshotgun.runlines.data.FNElement;
 import com.brokenshotgun.runlines.data.FountainSerializer;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 
-public class Script implements Parcelable {
+public class Script {
     private static final transient String TAG = Script.class.getName();
 
-    @NonNull private String name;
+    @NotNull private String name;
     private String credit;
     private String author;
     private String source;
@@ -48,10 +44,11 @@ public class Script implements Parcelable {
     private final List<String> allVoices;
     private final HashMap<String, String> actorVoices;
     public transient String defaultVoice;
+    private transient IdIndex<Actor> actorIndex;
 
     public long id = -1L;
 
-    public Script(@NonNull String name) {
+    public Script(@NotNull String name) {
         this.name = name;
         actors = new ArrayList<>();
         scenes = new ArrayList<>();
@@ -70,8 +67,12 @@ public class Script implements Parcelable {
 
         actors.add(Actor.ACTION);
 
-        parseTitleTokens(titleTokens);
-        parseBodyTokens(bodyTokens);
+        Builder builder = new Builder(this);
+        builder.onTitlePage(titleTokens);
+        for (FNElement element : bodyTokens) {
+            builder.onElement(element);
+        }
+        builder.onEndOfScript();
     }
 
     private void parseTitleTokens(@NotNull Map<String, ? extends List<String>> titleTokens) {
@@ -111,69 +112,6 @@ public class Script implements Parcelable {
         return result.toString().trim();
     }
 
-    private void parseBodyTokens(@NotNull FNElement[] bodyTokens) {
-        Scene currentScene = new Scene();
-        Map<String, Actor> actorMap = new HashMap<>();
-        Actor currentActor;
-        Line currentLine = null;
-        for (FNElement element : bodyTokens) {
-            switch (element.getElementType()) {
-                case "Scene Heading":
-                    // TODO hold off handling this until handling section and synopsis
-//                    // fix for an initial scene with no scene heading
-//                    if (currentScene.getName() == null && currentScene.getLines().size() > 0) {
-//                        currentScene.setName("Untitled scene");
-//                        scenes.add(currentScene);
-//                    }
-                    currentScene = new Scene(element.getElementText());
-                    scenes.add(currentScene);
-                    break;
-                    // TODO how to handle section and synopsis that are independent of scene order?
-//                case "Section Heading":
-//                    break;
-//                case "Synopsis":
-//                    break;
-                case "Transition":
-                case "Action":
-                    currentScene.addAction(element.getElementText());
-                    break;
-                case "Character":
-                    String actorName = element.getElementText();
-
-                    // find and separate out character extensions
-                    List<String> extensions = FountainSerializer.getCharacterExtensions(actorName);
-                    if (extensions.size() > 0) {
-                        actorName = actorName.replaceAll(FountainSerializer.CHARACTER_EXTENSION_PATTERN, "").trim();
-                    }
-
-                    // setup actor
-                    if (!actorMap.containsKey(actorName)) {
-                        currentActor = new Actor(actorName);
-                        actorMap.put(actorName, currentActor);
-                        addActor(currentActor);
-                    }
-                    currentActor = actorMap.get(actorName);
-
-                    // start new line
-                    currentLine = new Line(currentActor);
-                    currentLine.characterExtensions.addAll(extensions);
-                    currentScene.addLine(currentLine);
-                    break;
-                case "Parenthetical":
-                case "Dialogue":
-                    if (currentLine != null) {
-                        currentLine.addDialogue(element.getElementText());
-                    }
-                    break;
-            }
-        }
-        // fix for script that has no scene headings
-        if (currentScene.getName() == null) {
-            currentScene.setName("Untitled scene");
-            scenes.add(currentScene);
-        }
-    }
-
     public Script(Script copy) {
         this.name = copy.name;
         this.credit = copy.credit;
@@ -210,7 +148,7 @@ public class Script implements Parcelable {
         actors.add(actor);
     }
 
-    @NonNull
+    @NotNull
     public String getName() {
         return name;
     }
@@ -247,7 +185,7 @@ public class Script implements Parcelable {
         return scenes.get(sceneIndex);
     }
 
-    public void setName(@NonNull String name) {
+    public void setName(@NotNull String name) {
         this.name = name;
     }
 
@@ -271,20 +209,77 @@ public class Script implements Parcelable {
         this.contact = contact;
     }
 
+    /**
+     * Removes {@code actor} and gives its lines to {@code replacement}. Scenes that aren't loaded
+     * aren't loaded for it, they are replaced by scenes that replace the actor as they load.
+     */
     public void replaceActor(Actor actor, Actor replacement) {
         if (actor.equals(Actor.ACTION)) {
-            Log.w(TAG, "Cannot remove Action actor");
+            Logger.getLogger(TAG).warning("Cannot remove Action actor");
             return;
         }
 
-        actors.remove(actor);
-        for (Scene scene : scenes) {
-            scene.replaceActor(actor, replacement);
+        int index = indexOfActor(actor);
+        if (index >= 0) {
+            actors.remove(index);
+        }
+        for (int i = 0; i < scenes.size(); i++) {
+            scenes.set(i, scenes.get(i).replacingActor(actor, replacement));
+        }
+    }
+
+    /**
+     * The positions of the scenes in which {@code actor} has a line. Every scene is checked in
+     * constant time once it has its lines, but scenes that aren't loaded are loaded for it.
+     */
+    @NotNull
+    public BitSet scenesWith(@NotNull Actor actor) {
+        BitSet result = new BitSet(scenes.size());
+        for (int i = 0; i < scenes.size(); i++) {
+            if (scenes.get(i).hasLinesOf(actor)) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the scenes from {@code fromScene} until {@code toScene} with the ones read from
+     * {@code elements}, for a part of the script that was parsed again. Anything before the first
+     * scene heading in {@code elements} is dropped, like it is for a whole script, and characters
+     * are matched by name with the actors already in the script.
+     */
+    public void replaceScenes(int fromScene, int toScene, @NotNull List<FNElement> elements) {
+        scenes.subList(fromScene, toScene).clear();
+        Builder builder = new Builder(this, fromScene);
+        for (FNElement element : elements) {
+            builder.onElement(element);
+        }
+        if (scenes.isEmpty()) {
+            builder.onEndOfScript();
         }
     }
 
     public boolean hasActor(Actor currentActor) {
-        return actors.contains(currentActor);
+        return indexOfActor(currentActor) >= 0;
+    }
+
+    /**
+     * The position of {@code actor} in {@link #getActors()}, or -1 if the script has no actor of
+     * that name. The script's own actors, which its lines share, are found by id.
+     */
+    public int indexOfActor(@NotNull Actor actor) {
+        if (actorIndex == null) {
+            actorIndex = new IdIndex<>(new IdIndex.IdOf<Actor>() {
+                @Override
+                public long idOf(@NotNull Actor actor) {
+                    return actor.getId();
+                }
+            });
+        }
+        int index = actorIndex.indexOf(actors, actor.getId());
+        // an actor of another copy of the script, matched by name like before
+        return index >= 0 ? index : actors.indexOf(actor);
     }
 
     public void addScene(Scene newScene) {
@@ -312,7 +307,11 @@ public class Script implements Parcelable {
         return allVoices;
     }
 
-    @NonNull
+    public Map<String, String> getActorVoices() {
+        return actorVoices;
+    }
+
+    @NotNull
     @Override
     public String toString() {
         return "Script{" +
@@ -331,59 +330,106 @@ public class Script implements Parcelable {
                 '}';
     }
 
-    @Override
-    public int describeContents() {
-        return 0;
-    }
+    /**
+     * Builds a script from the elements pushed by
+     * {@link FountainSerializer#deserialize(java.io.Reader, ElementListener)}, so the script is
+     * put together while it is read instead of from the whole text at once.
+     */
+    public static class Builder implements ElementListener {
+        private final Script script;
+        private final Map<String, Actor> actorMap = new HashMap<>();
+        private Scene currentScene = new Scene();
+        private Line currentLine = null;
+        private int sceneIndex;
+
+        public Builder() {
+            this(new Script("Untitled script")); // set to something in case no title page
+        }
 
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(this.name);
-        dest.writeString(this.credit);
-        dest.writeString(this.author);
-        dest.writeString(this.source);
-        dest.writeString(this.draftDate);
-        dest.writeString(this.contact);
-        dest.writeTypedList(this.actors);
-        dest.writeTypedList(this.scenes);
-        dest.writeStringList(this.allVoices);
-        dest.writeSerializable(this.actorVoices);
-        dest.writeLong(this.id);
-    }
-
-    @SuppressWarnings("unchecked")
-    protected Script(Parcel in) {
-        String tmpName = in.readString();
-        name = tmpName != null ? tmpName : "Untitled script";
-        credit = in.readString();
-        author = in.readString();
-        source = in.readString();
-        draftDate = in.readString();
-        contact = in.readString();
-        ArrayList<Actor> tmpActors = in.createTypedArrayList(Actor.CREATOR);
-        actors = (tmpActors != null) ? new ArrayList<>(tmpActors) : new ArrayList<Actor>();
-        ArrayList<Scene> tmpScenes = in.createTypedArrayList(Scene.CREATOR);
-        scenes = (tmpScenes != null) ? new ArrayList<>(tmpScenes) : new ArrayList<Scene>();
-        allVoices = new ArrayList<>();
-        in.readStringList(allVoices);
-        Serializable tmpActorVoices = in.readSerializable();
-        this.actorVoices = (tmpActorVoices == null) ? new HashMap<String, String>() : (HashMap<String, String>) tmpActorVoices;
-        id = in.readLong();
+        private Builder(Script script) {
+            this(script, script.scenes.size());
+        }
 
-        if (actors.size() == 0 || !actors.get(0).equals(Actor.ACTION)) {
-            actors.add(0, Actor.ACTION);
+        /** Adds the scenes it reads at {@code sceneIndex}, reusing the actors of {@code script}. */
+        private Builder(Script script, int sceneIndex) {
+            this.script = script;
+            this.sceneIndex = sceneIndex;
+            // the first actor is always Action, never a character
+            for (int i = 1; i < script.actors.size(); i++) {
+                Actor actor = script.actors.get(i);
+                actorMap.put(actor.getName(), actor);
+            }
         }
-    }
 
-    public static final Creator<Script> CREATOR = new Creator<Script>() {
         @Override
-        public Script createFromParcel(Parcel source) {
-            return new Script(source);
+        public void onTitlePage(@NotNull Map<String, ? extends List<String>> titleTokens) {
+            script.parseTitleTokens(titleTokens);
+        }
+
+        @Override
+        public void onElement(@NotNull FNElement element) {
+            switch (element.getElementType()) {
+                case SCENE_HEADING:
+                    // TODO hold off handling this until handling section and synopsis
+//                    // fix for an initial scene with no scene heading
+//                    if (currentScene.getName() == null && currentScene.getLines().size() > 0) {
+//                        currentScene.setName("Untitled scene");
+//                        scenes.add(currentScene);
+//                    }
+                    currentScene = new Scene(element.getElementText());
+                    script.scenes.add(sceneIndex++, currentScene);
+                    break;
+                    // TODO how to handle section and synopsis that are independent of scene order?
+//                case SECTION_HEADING:
+//                    break;
+//                case SYNOPSIS:
+//                    break;
+                case TRANSITION:
+                case ACTION:
+                    currentScene.addAction(element.getElementText());
+                    break;
+                case CHARACTER:
+                    String actorName = element.getElementText();
+
+                    // find and separate out character extensions
+                    List<String> extensions = FountainSerializer.getCharacterExtensions(actorName);
+                    if (extensions.size() > 0) {
+                        actorName = actorName.replaceAll(FountainSerializer.CHARACTER_EXTENSION_PATTERN, "").trim();
+                    }
+
+                    // setup actor
+                    Actor currentActor = actorMap.get(actorName);
+                    if (currentActor == null) {
+                        currentActor = new Actor(actorName);
+                        actorMap.put(actorName, currentActor);
+                        script.addActor(currentActor);
+                    }
+
+                    // start new line
+                    currentLine = new Line(currentActor);
+                    currentLine.characterExtensions.addAll(extensions);
+                    currentScene.addLine(currentLine);
+                    break;
+                case PARENTHETICAL:
+                case DIALOGUE:
+                    if (currentLine != null) {
+                        currentLine.addDialogue(element.getElementText());
+                    }
+                    break;
+            }
         }
 
         @Override
-        public Script[] newArray(int size) {
-            return new Script[size];
+        public void onEndOfScript() {
+            // fix for script that has no scene headings
+            if (currentScene.getName() == null) {
+                currentScene.setName("Untitled scene");
+                script.scenes.add(sceneIndex++, currentScene);
+            }
         }
-    };
+
+        public Script build() {
+            return script;
+        }
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Changes to a script that are made to a copy of it, {@link #getScript()}, and only reach the
+ * script itself, which other screens may be showing, when they are kept with {@link #commit()}.
+ * Dropping the edit discards them.
+ * <p>
+ * The copy shares the scenes it doesn't change with the script. The edited scene is copied with
+ * its lines up front, other scenes when {@link #replaceActor} changes them; a scene whose lines
+ * aren't loaded isn't loaded for that, its copy replaces the actor as its lines are loaded.
+ */
+public class ScriptEdit {
+    private final Script original;
+    private final Script script;
+    private final Set<Scene> copies = Collections.newSetFromMap(new IdentityHashMap<Scene, Boolean>());
+
+    public ScriptEdit(@NotNull Script original, int sceneIndex) {
+        this.original = original;
+        this.script = new Script(original);
+        copyScene(sceneIndex);
+    }
+
+    /** The copy to make the changes to. */
+    @NotNull
+    public Script getScript() {
+        return script;
+    }
+
+    /** The scene at {@code sceneIndex} of the copy, copied first if the script still shares it. */
+    @NotNull
+    public Scene copyScene(int sceneIndex) {
+        Scene scene = script.getScene(sceneIndex);
+        if (!copies.contains(scene)) {
+            scene = new Scene(scene);
+            script.getScenes().set(sceneIndex, scene);
+            copies.add(scene);
+        }
+        return scene;
+    }
+
+    /** {@link Script#replaceActor} on the copy, copying the scenes that have lines of the actor. */
+    public void replaceActor(@NotNull Actor actor, @NotNull Actor replacement) {
+        if (actor.equals(Actor.ACTION)) {
+            // the script keeps its action lines, as Script.replaceActor does
+            return;
+        }
+
+        int index = script.indexOfActor(actor);
+        if (index >= 0) {
+            script.getActors().remove(index);
+        }
+        List<Scene> scenes = script.getScenes();
+        for (int i = 0; i < scenes.size(); i++) {
+            Scene scene = scenes.get(i);
+            if (!scene.isLoaded()) {
+                Scene copy = scene.replacingActor(actor, replacement);
+                scenes.set(i, copy);
+                copies.add(copy);
+            } else if (scene.hasLinesOf(actor)) {
+                copyScene(i).replaceActor(actor, replacement);
+            }
+        }
+    }
+
+    /**
+     * Makes the changes to the script. It gets copies of the changed scenes, so the edit can go on
+     * without changing it again.
+     */
+    public void commit() {
+        original.copy(script);
+        List<Scene> scenes = original.getScenes();
+        for (int i = 0; i < scenes.size(); i++) {
+            if (copies.contains(scenes.get(i))) {
+                scenes.set(i, new Scene(scenes.get(i)));
+            }
+        }
+    }
+}
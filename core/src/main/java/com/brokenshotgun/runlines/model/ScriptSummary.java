@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * What the script list shows about a script, without its scenes and lines. The full
+ * {@link Script} is loaded by id when the script is opened.
+ */
+public class ScriptSummary {
+    private final long id;
+    @NotNull private String name;
+    private final String author;
+    private final int sceneCount;
+    private final int lineCount;
+    private final long modifiedDate;
+    private final long size;
+
+    public ScriptSummary(long id, @NotNull String name, String author, int sceneCount, int lineCount,
+                         long modifiedDate, long size) {
+        this.id = id;
+        this.name = name;
+        this.author = author;
+        this.sceneCount = sceneCount;
+        this.lineCount = lineCount;
+        this.modifiedDate = modifiedDate;
+        this.size = size;
+    }
+
+    /** Counts the scenes, lines and text of {@code script}. */
+    public static ScriptSummary of(@NotNull Script script, long modifiedDate) {
+        int lineCount = 0;
+        long size = 0;
+        for (Scene scene : script.getScenes()) {
+            lineCount += scene.getLines().size();
+            for (Line line : scene.getLines()) {
+                if (line.getLine() != null) {
+                    size += line.getLine().length();
+                }
+            }
+        }
+        return new ScriptSummary(script.id, script.getName(), script.getAuthor(), script.getScenes().size(),
+                lineCount, modifiedDate, size);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    public void setName(@NotNull String name) {
+        this.name = name;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public int getSceneCount() {
+        return sceneCount;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /** When the script was last saved, in milliseconds since the epoch. */
+    public long getModifiedDate() {
+        return modifiedDate;
+    }
+
+    /** The length of the text of all lines, in characters. */
+    public long getSize() {
+        return size;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "ScriptSummary{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", author='" + author + '\'' +
+                ", sceneCount=" + sceneCount +
+                ", lineCount=" + lineCount +
+                ", modifiedDate=" + modifiedDate +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A line or scene heading that matched a search of the whole library, in the order of how well it
+ * matched.
+ */
+public class SearchHit {
+    /** Marks the start of a matching word in {@link #getSnippet()}. */
+    public static final String MATCH_START = "[";
+    /** Marks the end of a matching word in {@link #getSnippet()}. */
+    public static final String MATCH_END = "]";
+
+    private final long scriptId;
+    @NotNull private final String scriptName;
+    private final int sceneIndex;
+    private final int lineIndex;
+    @NotNull private final String snippet;
+    private final double score;
+
+    public SearchHit(long scriptId, @NotNull String scriptName, int sceneIndex, int lineIndex,
+                     @NotNull String snippet, double score) {
+        this.scriptId = scriptId;
+        this.scriptName = scriptName;
+        this.sceneIndex = sceneIndex;
+        this.lineIndex = lineIndex;
+        this.snippet = snippet;
+        this.score = score;
+    }
+
+    public long getScriptId() {
+        return scriptId;
+    }
+
+    @NotNull
+    public String getScriptName() {
+        return scriptName;
+    }
+
+    public int getSceneIndex() {
+        return sceneIndex;
+    }
+
+    /** The index of the line in its scene, or -1 if the scene heading matched. */
+    public int getLineIndex() {
+        return lineIndex;
+    }
+
+    public boolean isSceneHeading() {
+        return lineIndex < 0;
+    }
+
+    /** The matching part of the text, with matching words between {@link #MATCH_START} and {@link #MATCH_END}. */
+    @NotNull
+    public String getSnippet() {
+        return snippet;
+    }
+
+    /** How well the hit matched, higher is better. Only comparable within one search. */
+    public double getScore() {
+        return score;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "scriptId=" + scriptId +
+                ", scriptName='" + scriptName + '\'' +
+                ", sceneIndex=" + sceneIndex +
+                ", lineIndex=" + lineIndex +
+                ", snippet='" + snippet + '\'' +
+                ", score=" + score +
+                '}';
+    }
+}
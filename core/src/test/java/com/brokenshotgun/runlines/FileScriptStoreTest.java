@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines;
+
+import com.brokenshotgun.runlines.data.FileScriptStore;
+import com.brokenshotgun.runlines.data.ScriptJson;
+import com.brokenshotgun.runlines.data.ScriptStore;
+import com.brokenshotgun.runlines.model.Script;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileScriptStoreTest extends ScriptStoreContractTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Override
+    protected ScriptStore createStore() throws IOException {
+        directory = new File(folder.getRoot(), "scripts");
+        return new FileScriptStore(directory);
+    }
+
+    @Test
+    public void testReopen() {
+        Script script = new Script("Kept");
+        store.insertScript(script);
+
+        FileScriptStore reopened = new FileScriptStore(directory);
+        assertEquals(ScriptJson.toJson(script), ScriptJson.toJson(reopened.loadScript(script.id)));
+        assertEquals(1, reopened.loadSummaries().size());
+        Script next = new Script("Next");
+        assertEquals(script.id + 1, reopened.insertScript(next));
+    }
+
+    @Test
+    public void testIgnoresOtherFiles() throws IOException {
+        Script script = new Script("Kept");
+        store.insertScript(script);
+        // left behind by a save that didn't finish
+        assertTrue(new File(directory, script.id + 1 + ".script.tmp").createNewFile());
+        assertTrue(new File(directory, "notes.txt").createNewFile());
+        assertEquals(1, store.loadSummaries().size());
+        assertNull(store.loadScript(script.id + 1));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines
+
+import java.util.Locale
+import java.util.Random
+
+/**
+ * Writes made up Fountain scripts of any size for tests that need more than the scripts in the
+ * test resources. The same seed and settings always give the same text.
+ *
+ * [lineCount] is the number of lines the script parses to, one for each block of dialogue, action
+ * or transition, the way [com.brokenshotgun.runlines.model.Script.Builder] counts them. Notes and
+ * boneyard blocks come on top of that and don't end up in the script. The last line is always a
+ * FADE OUT. transition.
+ */
+class FountainGenerator(private val seed: Long) {
+    var lineCount = 1_000
+
+    /** Scenes to spread the lines over, 0 for one scene for every 40 lines. */
+    var sceneCount = 0
+
+    var castSize = 12
+
+    /** Words in a line of dialogue or action, lines vary from half of this to one and a half. */
+    var wordsPerLine = 12
+
+    /** Adds a note or a boneyard block after about one in 20 lines. */
+    var notes = true
+
+    /** Makes about one in 15 exchanges dual dialogue. */
+    var dualDialogue = true
+
+    var titlePage = true
+
+    fun generate(): String {
+        require(lineCount >= 1) { "lineCount must be at least 1" }
+        require(castSize >= 1) { "castSize must be at least 1" }
+        require(wordsPerLine >= 1) { "wordsPerLine must be at least 1" }
+
+        val random = Random(seed)
+        val cast = List(castSize) { i -> characterName(random, i) }
+        val scenes = if (sceneCount > 0) minOf(sceneCount, lineCount) else maxOf(1, lineCount / 40)
+        val out = StringBuilder(lineCount * (wordsPerLine * 7 + 24))
+
+        if (titlePage) {
+            out.append("Title: ").append(sentence(random, 3).trimEnd('.', '?', '!')).append('\n')
+            out.append("Credit: Written by\n")
+            out.append("Author: ").append(capitalize(word(random))).append(' ')
+                    .append(capitalize(word(random))).append('\n')
+            out.append("Draft date: ").append(1 + random.nextInt(12)).append('/')
+                    .append(1 + random.nextInt(28)).append('/').append(1990 + random.nextInt(30))
+                    .append('\n')
+            out.append("Contact: 555-").append(1000 + random.nextInt(9000)).append("\n\n")
+        }
+
+        var written = 0
+        for (scene in 0 until scenes) {
+            // spread the lines evenly, the first scenes take the remainder
+            val sceneLines = lineCount / scenes + if (scene < lineCount % scenes) 1 else 0
+            // the last line is the closing transition
+            val target = written + sceneLines - if (scene == scenes - 1) 1 else 0
+
+            out.append(if (random.nextBoolean()) "INT. " else "EXT. ")
+                    .append(word(random).toUpperCase(Locale.US)).append(' ')
+                    .append(word(random).toUpperCase(Locale.US))
+                    .append(if (random.nextBoolean()) " - DAY" else " - NIGHT").append("\n\n")
+
+            while (written < target) {
+                val left = target - written
+                val roll = random.nextInt(100)
+                when {
+                    roll < 25 -> {
+                        out.append(sentence(random, lineLength(random))).append("\n\n")
+                        written++
+                    }
+                    roll < 28 -> {
+                        out.append(TRANSITIONS[random.nextInt(TRANSITIONS.size)]).append("\n\n")
+                        written++
+                    }
+                    dualDialogue && roll < 35 && left >= 2 && cast.size >= 2 -> {
+                        val first = random.nextInt(cast.size)
+                        val second = (first + 1 + random.nextInt(cast.size - 1)) % cast.size
+                        dialogue(out, random, cast[first], false)
+                        dialogue(out, random, cast[second], true)
+                        written += 2
+                    }
+                    else -> {
+                        dialogue(out, random, cast[random.nextInt(cast.size)], false)
+                        written++
+                    }
+                }
+
+                if (notes && random.nextInt(20) == 0) {
+                    if (random.nextBoolean()) {
+                        out.append("[[").append(sentence(random, lineLength(random))).append("]]\n\n")
+                    } else {
+                        out.append("/*\n").append(sentence(random, lineLength(random))).append('\n')
+                                .append(sentence(random, lineLength(random))).append("\n*/\n\n")
+                    }
+                }
+            }
+        }
+
+        // dialogue at the very end of the text is read as action, so close the script the usual way
+        out.append("FADE OUT.\n")
+        return out.toString()
+    }
+
+    private fun dialogue(out: StringBuilder, random: Random, name: String, dual: Boolean) {
+        out.append(name)
+        if (random.nextInt(12) == 0) {
+            out.append(if (random.nextBoolean()) " (V.O.)" else " (CONT'D)")
+        }
+        if (dual) {
+            out.append(" ^")
+        }
+        out.append('\n')
+        if (random.nextInt(6) == 0) {
+            out.append('(').append(sentence(random, 1 + random.nextInt(3)).trimEnd('.').toLowerCase(Locale.US))
+                    .append(")\n")
+        }
+        out.append(sentence(random, lineLength(random))).append("\n\n")
+    }
+
+    private fun lineLength(random: Random): Int =
+            maxOf(1, wordsPerLine / 2 + random.nextInt(wordsPerLine + 1))
+
+    private fun sentence(random: Random, words: Int): String {
+        val sentence = StringBuilder(words * 7)
+        for (i in 0 until words) {
+            if (i > 0) {
+                sentence.append(if (random.nextInt(10) == 0) ", " else " ")
+            }
+            val word = word(random)
+            sentence.append(if (i == 0) capitalize(word) else word)
+        }
+        return sentence.append(ENDINGS[random.nextInt(ENDINGS.size)]).toString()
+    }
+
+    private fun word(random: Random): String {
+        val syllables = 1 + random.nextInt(3)
+        val word = StringBuilder(syllables * 3)
+        for (i in 0 until syllables) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.size)])
+        }
+        return word.toString()
+    }
+
+    private fun characterName(random: Random, index: Int): String =
+            // the index keeps the names apart when the syllables happen to repeat
+            (word(random) + NAME_SUFFIXES[index % NAME_SUFFIXES.size]).toUpperCase(Locale.US) +
+                    if (index >= NAME_SUFFIXES.size) " ${index / NAME_SUFFIXES.size}" else ""
+
+    private fun capitalize(word: String): String =
+            word.substring(0, 1).toUpperCase(Locale.US) + word.substring(1)
+
+    companion object {
+        private val SYLLABLES = arrayOf("ka", "lo", "mi", "ra", "ten", "dor", "vi", "sel", "an",
+                "bru", "co", "em", "fal", "gi", "hun", "jo", "ner", "pa", "qui", "sto", "wen")
+        private val NAME_SUFFIXES = arrayOf("a", "o", "is", "en", "ia", "us", "ar", "el")
+        private val ENDINGS = arrayOf(".", ".", ".", "?", "!")
+        private val TRANSITIONS = arrayOf("CUT TO:", "DISSOLVE TO:", "SMASH CUT TO:")
+    }
+}
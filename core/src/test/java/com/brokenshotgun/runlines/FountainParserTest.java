@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.brokenshotgun.runlines.data.CommentScanner;
+import com.brokenshotgun.runlines.data.ElementType;
+import com.brokenshotgun.runlines.data.FNElement;
+import com.brokenshotgun.runlines.data.FountainDocument;
+import com.brokenshotgun.runlines.data.FountainSerializer;
+import com.brokenshotgun.runlines.data.ParentheticalScanner;
+import com.brokenshotgun.runlines.data.ParserMode;
+import com.brokenshotgun.runlines.model.Actor;
+import com.brokenshotgun.runlines.model.Line;
+import com.brokenshotgun.runlines.model.Scene;
+import com.brokenshotgun.runlines.model.Script;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class FountainParserTest {
+
+    @Before
+    public void setup() {
+
+    }
+
+    /*
+    @Test
+    public void testParseScript() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        assert classLoader != null;
+        URL resource = classLoader.getResource("bigfish.fountain.txt");
+        File file = new File(resource.getPath());
+        String testScriptStr = convertStreamToString(new FileInputStream(file));
+
+        Script result = FountainParser.parse(testScriptStr);
+        assertNotNull(result);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        System.out.println(gson.toJson(result));
+    }
+
+    @Test
+    public void testFormatScript() {
+        Script script = new Script("Fountain Format Test Script");
+        Actor actor = new Actor("JASON");
+        script.addActor(actor);
+        Scene scene = new Scene("INT. A CREEPY BASEMENT");
+        script.addScene(scene);
+        scene.addLine(new Line(actor, "hello world"));
+        scene.addAction("Jason whips off his sunglasses");
+        scene.addLine(new Line(actor, "my name is Jason\n(pause)\nAnd this is a test"));
+        scene.addAction("Queue CSI: Miami YEAAAAAAAAAAAAAAAAAH (Won't Get Fooled Again by The Who)");
+
+        String result = FountainParser.format(script);
+        System.out.println(result);
+    }
+    */
+
+    @Test
+    public void testDeserializeScript() throws Exception {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+        String bigFishString = convertTextResToString("bigfish.fountain.txt");
+        Script bigFishScript = FountainSerializer.deserialize(bigFishString);
+        assertNotNull(bigFishScript);
+        System.out.println(gson.toJson(bigFishScript));
+
+        String birthdayString = convertTextResToString("TheLastBirthdayCard.fountain.txt");
+        Script birthdayScript = FountainSerializer.deserialize(birthdayString);
+        assertNotNull(birthdayScript);
+        System.out.println(gson.toJson(birthdayScript));
+
+        String brickSteelString = convertTextResToString("Brick&Steel.fountain.txt");
+        Script brickSteelScript = FountainSerializer.deserialize(brickSteelString);
+        assertNotNull(brickSteelScript);
+        System.out.println(gson.toJson(brickSteelScript));
+    }
+
+    @Test
+    public void testDeserializeSmallScript() throws Exception {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+        String brickSteelString = convertTextResToString("Brick&Steel.fountain.txt");
+        Script brickSteelScript = FountainSerializer.deserialize(brickSteelString);
+        assertNotNull(brickSteelScript);
+        System.out.println("testDeserializeSmallScript> SCRIPT JSON=\n" + gson.toJson(brickSteelScript));
+    }
+
+    @Test
+    public void testDeserializeMediumScript() throws Exception {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+        String birthdayString = convertTextResToString("TheLastBirthdayCard.fountain.txt");
+        Script birthdayScript = FountainSerializer.deserialize(birthdayString);
+        assertNotNull(birthdayScript);
+        System.out.println("testDeserializeMediumScript> SCRIPT JSON=\n" + gson.toJson(birthdayScript));
+    }
+
+    @Test
+    public void testDeserializeLongScript() throws Exception {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+        String bigFishString = convertTextResToString("bigfish.fountain.txt");
+        Script bigFishScript = FountainSerializer.deserialize(bigFishString);
+        assertNotNull(bigFishScript);
+        System.out.println("testDeserializeLongScript> SCRIPT JSON=\n" + gson.toJson(bigFishScript));
+    }
+
+    @Test
+    public void testLexerMatchesLegacyParser() throws Exception {
+        String[] testScripts = { "bigfish.fountain.txt", "TheLastBirthdayCard.fountain.txt", "Brick&Steel.fountain.txt" };
+        for (String testScript : testScripts) {
+            String scriptString = convertTextResToString(testScript);
+            FNElement[] legacy = FountainSerializer.deserializeBody(scriptString, ParserMode.LEGACY);
+            FNElement[] lexer = FountainSerializer.deserializeBody(scriptString, ParserMode.LEXER);
+            assertArrayEquals(testScript, legacy, lexer);
+        }
+    }
+
+    @Test
+    public void testDefaultParserKeepsNotes() {
+        // the lexer reports notes as comments, which the script leaves out
+        Script script = FountainSerializer.deserialize("INT. HOUSE - DAY\n\n[[a note]]\n\nJOHN\nHello.\n");
+        Scene scene = script.getScenes().get(0);
+        assertEquals("[[a note]]", scene.getLines().get(0).getLine());
+        assertEquals("Hello.", scene.getLines().get(1).getLine());
+    }
+
+    @Test
+    public void testLexerBoneyard() {
+        String scriptString = "INT. HOUSE - DAY\n\n/* cut\nthis */\n\nJOHN\nHello.\n";
+        FNElement[] elements = FountainSerializer.deserializeBody(scriptString, ParserMode.LEXER);
+        assertEquals(4, elements.length);
+        assertEquals(ElementType.BONEYARD, elements[1].getElementType());
+        assertEquals("cut\nthis", elements[1].getElementText());
+        assertEquals(ElementType.CHARACTER, elements[2].getElementType());
+        assertEquals("Hello.", elements[3].getElementText());
+    }
+
+    @Test
+    public void testStreamingMatchesString() throws Exception {
+        Gson gson = new Gson();
+        String[] testScripts = { "bigfish.fountain.txt", "TheLastBirthdayCard.fountain.txt", "Brick&Steel.fountain.txt" };
+        for (String testScript : testScripts) {
+            String scriptString = convertTextResToString(testScript);
+            final List<FNElement> streamed = new ArrayList<>();
+            Script.Builder builder = new Script.Builder() {
+                @Override
+                public void onElement(@NotNull FNElement element) {
+                    super.onElement(element);
+                    streamed.add(element);
+                }
+            };
+            FountainSerializer.deserialize(new StringReader(scriptString.replace("\n", "\r\n")), builder);
+
+            FNElement[] elements = FountainSerializer.deserializeBody(scriptString, ParserMode.LEXER);
+            assertArrayEquals(testScript, elements, streamed.toArray(new FNElement[0]));
+            assertEquals(testScript, gson.toJson(FountainSerializer.deserialize(scriptString)), gson.toJson(builder.build()));
+        }
+    }
+
+    @Test
+    public void testParallelMatchesLexer() throws Exception {
+        StringBuilder bigScript = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            bigScript.append(convertTextResToString("bigfish.fountain.txt")).append("\n");
+        }
+        String scriptString = bigScript.toString();
+
+        FNElement[] lexer = FountainSerializer.deserializeBody(scriptString, ParserMode.LEXER);
+        FNElement[] parallel = FountainSerializer.deserializeBody(scriptString, ParserMode.PARALLEL);
+        assertArrayEquals(lexer, parallel);
+
+        Script script = FountainSerializer.deserialize(scriptString, ParserMode.PARALLEL);
+        for (Scene scene : script.getScenes()) {
+            for (Line line : scene.getLines()) {
+                Actor actor = line.getActor();
+                assertSame(actor, script.getActors().get(script.getActors().indexOf(actor)));
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalEdits() throws Exception {
+        Gson gson = new Gson();
+        String[] snippets = { "", "\n", "\n\nINT. NEW PLACE - DAY\n\n", "EXT. ROAD\n", "\n\nJOHN\nHi there.\n\n",
+                "(beat)\n", "/* cut\n", " */\n", "> THE END <\n", "CUT TO:\n\n", "Some action.", "\n\n\n" };
+        FountainDocument document = new FountainDocument(convertTextResToString("bigfish.fountain.txt"));
+        Random random = new Random(4);
+        for (int i = 0; i < 60; i++) {
+            String text = document.getText();
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(3) * random.nextInt(40));
+            document.edit(start, end, snippets[random.nextInt(snippets.length)]);
+
+            text = document.getText();
+            FNElement[] expected = FountainSerializer.deserializeBody(text, ParserMode.LEXER);
+            assertArrayEquals("edit " + i, expected, document.getElements().toArray(new FNElement[0]));
+            Script expectedScript = FountainSerializer.deserialize(text, ParserMode.LEXER);
+            assertEquals("edit " + i, gson.toJson(expectedScript.getScenes()), gson.toJson(document.getScript().getScenes()));
+            assertEquals("edit " + i, expectedScript.getName(), document.getScript().getName());
+        }
+    }
+
+    @Test
+    public void testCommentScannerMatchesPatterns() {
+        Pattern blockComment = Pattern.compile("\\n/\\*([^<>]+?)\\*/\\n");
+        Pattern bracketComment = Pattern.compile("\\n\\[{2}([^<>]+?)]{2}\\n");
+        String alphabet = "\n\n/*[]<a ";
+        Random random = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String script = text.toString();
+
+            assertArrayEquals(script, regions(blockComment, script), CommentScanner.BONEYARD.find(script));
+            assertArrayEquals(script, regions(bracketComment, script), CommentScanner.NOTE.find(script));
+            assertEquals(script, blockComment.matcher(script).replaceAll("\n<Boneyard>$1</Boneyard>\n"),
+                    CommentScanner.BONEYARD.tag(script, CommentScanner.BONEYARD.find(script), "Boneyard"));
+        }
+    }
+
+    private int[] regions(Pattern pattern, String script) {
+        List<Integer> offsets = new ArrayList<>();
+        Matcher matcher = pattern.matcher(script);
+        while (matcher.find()) {
+            offsets.add(matcher.start());
+            offsets.add(matcher.end());
+        }
+        int[] result = new int[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testParentheticalScannerMatchesPattern() {
+        Pattern parenthetical = Pattern.compile("(\\([^<>]*?\\)[\\s]?)\n", Pattern.MULTILINE);
+        String alphabet = "\n\n()<> a\t";
+        Random random = new Random(6);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String script = text.toString();
+
+            assertEquals(script, parenthetical.matcher(script).replaceAll("<Parenthetical>$1</Parenthetical>"),
+                    ParentheticalScanner.INSTANCE.tag(script));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testAdversarialInputParsesInBoundedTime() {
+        String[] scripts = {
+                // an action paragraph that runs into a parenthetical
+                "INT. HOUSE - DAY\n\n" + repeat("word ", 40000) + "(beat)\n\n",
+                // brackets that don't close before a character cue
+                "INT. HOUSE - DAY\n\n" + repeat("(a ", 20000) + "\n\nJOHN\nHello.\n",
+                // thousands of blank lines
+                "INT. HOUSE - DAY\n\nSome action." + repeat("\n", 100000) + "More action.\n",
+                // a separator, a cue that never ends and a section heading that is mostly blank
+                repeat("*", 100000) + "\n\n" + repeat("A", 200000) + "\n\n" + repeat("#", 1000) + repeat(" ", 100000) + "x\n"
+        };
+        for (String script : scripts) {
+            FNElement[] lexer = FountainSerializer.deserializeBody(script, ParserMode.LEXER);
+            FNElement[] legacy = FountainSerializer.deserializeBody(script, ParserMode.LEGACY);
+            assertArrayEquals(lexer, legacy);
+        }
+    }
+
+    private String repeat(String text, int count) {
+        StringBuilder result = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            result.append(text);
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testSerializeScript() {
+        Script script = new Script("Fountain Format Test Script");
+        Actor actor = new Actor("JASON");
+        script.addActor(actor);
+        Scene scene = new Scene("INT. A CREEPY BASEMENT");
+        script.addScene(scene);
+        scene.addLine(new Line(actor, "hello world"));
+        scene.addAction("Jason whips off his sunglasses");
+        scene.addLine(new Line(actor, "my name is Jason\n(pause)\nAnd this is a test"));
+        scene.addAction("Queue CSI: Miami YEAAAAAAAAAAAAAAAAAH (Won't Get Fooled Again by The Who)");
+
+        String result = FountainSerializer.serialize(script);
+        System.out.println(result);
+    }
+
+    private String convertTextResToString(@NotNull String testResPath) throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        assert classLoader != null;
+        URL resource = classLoader.getResource(testResPath);
+        File file = new File(resource.getPath());
+        return convertStreamToString(new FileInputStream(file));
+    }
+
+
+    private String convertStreamToString(@NotNull InputStream is) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            sb.append(line).append("\n");
+        }
+        reader.close();
+        return sb.toString();
+    }
+}
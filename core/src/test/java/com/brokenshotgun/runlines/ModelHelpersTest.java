@@ -0,0 +1,385 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines;
+
+import com.brokenshotgun.runlines.model.Actor;
+import com.brokenshotgun.runlines.model.Line;
+import com.brokenshotgun.runlines.model.Scene;
+import com.brokenshotgun.runlines.model.Script;
+import com.brokenshotgun.runlines.model.ScriptEdit;
+import com.brokenshotgun.runlines.model.ScriptSummary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ModelHelpersTest {
+    @Test
+    public void testLineHtmlBold() {
+        Line testLine = new Line(null, "my **bold** text is **great**");
+        String expected = "my <b>bold</b> text is <b>great</b>";
+        assertThat(testLine.getLineHtml(), is(expected));
+    }
+
+    @Test
+    public void testLineHtmlItalics() {
+        Line testLine = new Line(null, "my *italics* text is *great*");
+        String expected = "my <i>italics</i> text is <i>great</i>";
+        assertThat(testLine.getLineHtml(), is(expected));
+    }
+
+    @Test
+    public void testLineHtmlUnderline() {
+        Line testLine = new Line(null, "my _underlined_ text is _great_");
+        String expected = "my <u>underlined</u> text is <u>great</u>";
+        assertThat(testLine.getLineHtml(), is(expected));
+    }
+
+    @Test
+    public void testLineHtmlCombinedEmphasis() {
+        Line testLine = new Line(null, "For example, ***bold italics,*** or _an *italicized* word within an underlined phrase_");
+        String expected = "For example, <i><b>bold italics,</b></i> or <u>an <i>italicized</i> word within an underlined phrase</u>";
+        assertThat(testLine.getLineHtml(), is(expected));
+    }
+
+    @Test
+    public void testScriptSummaryCounts() {
+        Script script = new Script("Summary");
+        script.setAuthor("Someone");
+        script.id = 7;
+        Actor actor = new Actor("BOB");
+        Scene first = new Scene("INT. HOUSE", 0, new ArrayList<Line>());
+        first.addLine(new Line(actor, "Hello."));
+        first.addAction("He waves.");
+        script.addScene(first);
+        script.addScene(new Scene("EXT. YARD"));
+
+        ScriptSummary summary = ScriptSummary.of(script, 42L);
+        assertThat(summary.getId(), is(7L));
+        assertThat(summary.getName(), is("Summary"));
+        assertThat(summary.getAuthor(), is("Someone"));
+        assertThat(summary.getSceneCount(), is(2));
+        assertThat(summary.getLineCount(), is(2));
+        assertThat(summary.getSize(), is((long) ("Hello.".length() + "He waves.".length())));
+        assertThat(summary.getModifiedDate(), is(42L));
+    }
+
+    @Test
+    public void testLazySceneLoadsOnFirstUse() {
+        final Actor actor = new Actor("BOB");
+        final int[] loads = { 0 };
+        Scene scene = new Scene("INT. HOUSE", 3, new Scene.LineLoader() {
+            @Override
+            public List<Line> loadLines() {
+                loads[0]++;
+                List<Line> lines = new ArrayList<>();
+                lines.add(new Line(actor, "Loaded."));
+                return lines;
+            }
+        });
+        assertThat(scene.isLoaded(), is(false));
+        assertThat(scene.getName(), is("INT. HOUSE"));
+        assertThat(loads[0], is(0));
+
+        assertThat(scene.getLines().get(0).getLine(), is("Loaded."));
+        scene.addAction("He waves.");
+        assertThat(scene.isLoaded(), is(true));
+        assertThat(scene.getLines().size(), is(2));
+        assertThat(loads[0], is(1));
+
+        assertThat(scene.release(), is(true));
+        assertThat(scene.isLoaded(), is(false));
+        assertThat(scene.release(), is(false));
+        // changes that weren't saved are gone
+        assertThat(scene.getLines().size(), is(1));
+        assertThat(loads[0], is(2));
+
+        scene.release();
+        List<Line> given = new ArrayList<>();
+        scene.setLoadedLines(given);
+        assertThat(scene.getLines() == given, is(true));
+        scene.setLoadedLines(new ArrayList<Line>());
+        assertThat(scene.getLines() == given, is(true));
+        assertThat(loads[0], is(2));
+    }
+
+    @Test
+    public void testLazySceneOfMissingLinesIsEmpty() {
+        Scene scene = new Scene("GONE", 0, new Scene.LineLoader() {
+            @Override
+            public List<Line> loadLines() {
+                return null;
+            }
+        });
+        assertThat(scene.getLines().isEmpty(), is(true));
+        assertThat(new Scene("LOADED").release(), is(false));
+    }
+
+    @Test
+    public void testIdenticalLinesAreDifferentLines() {
+        Actor bob = new Actor("BOB");
+        Line first = new Line(bob, "Hello.");
+        Line second = new Line(bob, "Hello.");
+        assertThat(first.equals(second), is(false));
+        assertThat(first.getId() == second.getId(), is(false));
+        assertThat(first.getId(), is(first.getId()));
+
+        Scene scene = new Scene("SCENE");
+        scene.addLine(first);
+        scene.addLine(second);
+        assertThat(scene.indexOfLine(first), is(0));
+        assertThat(scene.indexOfLine(second), is(1));
+        assertThat(scene.indexOfLine(new Line(bob, "Hello.")), is(-1));
+    }
+
+    @Test
+    public void testLineIndexFollowsChangesToTheLines() {
+        Scene scene = new Scene("SCENE");
+        List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Line line = new Line(Actor.ACTION, "Line " + i);
+            lines.add(line);
+            scene.addLine(line);
+        }
+        assertThat(scene.indexOfLine(lines.get(5)), is(5));
+
+        scene.getLines().remove(2);
+        scene.getLines().add(0, new Line(Actor.ACTION, "First"));
+        assertThat(scene.indexOfLine(lines.get(5)), is(5));
+        assertThat(scene.indexOfLine(lines.get(1)), is(2));
+        assertThat(scene.indexOfLine(lines.get(2)), is(-1));
+        assertThat(scene.indexOfLine(lines.get(9).getId()), is(9));
+    }
+
+    @Test
+    public void testActorsAreFoundByIdOrName() {
+        Script script = new Script("Test");
+        Actor bob = new Actor("BOB");
+        Actor alice = new Actor("ALICE");
+        script.addActor(bob);
+        script.addActor(alice);
+
+        assertThat(script.indexOfActor(Actor.ACTION), is(0));
+        assertThat(script.indexOfActor(alice), is(2));
+        assertThat(script.indexOfActor(new Actor("BOB")), is(1));
+        assertThat(script.indexOfActor(new Actor("CAROL")), is(-1));
+        assertThat(script.hasActor(new Actor("CAROL")), is(false));
+
+        Scene scene = new Scene("SCENE");
+        scene.addLine(new Line(bob, "Hi."));
+        script.addScene(scene);
+        script.replaceActor(bob, Actor.ACTION);
+        assertThat(script.indexOfActor(bob), is(-1));
+        assertThat(script.indexOfActor(alice), is(1));
+        assertThat(scene.getLines().get(0).getActor() == Actor.ACTION, is(true));
+    }
+
+    @Test
+    public void testActorLinesFollowEdits() {
+        Actor[] actors = {Actor.ACTION, new Actor("BOB"), new Actor("ALICE"), new Actor("CAROL")};
+        Scene scene = new Scene("SCENE");
+        Random random = new Random(3L);
+        for (int i = 0; i < 50; i++) {
+            scene.addLine(new Line(actors[random.nextInt(actors.length)], "Line " + i));
+        }
+        assertActorLines(scene, actors);
+
+        for (int i = 0; i < 500; i++) {
+            int size = scene.getLines().size();
+            Actor actor = actors[random.nextInt(actors.length)];
+            switch (random.nextInt(4)) {
+                case 0:
+                    scene.insertLine(random.nextInt(size + 1), new Line(actor, "Inserted " + i));
+                    break;
+                case 1:
+                    if (size > 0) scene.removeLine(random.nextInt(size));
+                    break;
+                case 2:
+                    if (size > 0) scene.setLineActor(random.nextInt(size), actor);
+                    break;
+                default:
+                    scene.addLine(new Line(actor, "Added " + i));
+                    break;
+            }
+            assertActorLines(scene, actors);
+        }
+
+        scene.replaceActor(actors[1], actors[2]);
+        assertThat(scene.hasLinesOf(actors[1]), is(false));
+        assertActorLines(scene, actors);
+    }
+
+    @Test
+    public void testActorLinesAfterDirectChanges() {
+        Actor bob = new Actor("BOB");
+        Scene scene = new Scene("SCENE");
+        scene.addAction("Lights up.");
+        scene.addLine(new Line(bob, "Hi."));
+        assertThat(scene.linesOf(bob).get(1), is(true));
+
+        // the number of lines changed, which the scene notices by itself
+        scene.getLines().add(0, new Line(bob, "Before."));
+        assertThat(scene.linesOf(bob).get(0), is(true));
+        assertThat(scene.linesOf(Actor.ACTION).get(1), is(true));
+
+        scene.getLines().get(1).setActor(bob);
+        scene.linesChanged();
+        assertThat(scene.linesOf(bob).cardinality(), is(3));
+        assertThat(scene.hasLinesOf(Actor.ACTION), is(false));
+    }
+
+    @Test
+    public void testScenesWithActor() {
+        Actor bob = new Actor("BOB");
+        Actor alice = new Actor("ALICE");
+        Script script = new Script("Test");
+        script.addActor(bob);
+        script.addActor(alice);
+        for (int i = 0; i < 4; i++) {
+            Scene scene = new Scene("SCENE " + i);
+            scene.addAction("Lights up.");
+            scene.addLine(new Line(i % 2 == 0 ? bob : alice, "Line " + i));
+            script.addScene(scene);
+        }
+
+        BitSet bobsScenes = script.scenesWith(bob);
+        assertThat(bobsScenes.cardinality(), is(2));
+        assertThat(bobsScenes.get(0) && bobsScenes.get(2), is(true));
+        assertThat(script.scenesWith(Actor.ACTION).cardinality(), is(4));
+
+        script.replaceActor(bob, alice);
+        assertThat(script.scenesWith(bob).isEmpty(), is(true));
+        assertThat(script.scenesWith(alice).cardinality(), is(4));
+        assertThat(script.getScene(2).getLines().get(1).getActor() == alice, is(true));
+    }
+
+    @Test
+    public void testDiscardedEditLeavesScriptUnchanged() {
+        Actor bob = new Actor("BOB");
+        Actor alice = new Actor("ALICE");
+        Script script = new Script("Test");
+        script.addActor(bob);
+        script.addActor(alice);
+        for (int i = 0; i < 3; i++) {
+            Scene scene = new Scene("SCENE " + i);
+            scene.addLine(new Line(bob, "Line " + i));
+            scene.addLine(new Line(alice, "Reply " + i));
+            script.addScene(scene);
+        }
+        Scene first = script.getScene(0);
+        Scene second = script.getScene(1);
+        Line firstLine = first.getLines().get(0);
+
+        ScriptEdit edit = new ScriptEdit(script, 0);
+        Scene edited = edit.getScript().getScene(0);
+        edited.getLines().get(0).setLine("Changed");
+        edited.setLineActor(1, bob);
+        edited.removeLine(0);
+        edit.getScript().addActor(new Actor("CAROL"));
+        edit.replaceActor(bob, alice);
+
+        assertThat(edit.getScript().scenesWith(bob).isEmpty(), is(true));
+        assertThat(script.getActors().size(), is(3));
+        assertThat(script.getScene(0) == first && script.getScene(1) == second, is(true));
+        assertThat(first.getLines().size(), is(2));
+        assertThat(first.getLines().get(0) == firstLine, is(true));
+        assertThat(firstLine.getLine(), is("Line 0"));
+        assertThat(first.getLines().get(1).getActor() == alice, is(true));
+        assertThat(script.scenesWith(bob).cardinality(), is(3));
+    }
+
+    @Test
+    public void testCommittedEditReplacesActorInUnloadedScenes() {
+        final Actor bob = new Actor("BOB");
+        Actor alice = new Actor("ALICE");
+        Script script = new Script("Test");
+        script.addActor(bob);
+        script.addActor(alice);
+        script.addScene(new Scene("LOADED", 0, new ArrayList<>(Arrays.asList(new Line(bob, "Hi")))));
+        final int[] loads = new int[1];
+        script.addScene(new Scene("STORED", 1, new Scene.LineLoader() {
+            @Override
+            public List<Line> loadLines() {
+                loads[0]++;
+                return new ArrayList<>(Arrays.asList(new Line(bob, "Bye")));
+            }
+        }));
+
+        ScriptEdit edit = new ScriptEdit(script, 0);
+        edit.replaceActor(bob, alice);
+        assertThat(loads[0], is(0));
+        assertThat(script.getScene(0).getLines().get(0).getActor() == bob, is(true));
+
+        edit.commit();
+        assertThat(loads[0], is(0));
+        assertThat(script.getActors().size(), is(2));
+        assertThat(script.getScene(0).getLines().get(0).getActor() == alice, is(true));
+        assertThat(script.getScene(1).isLoaded(), is(false));
+        assertThat(script.getScene(1).getLines().get(0).getActor() == alice, is(true));
+
+        // the script has copies of the edited scenes, further edits don't reach it
+        edit.getScript().getScene(0).getLines().get(0).setLine("Changed");
+        assertThat(script.getScene(0).getLines().get(0).getLine(), is("Hi"));
+    }
+
+    @Test
+    public void testReplaceActorLeavesUnloadedScenesUnloaded() {
+        final Actor bob = new Actor("BOB");
+        Actor alice = new Actor("ALICE");
+        Script script = new Script("Test");
+        script.addActor(bob);
+        script.addActor(alice);
+        final int[] loads = new int[1];
+        script.addScene(new Scene("STORED", 0, new Scene.LineLoader() {
+            @Override
+            public List<Line> loadLines() {
+                loads[0]++;
+                return new ArrayList<>(Arrays.asList(new Line(bob, "Hi"), new Line(Actor.ACTION, "Exit.")));
+            }
+        }));
+
+        script.replaceActor(bob, alice);
+        assertThat(loads[0], is(0));
+        assertThat(script.getScene(0).isLoaded(), is(false));
+
+        Scene scene = script.getScene(0);
+        assertThat(scene.getLines().get(0).getActor() == alice, is(true));
+        assertThat(scene.getLines().get(1).getActor() == Actor.ACTION, is(true));
+        scene.release();
+        assertThat(scene.getLines().get(0).getActor() == alice, is(true));
+        assertThat(loads[0], is(2));
+    }
+
+    private static void assertActorLines(Scene scene, Actor[] actors) {
+        for (Actor actor : actors) {
+            BitSet expected = new BitSet();
+            for (int i = 0; i < scene.getLines().size(); i++) {
+                if (scene.getLines().get(i).getActor().equals(actor)) {
+                    expected.set(i);
+                }
+            }
+            assertThat(actor.getName(), scene.linesOf(actor), is(expected));
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines;
+
+import com.brokenshotgun.runlines.data.BinaryScriptCodec;
+import com.brokenshotgun.runlines.data.CompressedScriptCodec;
+import com.brokenshotgun.runlines.data.FountainSerializer;
+import com.brokenshotgun.runlines.data.JsonScriptCodec;
+import com.brokenshotgun.runlines.data.ScriptJson;
+import com.brokenshotgun.runlines.data.ScriptParcelFormat;
+import com.brokenshotgun.runlines.model.Actor;
+import com.brokenshotgun.runlines.model.Line;
+import com.brokenshotgun.runlines.model.Scene;
+import com.brokenshotgun.runlines.model.Script;
+
+import org.junit.Test;
+
+import kotlin.jvm.functions.Function1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScriptCodecTest {
+    @Test
+    public void testBinaryRoundTrip() {
+        for (Script script : new Script[] { generatedScript(), edgeCaseScript(), new Script("") }) {
+            Script decoded = BinaryScriptCodec.INSTANCE.decode(BinaryScriptCodec.INSTANCE.encode(script));
+            assertEquals(ScriptJson.toJson(script), ScriptJson.toJson(decoded));
+        }
+    }
+
+    @Test
+    public void testDecodeOneScene() {
+        Script script = generatedScript();
+        byte[] bytes = BinaryScriptCodec.INSTANCE.encode(script);
+        for (int i = 0; i < script.getScenes().size(); i++) {
+            Scene scene = BinaryScriptCodec.INSTANCE.decodeScene(bytes, i);
+            assertEquals(ScriptJson.getGson().toJson(script.getScene(i)), ScriptJson.getGson().toJson(scene));
+        }
+        assertNull(BinaryScriptCodec.INSTANCE.decodeScene(bytes, -1));
+        assertNull(BinaryScriptCodec.INSTANCE.decodeScene(bytes, script.getScenes().size()));
+    }
+
+    @Test
+    public void testDecodeOutline() {
+        Script script = generatedScript();
+        final byte[] bytes = BinaryScriptCodec.INSTANCE.encode(script);
+        Script outline = BinaryScriptCodec.INSTANCE.decodeOutline(bytes, new Function1<Integer, Scene.LineLoader>() {
+            @Override
+            public Scene.LineLoader invoke(final Integer sceneIndex) {
+                return new Scene.LineLoader() {
+                    @Override
+                    public List<Line> loadLines() {
+                        return BinaryScriptCodec.INSTANCE.decodeScene(bytes, sceneIndex).getLines();
+                    }
+                };
+            }
+        });
+        assertEquals(script.getScenes().size(), outline.getScenes().size());
+        assertEquals(script.getActors(), outline.getActors());
+        for (int i = 0; i < script.getScenes().size(); i++) {
+            assertFalse(outline.getScene(i).isLoaded());
+            assertEquals(script.getScene(i).getName(), outline.getScene(i).getName());
+        }
+        assertEquals(ScriptJson.toJson(script), ScriptJson.toJson(outline));
+    }
+
+    @Test
+    public void testLinesShareActors() {
+        Script decoded = BinaryScriptCodec.INSTANCE.decode(BinaryScriptCodec.INSTANCE.encode(generatedScript()));
+        assertSame(Actor.ACTION, decoded.getActors().get(0));
+        for (Scene scene : decoded.getScenes()) {
+            for (Line line : scene.getLines()) {
+                assertSame(decoded.getActors().get(decoded.getActors().indexOf(line.getActor())), line.getActor());
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsUnknownVersion() {
+        byte[] bytes = BinaryScriptCodec.INSTANCE.encode(edgeCaseScript());
+        bytes[0] = (byte) (BinaryScriptCodec.VERSION + 1);
+        try {
+            BinaryScriptCodec.INSTANCE.decode(bytes);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // a newer app wrote it
+        }
+    }
+
+    @Test
+    public void testBinaryIsSmallerThanJson() {
+        Script script = generatedScript();
+        int json = JsonScriptCodec.INSTANCE.encode(script).length;
+        int binary = BinaryScriptCodec.INSTANCE.encode(script).length;
+        System.out.println("JSON " + json + " bytes, binary " + binary + " bytes");
+        assertTrue(binary < json * 0.6);
+    }
+
+    @Test
+    public void testCompressedRoundTrip() {
+        CompressedScriptCodec codec = new CompressedScriptCodec(BinaryScriptCodec.INSTANCE);
+        Script script = generatedScript();
+        byte[] binary = BinaryScriptCodec.INSTANCE.encode(script);
+        byte[] compressed = codec.encode(script);
+        assertEquals(CompressedScriptCodec.DEFLATED, compressed[0]);
+        assertTrue(compressed.length < binary.length / 2);
+        System.out.println("binary " + binary.length + " bytes, compressed " + compressed.length + " bytes");
+
+        assertEquals(ScriptJson.toJson(script), ScriptJson.toJson(codec.decode(compressed)));
+        assertEquals(ScriptJson.getGson().toJson(script.getScene(3)),
+                ScriptJson.getGson().toJson(codec.decodeScene(compressed, 3)));
+        assertEquals(1, codec.getStats().getCompressedScripts());
+        assertEquals(2, codec.getStats().getDecompressedScripts());
+        assertEquals(binary.length - compressed.length, codec.getStats().getBytesSaved());
+    }
+
+    @Test
+    public void testSmallScriptsStayUncompressed() {
+        CompressedScriptCodec codec = new CompressedScriptCodec(BinaryScriptCodec.INSTANCE);
+        Script script = edgeCaseScript();
+        assertArrayEquals(BinaryScriptCodec.INSTANCE.encode(script), codec.encode(script));
+        assertEquals(0, codec.getStats().getCompressedScripts());
+        assertEquals(1.0, codec.getStats().getRatio(), 0.0);
+    }
+
+    @Test
+    public void testReadsUncompressedEncoding() {
+        CompressedScriptCodec codec = new CompressedScriptCodec(BinaryScriptCodec.INSTANCE, 0);
+        Script script = generatedScript();
+        // as stored before compression
+        byte[] binary = BinaryScriptCodec.INSTANCE.encode(script);
+        assertEquals(ScriptJson.toJson(script), ScriptJson.toJson(codec.decode(binary)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTruncatedCompression() {
+        CompressedScriptCodec codec = new CompressedScriptCodec(BinaryScriptCodec.INSTANCE);
+        byte[] compressed = codec.encode(generatedScript());
+        codec.decode(Arrays.copyOf(compressed, compressed.length / 2));
+    }
+
+    @Test
+    public void testParcelRoundTrip() {
+        for (boolean packScenes : new boolean[] { false, true }) {
+            for (Script script : new Script[] { generatedScript(), edgeCaseScript(), new Script("") }) {
+                ValueParcel parcel = new ValueParcel();
+                ScriptParcelFormat.INSTANCE.write(script, parcel, packScenes);
+                Script decoded = ScriptParcelFormat.INSTANCE.read(parcel);
+                assertEquals(ScriptJson.toJson(script), ScriptJson.toJson(decoded));
+                assertEquals(script.id, decoded.id);
+                assertEquals(script.getActorVoices(), decoded.getActorVoices());
+            }
+        }
+    }
+
+    @Test
+    public void testParcelWritesActorsOnce() {
+        Script script = edgeCaseScript();
+        Actor bob = script.getActors().get(1);
+        // its voice would be one more copy of its name
+        script.getActorVoices().clear();
+        script.getScene(0).getLines().add(new Line(bob, "Again"));
+        // not one of the script's actors
+        Actor extra = new Actor("EXTRA");
+        script.getScene(1).getLines().add(new Line(extra, "Hi"));
+
+        ValueParcel parcel = new ValueParcel();
+        ScriptParcelFormat.INSTANCE.write(script, parcel, false);
+        assertEquals(1, Collections.frequency(parcel.values, bob.getName()));
+        assertEquals(1, Collections.frequency(parcel.values, extra.getName()));
+
+        Script decoded = ScriptParcelFormat.INSTANCE.read(parcel);
+        assertSame(Actor.ACTION, decoded.getActors().get(0));
+        assertSame(decoded.getActors().get(1), decoded.getScene(0).getLines().get(0).getActor());
+        assertSame(decoded.getActors().get(1), decoded.getScene(0).getLines().get(2).getActor());
+        assertEquals(extra, decoded.getScene(1).getLines().get(0).getActor());
+        assertFalse(decoded.getActors().contains(extra));
+    }
+
+    @Test
+    public void testPackedParcelIsOneArray() {
+        ValueParcel parcel = new ValueParcel();
+        ScriptParcelFormat.INSTANCE.write(generatedScript(), parcel, true);
+        assertEquals(2, parcel.values.size());
+        assertTrue(parcel.values.get(1) instanceof byte[]);
+    }
+
+    /** Keeps the values written to it in order, and reads them back from the start. */
+    private static class ValueParcel implements ScriptParcelFormat.Writer, ScriptParcelFormat.Reader {
+        final List<Object> values = new ArrayList<>();
+        private int position = 0;
+
+        @Override
+        public void writeInt(int value) {
+            values.add(value);
+        }
+
+        @Override
+        public void writeLong(long value) {
+            values.add(value);
+        }
+
+        @Override
+        public void writeString(String value) {
+            values.add(value);
+        }
+
+        @Override
+        public void writeByteArray(byte[] value) {
+            values.add(value);
+        }
+
+        @Override
+        public int readInt() {
+            return (Integer) values.get(position++);
+        }
+
+        @Override
+        public long readLong() {
+            return (Long) values.get(position++);
+        }
+
+        @Override
+        public String readString() {
+            return (String) values.get(position++);
+        }
+
+        @Override
+        public byte[] createByteArray() {
+            return (byte[]) values.get(position++);
+        }
+    }
+
+    private Script generatedScript() {
+        FountainGenerator generator = new FountainGenerator(11L);
+        generator.setLineCount(3_000);
+        return FountainSerializer.deserialize(generator.generate());
+    }
+
+    private Script edgeCaseScript() {
+        Script script = new Script("Edge \"cases\" \u00e9");
+        script.setContact("Someone\nSomewhere");
+        script.id = 1L << 40;
+        Actor bob = new Actor("BOB \u2603");
+        script.addActor(bob);
+        script.addVoice("voice one");
+        script.assignVoice(bob.getName(), "voice one");
+        Line line = new Line(bob, "\u0000 and \uD83C\uDFAD");
+        line.order = -2;
+        line.characterExtensions.add("V.O.");
+        line.characterExtensions.add("CONT'D");
+        ArrayList<Line> lines = new ArrayList<>();
+        lines.add(line);
+        lines.add(new Line(null, null));
+        script.addScene(new Scene("INT. ROOM", -4, lines));
+        script.addScene(new Scene());
+        return script;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines;
+
+import com.brokenshotgun.runlines.data.FountainSerializer;
+import com.brokenshotgun.runlines.data.ScriptJson;
+import com.brokenshotgun.runlines.model.Actor;
+import com.brokenshotgun.runlines.model.Line;
+import com.brokenshotgun.runlines.model.Scene;
+import com.brokenshotgun.runlines.model.Script;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScriptJsonTest {
+    // what scripts were stored with before the streaming adapters
+    private final Gson reflectiveGson = new Gson();
+
+    @Test
+    public void testWritesSameJsonAsReflection() {
+        Script script = generatedScript();
+        assertEquals(reflectiveGson.toJson(script), ScriptJson.toJson(script));
+
+        Script edgeCases = edgeCaseScript();
+        assertEquals(reflectiveGson.toJson(edgeCases), ScriptJson.toJson(edgeCases));
+    }
+
+    @Test
+    public void testReadsJsonWrittenByReflection() {
+        for (Script script : new Script[] { generatedScript(), edgeCaseScript() }) {
+            String json = reflectiveGson.toJson(script);
+            Script read = ScriptJson.fromJson(json);
+            assertEquals(json, reflectiveGson.toJson(read));
+            assertEquals(script.id, read.id);
+        }
+    }
+
+    @Test
+    public void testReadsMissingAndNullFields() {
+        Script script = ScriptJson.fromJson("{\"name\":\"Old\",\"actors\":[{\"name\":\"ACTION\"}]," +
+                "\"scenes\":[{\"lines\":[{\"actor\":{\"name\":\"ACTION\"},\"line\":\"Hi\"},null]}]," +
+                "\"actorVoices\":null,\"unknown\":{\"a\":[1,2]}}");
+        assertEquals("Old", script.getName());
+        assertNull(script.getAuthor());
+        assertNull(script.getScene(0).getName());
+        assertEquals(1, script.getScene(0).getLines().size());
+        assertTrue(script.getScene(0).getLines().get(0).characterExtensions.isEmpty());
+        assertTrue(script.getActorVoices().isEmpty());
+        assertNull(ScriptJson.fromJson("null"));
+    }
+
+    @Test
+    public void testLinesShareTheScriptsActors() {
+        Script read = ScriptJson.fromJson(ScriptJson.toJson(generatedScript()));
+
+        Map<Actor, Boolean> actors = new IdentityHashMap<>();
+        for (Actor actor : read.getActors()) {
+            actors.put(actor, true);
+        }
+        for (Scene scene : read.getScenes()) {
+            for (Line line : scene.getLines()) {
+                assertTrue(line.getActor().getName(), actors.containsKey(line.getActor()));
+            }
+        }
+        assertSame(Actor.ACTION, read.getActors().get(0));
+    }
+
+    private Script generatedScript() {
+        FountainGenerator generator = new FountainGenerator(7L);
+        generator.setLineCount(2_000);
+        return FountainSerializer.deserialize(generator.generate());
+    }
+
+    private Script edgeCaseScript() {
+        Script script = new Script("Edge \"cases\" \u00e9\n");
+        script.setAuthor("Someone");
+        script.id = 12L;
+        Actor bob = new Actor("BOB");
+        script.addActor(bob);
+        script.addVoice("voice one");
+        script.assignVoice("BOB", "voice one");
+        Line line = new Line(bob, "Tab\there </script> \u2028");
+        line.order = 3;
+        line.characterExtensions.add("V.O.");
+        ArrayList<Line> lines = new ArrayList<>();
+        lines.add(line);
+        lines.add(new Line(Actor.ACTION, null));
+        script.addScene(new Scene("INT. ROOM", 4, lines));
+        script.addScene(new Scene());
+        return script;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines;
+
+import com.brokenshotgun.runlines.data.FountainSerializer;
+import com.brokenshotgun.runlines.data.ParserMode;
+import com.brokenshotgun.runlines.model.Scene;
+import com.brokenshotgun.runlines.model.Script;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that parsing and storing a script costs about the same per line whether the script has a
+ * thousand lines or two hundred thousand, using scripts from {@link FountainGenerator}.
+ *
+ * Timings and heap sizes are compared per line between the smallest and the largest script, with
+ * enough slack for JIT and GC noise while still failing on anything that grows quadratically.
+ */
+public class ScriptScalingTest {
+    private static final int[] SIZES = { 12_500, 50_000, 200_000 };
+    private static final long SEED = 42L;
+    // the generated scripts have notes, which the regex parser folds into the lines around them
+    private static final ParserMode MODE = ParserMode.LEXER;
+
+    @Test
+    public void testGeneratorIsDeterministic() {
+        assertEquals(generate(SEED, 1_000), generate(SEED, 1_000));
+        assertNotEquals(generate(SEED, 1_000), generate(SEED + 1, 1_000));
+    }
+
+    @Test
+    public void testGeneratedScriptParses() {
+        FountainGenerator generator = new FountainGenerator(SEED);
+        generator.setLineCount(1_000);
+        generator.setSceneCount(30);
+        generator.setCastSize(8);
+        String text = generator.generate();
+
+        for (ParserMode mode : new ParserMode[] { ParserMode.LEXER, ParserMode.PARALLEL }) {
+            assertParsesTo(FountainSerializer.deserialize(text, mode), mode.name(), 1_000, 30, 8);
+        }
+
+        // the regex parser folds a note right after dialogue into the next block, so leave them out
+        generator.setNotes(false);
+        text = generator.generate();
+        for (ParserMode mode : ParserMode.values()) {
+            assertParsesTo(FountainSerializer.deserialize(text, mode), mode.name(), 1_000, 30, 8);
+        }
+    }
+
+    @Test
+    public void testGeneratorOptions() {
+        FountainGenerator generator = new FountainGenerator(SEED);
+        generator.setLineCount(500);
+        generator.setNotes(false);
+        generator.setDualDialogue(false);
+        generator.setTitlePage(false);
+        String text = generator.generate();
+
+        assertTrue(!text.contains("[[") && !text.contains("/*") && !text.contains("^"));
+        Script script = FountainSerializer.deserialize(text);
+        assertEquals("Untitled script", script.getName());
+        assertEquals(500, lineCount(script));
+    }
+
+    @Test(timeout = 300000)
+    public void testParseTimeScalesLinearly() {
+        String[] texts = new String[SIZES.length];
+        for (int i = 0; i < SIZES.length; ++i) {
+            texts[i] = generate(SEED, SIZES[i]);
+        }
+
+        // warm up the parser before timing anything
+        for (int i = 0; i < 3; ++i) {
+            FountainSerializer.deserialize(texts[1], MODE);
+        }
+
+        double[] nanosPerLine = new double[SIZES.length];
+        for (int i = 0; i < SIZES.length; ++i) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < 3; ++run) {
+                long start = System.nanoTime();
+                Script script = FountainSerializer.deserialize(texts[i], MODE);
+                best = Math.min(best, System.nanoTime() - start);
+                assertEquals(SIZES[i], lineCount(script));
+            }
+            nanosPerLine[i] = (double) best / SIZES[i];
+            System.out.println("testParseTimeScalesLinearly> " + SIZES[i] + " lines: " + best / 1_000_000 + " ms");
+        }
+
+        assertScalesLinearly("parse time", nanosPerLine, 3.0);
+    }
+
+    @Test
+    public void testAllocationScalesLinearly() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        long thread = Thread.currentThread().getId();
+
+        double[] bytesPerLine = new double[SIZES.length];
+        for (int i = 0; i < SIZES.length; ++i) {
+            String text = generate(SEED, SIZES[i]);
+            long before = allocations.getThreadAllocatedBytes(thread);
+            FountainSerializer.deserialize(text, MODE);
+            long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+            bytesPerLine[i] = (double) allocated / SIZES[i];
+            System.out.println("testAllocationScalesLinearly> " + SIZES[i] + " lines: " + allocated / 1024 + " KiB");
+        }
+
+        assertScalesLinearly("allocated bytes", bytesPerLine, 1.5);
+    }
+
+    @Test
+    public void testRetainedHeapScalesLinearly() {
+        int largest = SIZES[SIZES.length - 1];
+        double[] bytesPerLine = new double[SIZES.length];
+        for (int i = 0; i < SIZES.length; ++i) {
+            String text = generate(SEED, SIZES[i]);
+            // keep as many lines alive for every size so the GC noise is about the same
+            Script[] scripts = new Script[largest / SIZES[i]];
+            long before = usedHeapAfterGc();
+            for (int copy = 0; copy < scripts.length; ++copy) {
+                scripts[copy] = FountainSerializer.deserialize(text, MODE);
+            }
+            long retained = usedHeapAfterGc() - before;
+            for (Script script : scripts) {
+                assertEquals(SIZES[i], lineCount(script));
+            }
+            bytesPerLine[i] = (double) retained / largest;
+            System.out.println("testRetainedHeapScalesLinearly> " + SIZES[i] + " lines: " + retained / scripts.length / 1024 + " KiB");
+        }
+
+        assertScalesLinearly("retained heap", bytesPerLine, 1.25);
+    }
+
+    @Test
+    public void testPersistedSizeScalesLinearly() {
+        Gson gson = new Gson();
+        double[] jsonPerLine = new double[SIZES.length];
+        double[] fountainPerLine = new double[SIZES.length];
+        for (int i = 0; i < SIZES.length; ++i) {
+            Script script = FountainSerializer.deserialize(generate(SEED, SIZES[i]), MODE);
+            jsonPerLine[i] = (double) gson.toJson(script).length() / SIZES[i];
+            fountainPerLine[i] = (double) FountainSerializer.serialize(script).length() / SIZES[i];
+        }
+
+        assertScalesLinearly("json size", jsonPerLine, 1.1);
+        assertScalesLinearly("fountain size", fountainPerLine, 1.1);
+    }
+
+    private static void assertScalesLinearly(String what, double[] perLine, double slack) {
+        double smallest = perLine[0];
+        double largest = perLine[perLine.length - 1];
+        assertTrue(what + " per line grew from " + smallest + " to " + largest,
+                largest <= smallest * slack);
+    }
+
+    private static void assertParsesTo(Script script, String message, int lines, int scenes, int castSize) {
+        assertEquals(message, lines, lineCount(script));
+        assertEquals(message, scenes, script.getScenes().size());
+        assertTrue(message, script.getActors().size() <= castSize + 1);
+        assertTrue(message, script.getAuthor() != null && script.getContact() != null);
+    }
+
+    private static String generate(long seed, int lines) {
+        FountainGenerator generator = new FountainGenerator(seed);
+        generator.setLineCount(lines);
+        return generator.generate();
+    }
+
+    private static int lineCount(Script script) {
+        int count = 0;
+        for (Scene scene : script.getScenes()) {
+            count += scene.getLines().size();
+        }
+        return count;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
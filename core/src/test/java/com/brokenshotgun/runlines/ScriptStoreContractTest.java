@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 Jason Petterson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.brokenshotgun.runlines;
+
+import com.brokenshotgun.runlines.data.FountainSerializer;
+import com.brokenshotgun.runlines.data.ScriptJson;
+import com.brokenshotgun.runlines.data.ScriptStore;
+import com.brokenshotgun.runlines.model.Actor;
+import com.brokenshotgun.runlines.model.Line;
+import com.brokenshotgun.runlines.model.Scene;
+import com.brokenshotgun.runlines.model.Script;
+import com.brokenshotgun.runlines.model.ScriptSummary;
+import com.brokenshotgun.runlines.model.SearchHit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * What every {@link ScriptStore} has to do. Each store's test extends this with a way to create
+ * an empty store.
+ */
+public abstract class ScriptStoreContractTest {
+    protected ScriptStore store;
+
+    protected abstract ScriptStore createStore() throws Exception;
+
+    @Before
+    public void setUp() throws Exception {
+        store = createStore();
+    }
+
+    @Test
+    public void testInsertAndLoad() {
+        Script script = generatedScript();
+        long id = store.insertScript(script);
+        assertTrue(id > 0);
+        assertEquals(id, script.id);
+        assertSameScript(script, store.loadScript(id));
+        assertNull(store.loadScript(id + 1));
+    }
+
+    @Test
+    public void testLoadScene() {
+        Script script = generatedScript();
+        store.insertScript(script);
+        for (int i = 0; i < script.getScenes().size(); i++) {
+            assertEquals(ScriptJson.getGson().toJson(script.getScene(i)),
+                    ScriptJson.getGson().toJson(store.loadScene(script.id, i)));
+        }
+        assertNull(store.loadScene(script.id, script.getScenes().size()));
+        assertNull(store.loadScene(script.id + 1, 0));
+    }
+
+    @Test
+    public void testLoadOutline() {
+        Script script = generatedScript();
+        store.insertScript(script);
+        Script outline = store.loadOutline(script.id);
+        assertEquals(script.getScenes().size(), outline.getScenes().size());
+        for (Scene scene : outline.getScenes()) {
+            assertFalse(scene.isLoaded());
+        }
+        assertSameScript(script, outline);
+        assertNull(store.loadOutline(script.id + 1));
+    }
+
+    @Test
+    public void testOutlineLoadsSavedLines() {
+        Script script = smallScript();
+        store.insertScript(script);
+        Script outline = store.loadOutline(script.id);
+        outline.getScene(1).getLines().get(0).setLine("Something here");
+        store.updateScene(outline, 1);
+        script.getScene(1).getLines().get(0).setLine("Something here");
+        assertSameScript(script, store.loadScript(script.id));
+
+        assertTrue(outline.getScene(1).release());
+        assertEquals("Something here", outline.getScene(1).getLines().get(0).getLine());
+    }
+
+    @Test
+    public void testStoredScriptsAreCopies() {
+        Script script = smallScript();
+        store.insertScript(script);
+        script.getScene(0).getLines().get(0).setLine("changed after insert");
+        Script loaded = store.loadScript(script.id);
+        assertEquals("Where is the zebra?", loaded.getScene(0).getLines().get(0).getLine());
+        loaded.getScene(0).getLines().get(0).setLine("changed after load");
+        assertEquals("Where is the zebra?", store.loadScript(script.id).getScene(0).getLines().get(0).getLine());
+    }
+
+    @Test
+    public void testSummariesNewestFirst() throws InterruptedException {
+        Script first = generatedScript();
+        store.insertScript(first);
+        Thread.sleep(5);
+        Script second = smallScript();
+        store.insertScript(second);
+
+        List<ScriptSummary> summaries = store.loadSummaries();
+        assertEquals(2, summaries.size());
+        assertSameSummary(second, summaries.get(0));
+        assertSameSummary(first, summaries.get(1));
+    }
+
+    @Test
+    public void testUpdates() {
+        Script script = smallScript();
+        store.insertScript(script);
+
+        script.getScene(0).getLines().get(1).setLine("The zebra ran off.");
+        script.getScene(1).getLines().add(new Line(script.getActors().get(0), "Found it"));
+        store.updateScript(script);
+        assertSameScript(script, store.loadScript(script.id));
+
+        script.getScene(1).getLines().remove(0);
+        store.updateScene(script, 1);
+        assertSameScript(script, store.loadScript(script.id));
+
+        script.getScene(0).getLines().get(0).setLine("Where is the giraffe?");
+        store.updateLine(script, 0, 0);
+        assertSameScript(script, store.loadScript(script.id));
+
+        script.setName("Renamed");
+        script.setAuthor("Someone");
+        store.updateScriptInfo(script);
+        assertEquals("Someone", store.loadScript(script.id).getAuthor());
+        assertSameSummary(script, store.loadSummaries().get(0));
+
+        store.renameScript(script.id, "Renamed again");
+        script.setName("Renamed again");
+        assertSameScript(script, store.loadScript(script.id));
+        assertEquals("Renamed again", store.loadSummaries().get(0).getName());
+    }
+
+    @Test
+    public void testDelete() {
+        Script kept = smallScript();
+        store.insertScript(kept);
+        Script deleted = smallScript();
+        store.insertScript(deleted);
+
+        store.deleteScript(deleted.id);
+        assertNull(store.loadScript(deleted.id));
+        assertNull(store.loadScene(deleted.id, 0));
+        assertEquals(1, store.loadSummaries().size());
+        assertEquals(kept.id, store.loadSummaries().get(0).getId());
+
+        // a late save of a deleted script doesn't bring it back
+        store.updateScript(deleted);
+        assertNull(store.loadScript(deleted.id));
+        store.deleteScript(deleted.id);
+    }
+
+    @Test
+    public void testIdsAreNotShared() {
+        Script first = smallScript();
+        Script second = smallScript();
+        store.insertScript(first);
+        store.insertScript(second);
+        assertTrue(first.id != second.id);
+        second.setName("Second");
+        store.updateScriptInfo(second);
+        assertEquals("Tiny", store.loadScript(first.id).getName());
+    }
+
+    @Test
+    public void testSearch() {
+        Script script = smallScript();
+        store.insertScript(script);
+
+        List<SearchHit> zebra = store.search("zeb", 10);
+        assertEquals(2, zebra.size());
+        for (SearchHit hit : zebra) {
+            assertEquals(script.id, hit.getScriptId());
+            assertEquals("Tiny", hit.getScriptName());
+            assertEquals(0, hit.getSceneIndex());
+            assertTrue(hit.getSnippet(), hit.getSnippet().contains(SearchHit.MATCH_START + "zebra" + SearchHit.MATCH_END));
+        }
+        assertEquals(Arrays.asList(0, 1), Arrays.asList(Math.min(zebra.get(0).getLineIndex(), zebra.get(1).getLineIndex()),
+                Math.max(zebra.get(0).getLineIndex(), zebra.get(1).getLineIndex())));
+
+        List<SearchHit> garden = store.search("GARDEN", 10);
+        assertEquals(1, garden.size());
+        assertTrue(garden.get(0).isSceneHeading());
+        assertEquals(1, garden.get(0).getSceneIndex());
+
+        // every word has to match, and a match on the actor counts for more than one in the text
+        assertEquals(1, store.search("zebra left", 10).size());
+        List<SearchHit> alice = store.search("alice", 10);
+        assertEquals(2, alice.size());
+        assertEquals(0, alice.get(0).getLineIndex());
+        assertEquals(1, alice.get(1).getLineIndex());
+        assertTrue(alice.get(0).getScore() > alice.get(1).getScore());
+
+        assertEquals(1, store.search("zebra", 1).size());
+        assertTrue(store.search("  \"*", 10).isEmpty());
+        assertTrue(store.search("zebra OR giraffe", 10).isEmpty());
+
+        store.deleteScript(script.id);
+        assertTrue(store.search("zebra", 10).isEmpty());
+    }
+
+    private void assertSameScript(Script expected, Script actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(ScriptJson.toJson(expected), ScriptJson.toJson(actual));
+    }
+
+    private void assertSameSummary(Script expected, ScriptSummary actual) {
+        ScriptSummary summary = ScriptSummary.of(expected, 0);
+        assertEquals(expected.id, actual.getId());
+        assertEquals(summary.getName(), actual.getName());
+        assertEquals(summary.getAuthor(), actual.getAuthor());
+        assertEquals(summary.getSceneCount(), actual.getSceneCount());
+        assertEquals(summary.getLineCount(), actual.getLineCount());
+        assertEquals(summary.getSize(), actual.getSize());
+        assertTrue(actual.getModifiedDate() > 0);
+    }
+
+    private Script generatedScript() {
+        FountainGenerator generator = new FountainGenerator(5L);
+        generator.setLineCount(500);
+        return FountainSerializer.deserialize(generator.generate());
+    }
+
+    private Script smallScript() {
+        Script script = new Script("Tiny");
+        Actor alice = new Actor("ALICE");
+        Actor bob = new Actor("BOB");
+        script.addActor(alice);
+        script.addActor(bob);
+        ArrayList<Line> kitchen = new ArrayList<>();
+        kitchen.add(new Line(alice, "Where is the zebra?"));
+        kitchen.add(new Line(bob, "Alice, the zebra left."));
+        script.addScene(new Scene("INT. KITCHEN - NIGHT", 1, kitchen));
+        ArrayList<Line> garden = new ArrayList<>();
+        garden.add(new Line(bob, "Nothing here"));
+        script.addScene(new Scene("EXT. GARDEN", 2, garden));
+        return script;
+    }
+}